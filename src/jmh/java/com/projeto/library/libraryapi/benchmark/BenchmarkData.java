@@ -0,0 +1,51 @@
+package com.projeto.library.libraryapi.benchmark;
+
+import com.projeto.library.libraryapi.LibraryApiApplication;
+import com.projeto.library.libraryapi.api.dto.BookDTO;
+import com.projeto.library.libraryapi.api.entity.Book;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+// Dados e contexto compartilhados pelos benchmarks
+final class BenchmarkData {
+
+    private BenchmarkData() {
+    }
+
+    static List<Book> books(int size) {
+        List<Book> books = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            books.add(Book.builder()
+                    .id((long) i + 1)
+                    .title("As aventuras " + i)
+                    .author("Leonardo " + (i % 100))
+                    .isbn(String.format("%013d", i))
+                    .build());
+        }
+        return books;
+    }
+
+    static List<BookDTO> bookDTOs(int size) {
+        List<BookDTO> books = new ArrayList<>(size);
+        for (Book book : books(size)) {
+            books.add(BookDTO.builder().id(book.getId()).title(book.getTitle()).author(book.getAuthor()).isbn(book.getIsbn()).build());
+        }
+        return books;
+    }
+
+    // Sobe a aplicação inteira numa porta aleatória, com um índice de busca próprio para o benchmark.
+    // Datasource e demais propriedades podem ser trocados com -D na linha de comando (ex.: apontar para um PostgreSQL)
+    static ConfigurableApplicationContext startApplication(String... args) throws IOException {
+        List<String> arguments = new ArrayList<>();
+        arguments.add("--server.port=0");
+        arguments.add("--logging.level.root=WARN");
+        arguments.add("--library.search.index-dir=" + Files.createTempDirectory("book-index"));
+        arguments.addAll(List.of(args));
+        return new SpringApplicationBuilder(LibraryApiApplication.class).run(arguments.toArray(new String[0]));
+    }
+}
@@ -0,0 +1,79 @@
+package com.projeto.library.libraryapi.benchmark;
+
+import com.projeto.library.libraryapi.api.entity.Book;
+import com.projeto.library.libraryapi.service.BookService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.WebApplicationContext;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Caminho completo de uma requisição (MockMvc -> controller -> service -> H2) para cadastro, detalhe e listagem
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+public class BookApiBenchmark {
+
+    private static final int BOOKS = 1000;
+
+    private ConfigurableApplicationContext context;
+    private MockMvc mvc;
+    private Long existingId;
+    private final AtomicLong isbns = new AtomicLong(1_000_000_000L);
+
+    @Setup
+    public void setUp() throws Exception {
+        context = BenchmarkData.startApplication();
+        mvc = MockMvcBuilders.webAppContextSetup((WebApplicationContext) context).build();
+
+        List<Book> books = BenchmarkData.books(BOOKS);
+        books.forEach(book -> book.setId(null));
+        existingId = context.getBean(BookService.class).saveAll(books).getSaved().get(BOOKS / 2).getId();
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public byte[] create() throws Exception {
+        String json = "{\"title\":\"As aventuras\",\"author\":\"Leonardo\",\"isbn\":\"" + isbns.incrementAndGet() + "\"}";
+        return mvc.perform(MockMvcRequestBuilders.post("/api/books")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .accept(MediaType.APPLICATION_JSON)
+                        .content(json))
+                .andReturn().getResponse().getContentAsByteArray();
+    }
+
+    @Benchmark
+    public byte[] get() throws Exception {
+        return mvc.perform(MockMvcRequestBuilders.get("/api/books/" + existingId)
+                        .accept(MediaType.APPLICATION_JSON))
+                .andReturn().getResponse().getContentAsByteArray();
+    }
+
+    @Benchmark
+    public byte[] list() throws Exception {
+        return mvc.perform(MockMvcRequestBuilders.get("/api/books?author=leonardo&page=0&size=20")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andReturn().getResponse().getContentAsByteArray();
+    }
+}
@@ -0,0 +1,60 @@
+package com.projeto.library.libraryapi.benchmark;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Teste de carga com N requisições simultâneas contra uma aplicação já rodando.
+// Compara o modo normal (/api/books) com o profile "async" (/api/async/books).
+// {id} na URL vira um id sorteado entre 1 e o quarto argumento, para misturar acertos e faltas no cache:
+// mvn -Pbenchmark -DskipTests test-compile exec:java -Dexec.classpathScope=test \
+//     -Dexec.mainClass=com.projeto.library.libraryapi.benchmark.BookLoadTest \
+//     -Dexec.args="http://localhost:8080/api/async/books/{id} 5000 60 20000"
+// O gerador de carga deve rodar em outra máquina: na mesma, ele disputa CPU com a aplicação e o limite passa a ser ele
+public class BookLoadTest {
+
+    public static void main(String[] args) throws Exception {
+        String url = args[0];
+        int concurrency = args.length > 1 ? Integer.parseInt(args[1]) : 5000;
+        long seconds = args.length > 2 ? Long.parseLong(args[2]) : 60;
+        long maxId = args.length > 3 ? Long.parseLong(args[3]) : 1;
+
+        HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(30)).build();
+        Semaphore inFlight = new Semaphore(concurrency);
+        AtomicLong ok = new AtomicLong();
+        AtomicLong rejected = new AtomicLong();
+        AtomicLong failed = new AtomicLong();
+        AtomicLong totalLatencyNanos = new AtomicLong();
+
+        long end = System.nanoTime() + Duration.ofSeconds(seconds).toNanos();
+        while (System.nanoTime() < end) {
+            inFlight.acquire();
+            long id = ThreadLocalRandom.current().nextLong(1, maxId + 1);
+            HttpRequest request = HttpRequest.newBuilder(URI.create(url.replace("{id}", Long.toString(id))))
+                    .timeout(Duration.ofSeconds(60)).GET().build();
+            long start = System.nanoTime();
+            client.sendAsync(request, HttpResponse.BodyHandlers.discarding()).whenComplete((response, error) -> {
+                if (error == null && response.statusCode() == 200) {
+                    ok.incrementAndGet();
+                    totalLatencyNanos.addAndGet(System.nanoTime() - start);
+                } else if (error == null && response.statusCode() == 503) {
+                    rejected.incrementAndGet();
+                } else {
+                    failed.incrementAndGet();
+                }
+                inFlight.release();
+            });
+        }
+        // Espera as requisições que ainda estão no ar
+        inFlight.acquire(concurrency);
+
+        System.out.printf("concurrency=%d duration=%ds ok=%d rejected=%d failed=%d throughput=%.1f req/s mean latency=%.1f ms%n",
+                concurrency, seconds, ok.get(), rejected.get(), failed.get(), ok.get() / (double) seconds,
+                ok.get() == 0 ? 0 : totalLatencyNanos.get() / (double) ok.get() / 1_000_000);
+    }
+}
@@ -0,0 +1,61 @@
+package com.projeto.library.libraryapi.benchmark;
+
+import com.projeto.library.libraryapi.api.dto.BookDTO;
+import com.projeto.library.libraryapi.api.entity.Book;
+import com.projeto.library.libraryapi.api.mapper.BookMapper;
+import org.modelmapper.ModelMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// ModelMapper (reflexão) x BookMapper (escrito à mão) convertendo uma página de livros para BookDTO
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class BookMappingBenchmark {
+
+    @Param({"1000"})
+    int pageSize;
+
+    private List<Book> books;
+    private ModelMapper modelMapper;
+    private BookMapper bookMapper;
+
+    @Setup
+    public void setUp() {
+        books = BenchmarkData.books(pageSize);
+        modelMapper = new ModelMapper();
+        bookMapper = new BookMapper();
+    }
+
+    @Benchmark
+    public List<BookDTO> modelMapper() {
+        List<BookDTO> list = new ArrayList<>(books.size());
+        for (Book book : books) {
+            list.add(modelMapper.map(book, BookDTO.class));
+        }
+        return list;
+    }
+
+    @Benchmark
+    public List<BookDTO> bookMapper() {
+        List<BookDTO> list = new ArrayList<>(books.size());
+        for (Book book : books) {
+            list.add(bookMapper.toDto(book));
+        }
+        return list;
+    }
+}
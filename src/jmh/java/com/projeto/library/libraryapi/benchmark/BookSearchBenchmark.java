@@ -0,0 +1,106 @@
+package com.projeto.library.libraryapi.benchmark;
+
+import com.projeto.library.libraryapi.api.dto.BookDTO;
+import com.projeto.library.libraryapi.api.entity.Book;
+import com.projeto.library.libraryapi.repository.BookRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.Example;
+import org.springframework.data.domain.ExampleMatcher;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Consulta antiga do find (findAll com Example: entidades inteiras, sem índice a favor) x a projeção do findDtos,
+// que o GET /api/books usa, por "contém" (índice de trigrama) e por prefixo (text_pattern_ops), numa tabela grande.
+// Os índices só existem no PostgreSQL e vêm das migrações do Flyway, que só rodam no profile "prod":
+// -Djmh.args="BookSearchBenchmark -jvmArgs -Dspring.profiles.active=prod
+//  -jvmArgs -Dspring.datasource.url=jdbc:postgresql://localhost/library
+//  -jvmArgs -Dspring.datasource.username=... -jvmArgs -Dspring.datasource.password=..."
+// Os dois lados fazem a página e o count(*), sem cache
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+public class BookSearchBenchmark {
+
+    private static final String[] WORDS = {"aventuras", "memorias", "historias", "contos", "cronicas"};
+
+    @Param({"1000000"})
+    int rows;
+
+    private ConfigurableApplicationContext context;
+    private BookRepository bookRepository;
+    private Pageable pageable = PageRequest.of(0, 20);
+    private Book contains = Book.builder().title("0012345").build();
+    private Book prefix = Book.builder().title("contos 00123").build();
+
+    @Setup
+    public void setUp() throws Exception {
+        context = BenchmarkData.startApplication();
+        bookRepository = context.getBean(BookRepository.class);
+
+        // Popula direto por JDBC, a carga pelo service indexaria tudo no Lucene também
+        JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+        Long existing = jdbcTemplate.queryForObject("select count(*) from book", Long.class);
+        List<Object[]> batch = new ArrayList<>();
+        for (long i = existing == null ? 0 : existing; i < rows; i++) {
+            batch.add(new Object[]{-(i + 1), WORDS[(int) (i % WORDS.length)] + " " + String.format("%07d", i),
+                    "Autor " + (i % 1000), String.format("%013d", i)});
+            if (batch.size() == 10_000) {
+                jdbcTemplate.batchUpdate("insert into book (id, title, author, isbn) values (?, ?, ?, ?)", batch);
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty()) {
+            jdbcTemplate.batchUpdate("insert into book (id, title, author, isbn) values (?, ?, ?, ?)", batch);
+        }
+        try {
+            // Atualiza as estatísticas do planner do PostgreSQL depois da carga
+            jdbcTemplate.execute("analyze book");
+        } catch (DataAccessException e) {
+            // Sintaxe só do PostgreSQL, no H2 segue sem
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    // Como era o BookServiceImp.find: lower(col) like lower(?) montado pelo Example
+    @Benchmark
+    public Page<Book> exampleContains() {
+        return bookRepository.findAll(Example.of(contains, ExampleMatcher.matching()
+                .withIgnoreCase()
+                .withIgnoreNullValues()
+                .withStringMatcher(ExampleMatcher.StringMatcher.CONTAINING)), pageable);
+    }
+
+    @Benchmark
+    public Page<BookDTO> dtoContains() {
+        return bookRepository.findDtos(contains, ExampleMatcher.StringMatcher.CONTAINING, pageable);
+    }
+
+    @Benchmark
+    public Page<BookDTO> dtoPrefix() {
+        return bookRepository.findDtos(prefix, ExampleMatcher.StringMatcher.STARTING, pageable);
+    }
+}
@@ -0,0 +1,66 @@
+package com.projeto.library.libraryapi.benchmark;
+
+import com.projeto.library.libraryapi.api.entity.Book;
+import com.projeto.library.libraryapi.config.CacheConfig;
+import com.projeto.library.libraryapi.repository.BookRepository;
+import com.projeto.library.libraryapi.service.BookCounter;
+import com.projeto.library.libraryapi.service.BookSearchService;
+import com.projeto.library.libraryapi.service.BookService;
+import com.projeto.library.libraryapi.service.imp.BookServiceImp;
+import com.projeto.library.libraryapi.service.isbn.IsbnFilter;
+import com.projeto.library.libraryapi.service.isbn.IsbnIndex;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+
+import java.lang.reflect.Proxy;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+// Custo do BookServiceImp.find sem o banco: montagem do Example/ExampleMatcher a cada chamada.
+// O repositório é um proxy que devolve uma página vazia
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class FindExampleBenchmark {
+
+    private BookService bookService;
+    private Book filter;
+    private Pageable pageable;
+
+    @Setup
+    public void setUp() {
+        BookRepository bookRepository = (BookRepository) Proxy.newProxyInstance(
+                BookRepository.class.getClassLoader(),
+                new Class<?>[]{BookRepository.class},
+                (proxy, method, args) -> Page.empty((Pageable) args[1]));
+        BookSearchService bookSearchService = (BookSearchService) Proxy.newProxyInstance(
+                BookSearchService.class.getClassLoader(),
+                new Class<?>[]{BookSearchService.class},
+                (proxy, method, args) -> null);
+        bookService = new BookServiceImp(bookRepository, new IsbnFilter(bookRepository),
+                new IsbnIndex(bookRepository), bookSearchService,
+                new BookCounter(bookRepository, null, new ConcurrentMapCacheManager(CacheConfig.BOOK_COUNTS), 100_000),
+                new ConcurrentMapCacheManager(CacheConfig.BOOKS),
+                Duration.ofSeconds(5));
+        filter = Book.builder().title("aventuras").author("leonardo").build();
+        pageable = PageRequest.of(0, 20);
+    }
+
+    @Benchmark
+    public Page<Book> find() {
+        return bookService.find(filter, pageable);
+    }
+}
@@ -0,0 +1,80 @@
+package com.projeto.library.libraryapi.benchmark;
+
+import com.projeto.library.libraryapi.repository.BookRepository;
+import com.projeto.library.libraryapi.service.isbn.IsbnIndex;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+// Busca de id por isbn: IsbnIndex (mapa de long) contra um HashMap<String, Long> com o isbn como veio.
+// Rodar com -prof gc para ver a alocação por busca
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class IsbnIndexBenchmark {
+
+    @Param({"1000000"})
+    int books;
+
+    private IsbnIndex isbnIndex;
+    private Map<String, Long> hashMap;
+    private String[] isbns;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        BookRepository bookRepository = (BookRepository) Proxy.newProxyInstance(
+                BookRepository.class.getClassLoader(),
+                new Class<?>[]{BookRepository.class},
+                (proxy, method, args) -> method.getName().equals("count") ? 0L : Stream.empty());
+        isbnIndex = new IsbnIndex(bookRepository);
+        isbnIndex.load();
+        hashMap = new HashMap<>();
+        isbns = new String[books];
+        for (int i = 0; i < books; i++) {
+            isbns[i] = isbn13(978_000_000_000L + i * 7L);
+            isbnIndex.put(isbns[i], (long) i + 1);
+            hashMap.put(isbns[i], (long) i + 1);
+        }
+    }
+
+    @Benchmark
+    public long isbnIndex() {
+        return isbnIndex.idOf(nextIsbn());
+    }
+
+    @Benchmark
+    public Long hashMap() {
+        return hashMap.get(nextIsbn());
+    }
+
+    private String nextIsbn() {
+        next = (next + 7919) % isbns.length;
+        return isbns[next];
+    }
+
+    // Os 12 primeiros dígitos mais o dígito verificador
+    private static String isbn13(long first12) {
+        String digits = Long.toString(first12);
+        int sum = 0;
+        for (int i = 0; i < 12; i++) {
+            sum += (digits.charAt(i) - '0') * (i % 2 == 0 ? 1 : 3);
+        }
+        return digits + (10 - sum % 10) % 10;
+    }
+}
@@ -0,0 +1,108 @@
+package com.projeto.library.libraryapi.benchmark;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.projeto.library.libraryapi.api.dto.BookDTO;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+// Serialização da Page<BookDTO> que o find devolve, em JSON e nos formatos binários (ver BinaryFormatConfig).
+// O tamanho de cada formato sai no resultado do payloadSize (ver PayloadSize)
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class PageSerializationBenchmark {
+
+    @Param({"20", "1000"})
+    int pageSize;
+
+    private ObjectMapper json;
+    private ObjectMapper cbor;
+    private ObjectMapper smile;
+    private Page<BookDTO> page;
+    private byte[] jsonBytes;
+    private byte[] cborBytes;
+    private byte[] smileBytes;
+
+    @Setup
+    public void setUp() throws JsonProcessingException {
+        json = Jackson2ObjectMapperBuilder.json().build();
+        cbor = Jackson2ObjectMapperBuilder.cbor().build();
+        smile = Jackson2ObjectMapperBuilder.smile().build();
+        page = new PageImpl<>(BenchmarkData.bookDTOs(pageSize), PageRequest.of(0, pageSize), 100_000);
+
+        jsonBytes = json.writeValueAsBytes(page);
+        cborBytes = cbor.writeValueAsBytes(page);
+        smileBytes = smile.writeValueAsBytes(page);
+    }
+
+    // Tamanho em bytes da página em cada formato, como métricas secundárias do JMH (jsonBytes, cborBytes, smileBytes)
+    // no target/jmh-result.json. Os contadores EVENTS são somados entre iterações, por isso uma única execução
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class PayloadSize {
+        public long jsonBytes;
+        public long cborBytes;
+        public long smileBytes;
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @Warmup(iterations = 0)
+    @Measurement(iterations = 1)
+    public void payloadSize(PayloadSize size) {
+        size.jsonBytes = jsonBytes.length;
+        size.cborBytes = cborBytes.length;
+        size.smileBytes = smileBytes.length;
+    }
+
+    @Benchmark
+    public byte[] json() throws JsonProcessingException {
+        return json.writeValueAsBytes(page);
+    }
+
+    @Benchmark
+    public byte[] cbor() throws JsonProcessingException {
+        return cbor.writeValueAsBytes(page);
+    }
+
+    @Benchmark
+    public byte[] smile() throws JsonProcessingException {
+        return smile.writeValueAsBytes(page);
+    }
+
+    // Leitura do lado do cliente
+    @Benchmark
+    public JsonNode readJson() throws IOException {
+        return json.readTree(jsonBytes);
+    }
+
+    @Benchmark
+    public JsonNode readCbor() throws IOException {
+        return cbor.readTree(cborBytes);
+    }
+
+    @Benchmark
+    public JsonNode readSmile() throws IOException {
+        return smile.readTree(smileBytes);
+    }
+}
@@ -1,6 +1,6 @@
 package com.projeto.library.libraryapi;
 
-import org.modelmapper.ModelMapper;
+import com.projeto.library.libraryapi.api.mapper.BookMapper;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.context.annotation.Bean;
@@ -9,11 +9,11 @@ import org.springframework.context.annotation.Bean;
 @SpringBootApplication
 public class LibraryApiApplication {
 
-	// Adicionar o ModelMapper ao contexto
-	// Retorna uma instancia singleton do ModelMapper para servir toda a aplicação
+	// Adicionar o BookMapper ao contexto
+	// Retorna uma instancia singleton do BookMapper para servir toda a aplicação
 	@Bean
-	public ModelMapper modelMapper(){
-		return new ModelMapper();
+	public BookMapper bookMapper(){
+		return new BookMapper();
 	}
 
 	public static void main(String[] args) {
@@ -0,0 +1,143 @@
+package com.projeto.library.libraryapi.api.cache;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.projeto.library.libraryapi.api.dto.BookDTO;
+import com.projeto.library.libraryapi.api.entity.Book;
+import com.projeto.library.libraryapi.config.CacheConfig;
+import lombok.Getter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.data.domain.ExampleMatcher;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.zip.GZIPOutputStream;
+
+// Páginas do GET /api/books já serializadas (e comprimidas com gzip), por filtro + paginação + formato.
+// Um acerto devolve os bytes direto, sem consulta, conversão nem Jackson.
+// Qualquer escrita pelo BookService limpa o cache inteiro (CacheConfig.BOOK_PAGES); o TTL curto cobre
+// outras instâncias da aplicação e leituras concorrentes com a escrita. Desligado por padrão (library.page-cache.enabled)
+@Component
+public class BookPageCache {
+
+    private final Cache cache;
+    private final boolean enabled;
+    private final int gzipMinSize;
+    // Formatos que podem ser servidos do cache, na ordem de preferência quando o cliente aceita qualquer um
+    private final Map<MediaType, ObjectMapper> mappers = new LinkedHashMap<>();
+
+    public BookPageCache(CacheManager cacheManager, ObjectMapper objectMapper,
+                         MappingJackson2CborHttpMessageConverter cborConverter,
+                         MappingJackson2SmileHttpMessageConverter smileConverter,
+                         @Value("${library.page-cache.enabled:false}") boolean enabled,
+                         @Value("${server.compression.min-response-size:2KB}") DataSize gzipMinSize) {
+        this.cache = cacheManager.getCache(CacheConfig.BOOK_PAGES);
+        this.enabled = enabled && cache != null;
+        this.gzipMinSize = (int) gzipMinSize.toBytes();
+        mappers.put(MediaType.APPLICATION_JSON, objectMapper);
+        mappers.put(MediaType.APPLICATION_CBOR, cborConverter.getObjectMapper());
+        mappers.put(new MediaType("application", "x-jackson-smile"), smileConverter.getObjectMapper());
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    // Formato pedido no Accept que pode vir do cache; vazio quando o cliente só aceita outros formatos
+    public Optional<MediaType> negotiate(String accept) {
+        if (accept == null || accept.trim().isEmpty()) {
+            return Optional.of(MediaType.APPLICATION_JSON);
+        }
+        List<MediaType> acceptable;
+        try {
+            acceptable = MediaType.parseMediaTypes(accept);
+        } catch (IllegalArgumentException e) {
+            return Optional.empty();
+        }
+        MediaType.sortBySpecificityAndQuality(acceptable);
+        for (MediaType type : acceptable) {
+            for (MediaType supported : mappers.keySet()) {
+                if (type.includes(supported)) {
+                    return Optional.of(supported);
+                }
+            }
+        }
+        return Optional.empty();
+    }
+
+    // Os textos do filtro vão em minúsculas porque a busca já ignora maiúsculas.
+    // Uma lista, como a chave do BookServiceImp.findKey: cada parte é comparada separada, então um "|" no texto
+    // não junta duas buscas diferentes, e filtro nulo (sem filtro) continua diferente de vazio (like '%%')
+    public List<Object> key(Book filter, Pageable pageable, ExampleMatcher.StringMatcher matcher, boolean exactCount,
+                            MediaType format) {
+        return Arrays.asList(format, matcher, exactCount, filter.getId(),
+                lower(filter.getTitle()), lower(filter.getAuthor()), lower(filter.getIsbn()), pageable);
+    }
+
+    public CachedPage get(List<Object> key) {
+        return cache.get(key, CachedPage.class);
+    }
+
+    public CachedPage put(List<Object> key, Page<BookDTO> page, String etag, MediaType format) {
+        byte[] body;
+        try {
+            body = mappers.get(format).writeValueAsBytes(page);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+        CachedPage cached = new CachedPage(format, etag, body, body.length >= gzipMinSize ? gzip(body) : null);
+        cache.put(key, cached);
+        return cached;
+    }
+
+    private static String lower(String value) {
+        return value == null ? null : value.toLowerCase(Locale.ROOT);
+    }
+
+    private static byte[] gzip(byte[] body) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(body.length / 4);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(body);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    @Getter
+    public static class CachedPage {
+        private final MediaType mediaType;
+        private final String etag;
+        private final byte[] body;
+        // null quando o corpo é pequeno demais para compensar o gzip
+        private final byte[] gzipBody;
+
+        CachedPage(MediaType mediaType, String etag, byte[] body, byte[] gzipBody) {
+            this.mediaType = mediaType;
+            this.etag = etag;
+            this.body = body;
+            this.gzipBody = gzipBody;
+        }
+
+        // Peso no cache, em bytes
+        public int weight() {
+            return body.length + (gzipBody == null ? 0 : gzipBody.length);
+        }
+    }
+}
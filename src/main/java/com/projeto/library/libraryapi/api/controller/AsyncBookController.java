@@ -0,0 +1,81 @@
+package com.projeto.library.libraryapi.api.controller;
+
+import com.projeto.library.libraryapi.api.dto.BookDTO;
+import com.projeto.library.libraryapi.api.entity.Book;
+import com.projeto.library.libraryapi.api.mapper.BookMapper;
+import com.projeto.library.libraryapi.config.AsyncConfig;
+import com.projeto.library.libraryapi.config.CacheConfig;
+import com.projeto.library.libraryapi.service.BookService;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.data.domain.ExampleMatcher;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.concurrent.CompletableFuture;
+
+// Mesmas leituras do BookController, mas assíncronas (Servlet 3 async), só com o profile "async".
+// Livro que já está no cache sai na hora, na própria thread do Tomcat; o resto vai para o bookExecutor,
+// e a thread do Tomcat volta para atender outras conexões enquanto a consulta espera uma conexão do banco
+@RestController
+@Profile("async")
+@RequestMapping("/api/async/books")
+public class AsyncBookController {
+
+    private BookService bookService;
+    private BookMapper bookMapper;
+    private TaskExecutor bookExecutor;
+    private Cache books;
+
+    public AsyncBookController(BookService bookService, BookMapper bookMapper, CacheManager cacheManager,
+                               @Qualifier(AsyncConfig.BOOK_EXECUTOR) TaskExecutor bookExecutor) {
+        this.bookService = bookService;
+        this.bookMapper = bookMapper;
+        this.bookExecutor = bookExecutor;
+        this.books = cacheManager.getCache(CacheConfig.BOOKS);
+    }
+
+    // O ETag e o Last-Modified vão no ResponseEntity, e o Spring responde 304 sozinho quando batem
+    @GetMapping("{id}")
+    public CompletableFuture<ResponseEntity<BookDTO>> get(@PathVariable Long id) {
+        BookDTO cached = books == null ? null : books.get(id, BookDTO.class);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(withTags(cached));
+        }
+        return CompletableFuture.supplyAsync(() -> bookService
+                .getDtoById(id)
+                .map(this::withTags)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND)), bookExecutor);
+    }
+
+    @GetMapping
+    public CompletableFuture<Page<BookDTO>> find(BookDTO bookDTO, Pageable pageable,
+                                                 @RequestParam(defaultValue = "false") boolean exactCount) {
+        Book filter = bookMapper.toEntity(bookDTO);
+        return CompletableFuture.supplyAsync(() -> bookService
+                .findDtos(filter, pageable, ExampleMatcher.StringMatcher.CONTAINING, exactCount), bookExecutor);
+    }
+
+    // Fila do bookExecutor cheia
+    @ExceptionHandler(TaskRejectedException.class)
+    @ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+    public void handleRejectedTask() {
+    }
+
+    private ResponseEntity<BookDTO> withTags(BookDTO book) {
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .eTag("\"" + book.getId() + "-" + (book.getVersion() == null ? 0 : book.getVersion()) + "\"");
+        if (book.getLastModified() != null) {
+            response.lastModified(book.getLastModified());
+        }
+        return response.body(book);
+    }
+}
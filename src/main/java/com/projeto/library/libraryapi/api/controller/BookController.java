@@ -1,37 +1,106 @@
 package com.projeto.library.libraryapi.api.controller;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.projeto.library.libraryapi.api.cache.BookPageCache;
+import com.projeto.library.libraryapi.api.dto.BookBatchErrorDTO;
+import com.projeto.library.libraryapi.api.dto.BookBatchResultDTO;
+import com.projeto.library.libraryapi.api.dto.BookCursorPageDTO;
 import com.projeto.library.libraryapi.api.dto.BookDTO;
+import com.projeto.library.libraryapi.api.dto.BookMultiGetResultDTO;
+import com.projeto.library.libraryapi.api.dto.BookPatchResultDTO;
 import com.projeto.library.libraryapi.api.entity.Book;
 import com.projeto.library.libraryapi.api.exceptions.ApiErrors;
 import com.projeto.library.libraryapi.api.exceptions.BusinessExeption;
+import com.projeto.library.libraryapi.api.mapper.BookMapper;
+import com.projeto.library.libraryapi.config.datasource.PrimaryReads;
+import com.projeto.library.libraryapi.service.BookBatchResult;
+import com.projeto.library.libraryapi.service.BookCursor;
+import com.projeto.library.libraryapi.service.BookSearchService;
 import com.projeto.library.libraryapi.service.BookService;
-import org.modelmapper.ModelMapper;
+import com.projeto.library.libraryapi.util.IsbnKeys;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.data.domain.ExampleMatcher;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.util.DigestUtils;
 import org.springframework.validation.BindingResult;
 import org.springframework.validation.ObjectError;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.server.ResponseStatusException;
 
+import javax.servlet.http.HttpServletResponse;
+import javax.validation.ConstraintViolation;
 import javax.validation.Valid;
+import javax.validation.Validator;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @RestController
 @RequestMapping("/api/books")
 public class BookController {
 
+    // Quantidade de linhas da carga em lote enviadas de cada vez para o service
+    private static final int BATCH_SIZE = 500;
+
+    private static final String APPLICATION_NDJSON = "application/x-ndjson";
+
+    private static final String APPLICATION_MERGE_PATCH_JSON = "application/merge-patch+json";
+
+    // Tamanho máximo de página na paginação por cursor
+    private static final int MAX_PAGE_SIZE = 1000;
+
+    // Propriedades do BookDTO que podem ser pedidas no fields (sparse fieldset)
+    private static final Set<String> SPARSE_FIELDS =
+            Collections.unmodifiableSet(new LinkedHashSet<>(Arrays.asList("id", "title", "author", "isbn")));
+
     // Injeção de dependencia
     private BookService bookService;
-    private ModelMapper modelMapper;
+    private BookSearchService bookSearchService;
+    private BookMapper bookMapper;
+    private ObjectMapper objectMapper;
+    private Validator validator;
+    private BookPageCache bookPageCache;
 
-    public BookController(BookService bookService, ModelMapper modelMapper) {
+    public BookController(BookService bookService, BookSearchService bookSearchService, BookMapper bookMapper,
+                          ObjectMapper objectMapper, Validator validator, BookPageCache bookPageCache) {
         this.bookService = bookService;
-        this.modelMapper = modelMapper;
+        this.bookSearchService = bookSearchService;
+        this.bookMapper = bookMapper;
+        this.objectMapper = objectMapper;
+        this.validator = validator;
+        this.bookPageCache = bookPageCache;
     }
 
     @PostMapping
@@ -43,9 +112,8 @@ public class BookController {
         // Book entity = Book.builder().author(bookDTO.getAuthor()).title(bookDTO.getTitle()).isbn(bookDTO.getIsbn()).build();
 
         // Converto o BookDTO para Book
-        // Com o ModelMapper
-        // Já trasnfere todas as propriedades de mesmo nome para a instancia do Book
-        Book entity = modelMapper.map(bookDTO, Book.class);
+        // Com o BookMapper, que copia as propriedades sem reflexão
+        Book entity = bookMapper.toEntity(bookDTO);
 
 
         entity = bookService.save(entity);
@@ -57,51 +125,541 @@ public class BookController {
 //                .title(entity.getTitle())
 //                .isbn(entity.getIsbn())
 //                .build();
-        // Mesmo result só que com o ModelMapper
-        return modelMapper.map(entity, BookDTO.class);
+        // Mesmo result só que com o BookMapper
+        return bookMapper.toDto(entity);
     }
 
+    // Carga em lote com um array JSON de livros
+    // Não falha a carga inteira por causa de uma linha, os erros voltam por linha no corpo da resposta
+    @PostMapping(value = "batch", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public BookBatchResultDTO createBooks(@RequestBody List<BookDTO> books) {
+        BookBatchResultDTO result = new BookBatchResultDTO();
+        for (int start = 0; start < books.size(); start += BATCH_SIZE) {
+            saveBatch(books.subList(start, Math.min(start + BATCH_SIZE, books.size())), start, result);
+        }
+        result.getErrors().sort(Comparator.comparingInt(BookBatchErrorDTO::getRow));
+        return result;
+    }
+
+    // Mesma carga em lote, mas com um livro por linha (NDJSON)
+    // O corpo é lido aos poucos, então o arquivo inteiro nunca fica em memória.
+    // Cada linha é convertida sozinha: uma linha com JSON inválido vira erro dessa linha, como as outras validações,
+    // e a carga continua (os lotes anteriores já foram gravados)
+    @PostMapping(value = "batch", consumes = APPLICATION_NDJSON)
+    public BookBatchResultDTO createBooksFromStream(InputStream body) throws IOException {
+        BookBatchResultDTO result = new BookBatchResultDTO();
+        ObjectReader reader = objectMapper.readerFor(BookDTO.class);
+        List<BookDTO> batch = new ArrayList<>(BATCH_SIZE);
+        int start = 0;
+        try (BufferedReader lines = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = lines.readLine()) != null) {
+                if (line.trim().isEmpty()) {
+                    continue;
+                }
+                BookDTO bookDTO;
+                try {
+                    bookDTO = reader.readValue(line);
+                } catch (JsonProcessingException e) {
+                    // Grava o que veio antes, para a linha com erro ficar na posição dela
+                    saveBatch(batch, start, result);
+                    start += batch.size();
+                    batch.clear();
+                    result.getErrors().add(new BookBatchErrorDTO(start, null,
+                            Collections.singletonList("JSON inválido: " + e.getOriginalMessage())));
+                    start++;
+                    continue;
+                }
+                batch.add(bookDTO);
+                if (batch.size() == BATCH_SIZE) {
+                    saveBatch(batch, start, result);
+                    start += batch.size();
+                    batch.clear();
+                }
+            }
+        }
+        saveBatch(batch, start, result);
+        result.getErrors().sort(Comparator.comparingInt(BookBatchErrorDTO::getRow));
+        return result;
+    }
+
+    // Valida as linhas do lote e manda as válidas para o service
+    // start é a posição da primeira linha do lote na carga, para os erros apontarem a linha certa
+    private void saveBatch(List<BookDTO> rows, int start, BookBatchResultDTO result) {
+        List<Book> books = new ArrayList<>(rows.size());
+        List<Integer> positions = new ArrayList<>(rows.size());
+        for (int i = 0; i < rows.size(); i++) {
+            BookDTO bookDTO = rows.get(i);
+            if (bookDTO == null) {
+                result.getErrors().add(new BookBatchErrorDTO(start + i, null, Collections.singletonList("Livro não informado")));
+                continue;
+            }
+            List<String> errors = validator.validate(bookDTO).stream()
+                    .map(ConstraintViolation::getMessage)
+                    .collect(Collectors.toList());
+            if (!errors.isEmpty()) {
+                result.getErrors().add(new BookBatchErrorDTO(start + i, bookDTO.getIsbn(), errors));
+                continue;
+            }
+            books.add(bookMapper.toEntity(bookDTO));
+            positions.add(start + i);
+        }
+        if (books.isEmpty()) {
+            return;
+        }
+
+        BookBatchResult saved = bookService.saveAll(books);
+        result.setCreated(result.getCreated() + saved.getSaved().size());
+        saved.getErrors().forEach((index, message) -> result.getErrors().add(
+                new BookBatchErrorDTO(positions.get(index), books.get(index).getIsbn(), Collections.singletonList(message))));
+    }
+
+    // Devolve ETag (id + versão) e Last-Modified. Se o cliente mandar If-None-Match/If-Modified-Since
+    // e o livro não mudou, responde 304 sem converter nem serializar o livro
+    // A consulta já devolve o BookDTO, sem carregar a entidade nem passar pelo BookMapper
     @GetMapping("{id}")
-    public BookDTO get(@PathVariable Long id){
-        return bookService
-                .getById(id)
-                .map(book -> modelMapper.map(book, BookDTO.class)) // Se encontrar o livro, ele vai ser mapeado para o BookDTO
+    public BookDTO get(@PathVariable Long id, WebRequest request){
+        BookDTO book = bookService
+                .getDtoById(id)
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND)); // Se o livro não for encontrado
+        return notModifiedOrBook(book, request);
+    }
+
+    private BookDTO notModifiedOrBook(BookDTO book, WebRequest request) {
+        if (request.checkNotModified(etag(book.getId(), book.getVersion()), lastModified(book))) {
+            return null;
+        }
+        return book;
+    }
+
+    // Sparse fieldset: ?fields=id,title devolve só essas propriedades, e o SELECT só leva essas colunas.
+    // Id e versão são lidos sempre para o ETag, que é fraco (W/) porque o corpo não é o livro inteiro
+    @GetMapping(value = "{id}", params = "fields")
+    public Map<String, Object> get(@PathVariable Long id, @RequestParam List<String> fields, WebRequest request){
+        Set<String> selected = sparseFields(fields);
+        Map<String, Object> book = bookService
+                .getFieldsById(id, withTagFields(selected, "lastModified"))
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND));
+
+        Instant lastModified = (Instant) book.get("lastModified");
+        if (request.checkNotModified("W/" + etag(id, (Long) book.get("version")),
+                lastModified == null ? -1 : lastModified.toEpochMilli())) {
+            return null;
+        }
+        book.keySet().retainAll(selected);
+        return book;
+    }
+
+    // Vários livros numa requisição só (?ids=1,2,3), resolvidos com consultas IN em vez de um GET por livro
+    @GetMapping(params = "ids")
+    public BookMultiGetResultDTO getBooks(@RequestParam List<Long> ids){
+        if (ids.size() > MAX_PAGE_SIZE) {
+            throw new BusinessExeption("Máximo de " + MAX_PAGE_SIZE + " livros por requisição");
+        }
+        Set<Long> requested = new LinkedHashSet<>(ids);
+        requested.remove(null);
+        List<BookDTO> books = bookService.getByIds(requested);
+        Set<Long> notFound = new LinkedHashSet<>(requested);
+        books.forEach(book -> notFound.remove(book.getId()));
 
+        BookMultiGetResultDTO result = new BookMultiGetResultDTO();
+        result.setBooks(books);
+        result.getNotFound().addAll(notFound);
+        return result;
+    }
+
+    // Busca pelo isbn (ISBN-10 ou ISBN-13, com ou sem hífens), com o mesmo ETag e cache do get por id
+    @GetMapping("isbn/{isbn}")
+    public BookDTO getByIsbn(@PathVariable String isbn, WebRequest request){
+        Optional<BookDTO> book = bookService
+                .findIdByIsbn(isbn)
+                .flatMap(bookService::getDtoById)
+                .filter(found -> sameIsbn(found.getIsbn(), isbn));
+        if (!book.isPresent()) {
+            // O IsbnIndex pode estar para trás: o livro foi apagado ou trocou de isbn em outra instância
+            book = bookService.findIdByIsbnInDatabase(isbn).flatMap(bookService::getDtoById);
+        }
+        return notModifiedOrBook(book.orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND)), request);
+    }
+
+    // Mesmo ISBN-13 (ISBN-10 e ISBN-13 do mesmo livro), ou o mesmo texto quando não é ISBN válido
+    private static boolean sameIsbn(String isbn, String requested) {
+        long key = IsbnKeys.key(requested);
+        return key == IsbnKeys.INVALID ? requested.equals(isbn) : key == IsbnKeys.key(isbn);
     }
 
     @DeleteMapping("{id}")
     @ResponseStatus(HttpStatus.NO_CONTENT)
     public void deleteBook(@PathVariable Long id){
-        // Se não achar o livro, nvai ser lançado a exeption not found
-        Book book = bookService.getById(id).orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND));
-        bookService.delete(book);
+        // Um único DELETE; se nenhuma linha foi apagada o livro não existe e vai ser lançado a exeption not found
+        if (!bookService.delete(id)) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND);
+        }
     }
 
     @PutMapping("{id}")
     // Por default retorna status 200
-    public BookDTO updateBook(@PathVariable Long id, BookDTO bookDTO){
-        Book book = bookService.getById(id).orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND));
-        book.setAuthor(bookDTO.getAuthor());
-        book.setTitle(bookDTO.getTitle());
-        book = bookService.update(book);
-        return modelMapper.map(book, BookDTO.class);
+    // Com If-Match, só altera se o livro ainda estiver na versão que o cliente leu (senão 412)
+    public ResponseEntity<BookDTO> updateBook(@PathVariable Long id, @RequestBody @Valid BookDTO bookDTO,
+                                              @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch){
+        // A versão do If-Match vai na própria condição do UPDATE, sem ler o livro antes
+        Long version = ifMatch == null ? null : expectedVersion(id, ifMatch);
+        Book book;
+        try {
+            book = bookService.update(id, bookDTO.getTitle(), bookDTO.getAuthor(), version)
+                    .orElseThrow(() -> notFound(ifMatch));
+        } catch (OptimisticLockingFailureException e) {
+            // Só a condição do If-Match gera essa exceção; sem ele o livro é alterado na versão que estiver
+            if (ifMatch == null) {
+                throw e;
+            }
+            throw new ResponseStatusException(HttpStatus.PRECONDITION_FAILED);
+        }
+        return ResponseEntity.ok().eTag(etag(book)).body(bookMapper.toDto(book));
+    }
+
+    // JSON Merge Patch (RFC 7396): só os campos enviados são alterados, e o UPDATE só leva essas colunas
+    // Aceita If-Match como o PUT
+    @PatchMapping(value = "{id}", consumes = APPLICATION_MERGE_PATCH_JSON)
+    public ResponseEntity<BookDTO> patchBook(@PathVariable Long id, @RequestBody JsonNode patch,
+                                             @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch){
+        Map<String, Object> changes = changesOf(patch);
+        Long version = ifMatch == null ? null : expectedVersion(id, ifMatch);
+        Book book;
+        try {
+            book = bookService.patch(id, changes, version)
+                    .orElseThrow(() -> notFound(ifMatch));
+        } catch (OptimisticLockingFailureException e) {
+            // Só a condição do If-Match gera essa exceção; sem ele o livro é alterado na versão que estiver
+            if (ifMatch == null) {
+                throw e;
+            }
+            throw new ResponseStatusException(HttpStatus.PRECONDITION_FAILED);
+        }
+        return ResponseEntity.ok().eTag(etag(book)).body(bookMapper.toDto(book));
+    }
+
+    // O mesmo merge patch aplicado a vários livros de uma vez (?ids=1,2,3), com um único UPDATE.
+    // O patch vazio ({}) não altera nada e só devolve as versões atuais
+    @PatchMapping(params = "ids", consumes = APPLICATION_MERGE_PATCH_JSON)
+    public BookPatchResultDTO patchBooks(@RequestParam List<Long> ids, @RequestBody JsonNode patch){
+        if (ids.size() > MAX_PAGE_SIZE) {
+            throw new BusinessExeption("Máximo de " + MAX_PAGE_SIZE + " livros por requisição");
+        }
+        // ?ids=1,,2 chega com um null no meio
+        if (ids.contains(null)) {
+            throw new BusinessExeption("Ids não podem ser vazios");
+        }
+        Map<String, Object> changes = changesOf(patch);
+        Set<Long> notFound = new LinkedHashSet<>(ids);
+        List<Book> patched = bookService.patchAll(notFound, changes);
+
+        BookPatchResultDTO result = new BookPatchResultDTO();
+        result.setUpdated(changes.isEmpty() ? 0 : patched.size());
+        patched.forEach(book -> {
+            notFound.remove(book.getId());
+            result.getVersions().put(book.getId(), book.getVersion() == null ? 0 : book.getVersion());
+        });
+        result.getNotFound().addAll(notFound);
+        return result;
+    }
+
+    // Converte o merge patch em campo -> novo valor, validando cada campo com as mesmas regras do BookDTO.
+    // null no merge patch significa remover o campo, o que a validação recusa (todos são obrigatórios)
+    private Map<String, Object> changesOf(JsonNode patch) {
+        if (patch == null || !patch.isObject()) {
+            throw new BusinessExeption("O merge patch precisa ser um objeto JSON");
+        }
+        Map<String, Object> changes = new LinkedHashMap<>();
+        Iterator<Map.Entry<String, JsonNode>> fields = patch.fields();
+        while (fields.hasNext()) {
+            Map.Entry<String, JsonNode> field = fields.next();
+            String name = field.getKey();
+            JsonNode value = field.getValue();
+            if (!BookService.PATCHABLE_FIELDS.contains(name)) {
+                throw new BusinessExeption("Campo não pode ser alterado: " + name);
+            }
+            if (!value.isNull() && !value.isTextual()) {
+                throw new BusinessExeption("Campo " + name + " precisa ser texto");
+            }
+            String text = value.isNull() ? null : value.asText();
+            validator.validateValue(BookDTO.class, name, text).stream().findFirst().ifPresent(violation -> {
+                throw new BusinessExeption(name + ": " + violation.getMessage());
+            });
+            changes.put(name, text);
+        }
+        return changes;
     }
 
     // Quando for passado na query params as propriedades, o spring já encaixa com o nome do DTO
     // A mesma coisa com o pageable
+    // match=prefix busca os textos pelo começo, o que usa índice; o padrão (contains) busca em qualquer posição
     @GetMapping
-    public Page<BookDTO> find(BookDTO bookDTO, Pageable pageable) {
-        Book filter = modelMapper.map(bookDTO, Book.class);
-        Page<Book> result = bookService.find(filter, pageable);
+    // O ETag da página muda se mudar qualquer livro dela, a ordem ou o total
+    // Com o BookPageCache ligado, uma página repetida sai direto dos bytes guardados (já em gzip se o cliente aceitar)
+    // O total pode ser aproximado (totalExact no JSON, ver BookCounter); exactCount=true força o count(*)
+    public ResponseEntity<?> find(BookDTO bookDTO, Pageable pageable,
+                                  @RequestParam(defaultValue = "contains") String match,
+                                  @RequestParam(defaultValue = "false") boolean exactCount, WebRequest request) {
+        Book filter = bookMapper.toEntity(bookDTO);
+        ExampleMatcher.StringMatcher matcher = stringMatcher(match);
+        Optional<MediaType> format = bookPageCache.isEnabled()
+                ? bookPageCache.negotiate(request.getHeader(HttpHeaders.ACCEPT))
+                : Optional.empty();
+        if (!format.isPresent()) {
+            Page<BookDTO> result = bookService.findDtos(filter, pageable, matcher, exactCount);
+            if (request.checkNotModified(etag(result))) {
+                return null;
+            }
+            return ResponseEntity.ok(result);
+        }
+
+        List<Object> key = bookPageCache.key(filter, pageable, matcher, exactCount, format.get());
+        BookPageCache.CachedPage page = bookPageCache.get(key);
+        if (page == null) {
+            // A página vai para o cache, então é lida do primário (ver PrimaryReads)
+            Page<BookDTO> result = PrimaryReads.call(() -> bookService.findDtos(filter, pageable, matcher, exactCount));
+            page = bookPageCache.put(key, result, etag(result), format.get());
+        }
+        boolean gzip = page.getGzipBody() != null && acceptsGzip(request.getHeader(HttpHeaders.ACCEPT_ENCODING));
+        if (request.checkNotModified(etag(page.getEtag(), page.getMediaType(), gzip))) {
+            return null;
+        }
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .contentType(page.getMediaType())
+                .varyBy(HttpHeaders.ACCEPT, HttpHeaders.ACCEPT_ENCODING);
+        // Com o Content-Encoding já definido o Tomcat não comprime de novo
+        if (gzip) {
+            return response.header(HttpHeaders.CONTENT_ENCODING, "gzip").body(page.getGzipBody());
+        }
+        return response.body(page.getBody());
+    }
+
+    // ETag forte de cada representação da página: formato e encoding mudam os bytes, então entram no ETag
+    // como o formato entra na chave do BookPageCache (o encoding não: a mesma entrada guarda as duas versões)
+    private static String etag(String pageEtag, MediaType mediaType, boolean gzip) {
+        return pageEtag.substring(0, pageEtag.length() - 1) + "-" + mediaType.getSubtype() + (gzip ? "-gzip" : "") + "\"";
+    }
+
+    private boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        for (String encoding : acceptEncoding.split(",")) {
+            String[] parts = encoding.trim().split(";");
+            if (parts[0].trim().equalsIgnoreCase("gzip")) {
+                // gzip;q=0 significa que o cliente recusa
+                return parts.length == 1 || !parts[1].trim().matches("q=0(\\.0*)?");
+            }
+        }
+        return false;
+    }
+
+    private String etag(Book book) {
+        return etag(book.getId(), book.getVersion());
+    }
+
+    private String etag(Long id, Long version) {
+        return "\"" + id + "-" + (version == null ? 0 : version) + "\"";
+    }
+
+    private String etag(Page<BookDTO> page) {
+        return etag(page, book -> book.getId() + "-" + book.getVersion());
+    }
+
+    // bookTag: o "id-versão" de cada livro da página
+    private <T> String etag(Page<T> page, Function<T, String> bookTag) {
+        StringBuilder content = new StringBuilder()
+                .append(page.getNumber()).append(':')
+                .append(page.getSize()).append(':')
+                .append(page.getTotalElements()).append(':')
+                .append(page.getSort());
+        page.forEach(book -> content.append(':').append(bookTag.apply(book)));
+        return "\"" + DigestUtils.md5DigestAsHex(content.toString().getBytes(StandardCharsets.UTF_8)) + "\"";
+    }
+
+    private long lastModified(BookDTO book) {
+        return book.getLastModified() == null ? -1 : book.getLastModified().toEpochMilli();
+    }
+
+    // Livro que não existe: com If-Match (inclusive *) a pré-condição falhou, já que não há versão atual
+    // para comparar (RFC 7232, 3.1), então é 412 e não 404
+    private static ResponseStatusException notFound(String ifMatch) {
+        return new ResponseStatusException(ifMatch == null ? HttpStatus.NOT_FOUND : HttpStatus.PRECONDITION_FAILED);
+    }
+
+    // Versão que o If-Match exige, lida do ETag "id-versão"; null quando é * (qualquer versão).
+    // If-Match pode trazer vários ETags separados por vírgula; nenhum deste livro já é 412
+    private Long expectedVersion(Long id, String ifMatch) {
+        String prefix = "\"" + id + "-";
+        for (String candidate : ifMatch.split(",")) {
+            String value = candidate.trim();
+            if (value.equals("*")) {
+                return null;
+            }
+            if (value.startsWith(prefix) && value.endsWith("\"") && value.length() > prefix.length() + 1) {
+                try {
+                    return Long.valueOf(value.substring(prefix.length(), value.length() - 1));
+                } catch (NumberFormatException e) {
+                    // ETag que não foi gerado por nós, tenta o próximo
+                }
+            }
+        }
+        throw new ResponseStatusException(HttpStatus.PRECONDITION_FAILED);
+    }
+
+    // Campos pedidos no fields, na ordem do BookDTO; aceita tanto fields=id,title quanto fields=id&fields=title
+    private Set<String> sparseFields(List<String> fields) {
+        Set<String> requested = new LinkedHashSet<>();
+        for (String field : fields) {
+            String name = field.trim();
+            if (name.isEmpty()) {
+                continue;
+            }
+            if (!SPARSE_FIELDS.contains(name)) {
+                throw new BusinessExeption("Campo inválido: " + name);
+            }
+            requested.add(name);
+        }
+        if (requested.isEmpty()) {
+            throw new BusinessExeption("Nenhum campo informado");
+        }
+        Set<String> selected = new LinkedHashSet<>(SPARSE_FIELDS);
+        selected.retainAll(requested);
+        return selected;
+    }
+
+    // Os campos pedidos mais o id e a versão (e os extras), que o ETag precisa mesmo quando não foram pedidos
+    private List<String> withTagFields(Set<String> selected, String... extras) {
+        Set<String> fields = new LinkedHashSet<>(selected);
+        fields.add("id");
+        fields.add("version");
+        fields.addAll(Arrays.asList(extras));
+        return new ArrayList<>(fields);
+    }
+
+    private ExampleMatcher.StringMatcher stringMatcher(String match) {
+        if ("contains".equalsIgnoreCase(match)) {
+            return ExampleMatcher.StringMatcher.CONTAINING;
+        }
+        if ("prefix".equalsIgnoreCase(match)) {
+            return ExampleMatcher.StringMatcher.STARTING;
+        }
+        throw new BusinessExeption("Tipo de busca inválido: " + match);
+    }
+
+    // Mesmo find, com sparse fieldset (?fields=id,title). Não passa pelo BookPageCache.
+    // Com ids o multi-get tem precedência e devolve os livros inteiros
+    @GetMapping(params = {"fields", "!ids"})
+    public ResponseEntity<Page<Map<String, Object>>> find(BookDTO bookDTO, Pageable pageable,
+                                                          @RequestParam(defaultValue = "contains") String match,
+                                                          @RequestParam List<String> fields,
+                                                          @RequestParam(defaultValue = "false") boolean exactCount,
+                                                          WebRequest request) {
+        Set<String> selected = sparseFields(fields);
+        Page<Map<String, Object>> result = bookService.findFields(bookMapper.toEntity(bookDTO), pageable,
+                stringMatcher(match), withTagFields(selected), exactCount);
+        if (request.checkNotModified("W/" + etag(result, book -> book.get("id") + "-" + book.get("version")))) {
+            return null;
+        }
+        result.forEach(book -> book.keySet().retainAll(selected));
+        return ResponseEntity.ok(result);
+    }
+
+    // Busca textual por relevância em título e autor (índice do Lucene, não passa pelo banco)
+    @GetMapping("search")
+    public Page<BookDTO> search(@RequestParam String q, Pageable pageable) {
+        Page<Book> result = bookSearchService.search(q, pageable);
         List<BookDTO> list = result.getContent()
-                .stream() // a stream() serve para fazermos algumas operações em cima de coleções
-                .map(book -> modelMapper.map(book, BookDTO.class))
+                .stream()
+                .map(bookMapper::toDto)
                 .collect(Collectors.toList());
 
         return new PageImpl<BookDTO>(list, pageable, result.getTotalElements());
     }
 
+    // Paginação por cursor (keyset): o cliente devolve no after o "next" da página anterior.
+    // O tempo é o mesmo em qualquer profundidade e o count(*) só roda se o cliente pedir
+    @GetMapping("seek")
+    public BookCursorPageDTO seek(BookDTO bookDTO,
+                                  @RequestParam(required = false) String after,
+                                  @RequestParam(defaultValue = "id") String sort,
+                                  @RequestParam(defaultValue = "20") int size,
+                                  @RequestParam(defaultValue = "false") boolean count) {
+        if (size < 1 || size > MAX_PAGE_SIZE) {
+            throw new BusinessExeption("O tamanho da página deve estar entre 1 e " + MAX_PAGE_SIZE);
+        }
+        Book filter = bookMapper.toEntity(bookDTO);
+        BookCursor cursor = after == null || after.isEmpty() ? null : BookCursor.decode(after);
+
+        Slice<Book> result = bookService.findAfter(filter, sort, cursor, size);
+        List<BookDTO> list = result.getContent()
+                .stream()
+                .map(bookMapper::toDto)
+                .collect(Collectors.toList());
+
+        String next = null;
+        if (result.hasNext()) {
+            next = BookCursor.after(result.getContent().get(result.getNumberOfElements() - 1), sort).encode();
+        }
+        Long total = count ? bookService.count(filter) : null;
+        return new BookCursorPageDTO(list, next, total);
+    }
+
+    // Exporta o catálogo inteiro (ou só o que bate com o filtro) em NDJSON ou CSV
+    // Cada livro é escrito direto na resposta conforme sai do cursor do banco, então a memória não cresce com a tabela
+    @GetMapping("export")
+    public void export(BookDTO bookDTO, @RequestParam(defaultValue = "ndjson") String format,
+                       HttpServletResponse response) throws IOException {
+        Book filter = bookMapper.toEntity(bookDTO);
+        boolean csv;
+        if ("csv".equalsIgnoreCase(format)) {
+            csv = true;
+        } else if ("ndjson".equalsIgnoreCase(format)) {
+            csv = false;
+        } else {
+            throw new BusinessExeption("Formato de exportação inválido: " + format);
+        }
+
+        response.setContentType(csv ? "text/csv" : APPLICATION_NDJSON);
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        OutputStream out = response.getOutputStream();
+        ObjectWriter writer = objectMapper.writerFor(BookDTO.class);
+        if (csv) {
+            out.write("id,title,author,isbn\n".getBytes(StandardCharsets.UTF_8));
+        }
+
+        bookService.export(filter, book -> {
+            BookDTO dto = bookMapper.toDto(book);
+            try {
+                if (csv) {
+                    out.write(toCsvLine(dto).getBytes(StandardCharsets.UTF_8));
+                } else {
+                    out.write(writer.writeValueAsBytes(dto));
+                    out.write('\n');
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        out.flush();
+    }
+
+    private String toCsvLine(BookDTO dto) {
+        return dto.getId() + "," + csvValue(dto.getTitle()) + "," + csvValue(dto.getAuthor()) + "," + csvValue(dto.getIsbn()) + "\n";
+    }
+
+    // Coloca o valor entre aspas quando tem vírgula, aspas ou quebra de linha (RFC 4180)
+    private String csvValue(String value) {
+        if (value == null) {
+            return "";
+        }
+        if (value.contains(",") || value.contains("\"") || value.contains("\n") || value.contains("\r")) {
+            return "\"" + value.replace("\"", "\"\"") + "\"";
+        }
+        return value;
+    }
+
     // Except handler
     // MethodArgumentNotValidException: lançado toda vez que tentamos validar um objeto( @Valid do createBook)
     // e o objeto não está valido
@@ -114,6 +672,13 @@ public class BookController {
         return new ApiErrors(bindingResult);
     }
 
+    // A mesma leitura já estava em andamento em outra requisição e não terminou a tempo (ver SingleFlight)
+    @ExceptionHandler(QueryTimeoutException.class)
+    @ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+    public ApiErrors handleQueryTimeout(QueryTimeoutException exception) {
+        return new ApiErrors("Consulta demorou demais, tente novamente");
+    }
+
     @ExceptionHandler(BusinessExeption.class)
     @ResponseStatus(HttpStatus.BAD_REQUEST)
     public ApiErrors handleBusinessException(BusinessExeption businessExeption) {
@@ -0,0 +1,21 @@
+package com.projeto.library.libraryapi.api.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.List;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class BookBatchErrorDTO {
+    // Posição do livro na carga, começando em 0
+    private int row;
+
+    private String isbn;
+
+    private List<String> errors;
+}
@@ -0,0 +1,17 @@
+package com.projeto.library.libraryapi.api.dto;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Getter
+@Setter
+public class BookBatchResultDTO {
+    // Quantidade de livros cadastrados
+    private int created;
+
+    // Erros por linha da carga, as linhas que não aparecem aqui foram cadastradas
+    private List<BookBatchErrorDTO> errors = new ArrayList<>();
+}
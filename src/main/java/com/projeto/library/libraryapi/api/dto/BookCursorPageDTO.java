@@ -0,0 +1,25 @@
+package com.projeto.library.libraryapi.api.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.List;
+
+// Página da paginação por cursor
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class BookCursorPageDTO {
+    private List<BookDTO> content;
+
+    // Token para pedir a próxima página (parâmetro after), nulo na última página
+    private String next;
+
+    // Só vem preenchido quando o cliente pede count=true
+    private Long totalElements;
+}
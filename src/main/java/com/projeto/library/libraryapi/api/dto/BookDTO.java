@@ -1,8 +1,11 @@
 package com.projeto.library.libraryapi.api.dto;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.*;
 
 import javax.validation.constraints.NotEmpty;
+import javax.validation.constraints.Size;
+import java.time.Instant;
 
 @Getter
 @Setter
@@ -12,12 +15,23 @@ import javax.validation.constraints.NotEmpty;
 public class BookDTO {
     private Long id;
 
+    // O @Size é o tamanho das colunas (varchar(255)): texto maior volta 400 aqui em vez de estourar no banco
     @NotEmpty // Validação
+    @Size(max = 255)
     private String title;
 
     @NotEmpty
+    @Size(max = 255)
     private String author;
 
     @NotEmpty
+    @Size(max = 255)
     private String isbn;
+
+    // Só para o ETag e o Last-Modified, não fazem parte do corpo
+    @JsonIgnore
+    private Long version;
+
+    @JsonIgnore
+    private Instant lastModified;
 }
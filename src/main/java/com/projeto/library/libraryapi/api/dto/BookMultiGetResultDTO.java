@@ -0,0 +1,17 @@
+package com.projeto.library.libraryapi.api.dto;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Getter
+@Setter
+public class BookMultiGetResultDTO {
+    // Livros encontrados, na ordem dos ids pedidos
+    private List<BookDTO> books = new ArrayList<>();
+
+    // Ids pedidos que não existem
+    private List<Long> notFound = new ArrayList<>();
+}
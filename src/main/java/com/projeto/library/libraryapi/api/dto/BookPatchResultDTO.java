@@ -0,0 +1,22 @@
+package com.projeto.library.libraryapi.api.dto;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+@Getter
+@Setter
+public class BookPatchResultDTO {
+    // Quantidade de livros alterados
+    private int updated;
+
+    // Ids enviados que não existem
+    private List<Long> notFound = new ArrayList<>();
+
+    // id -> versão atual de cada livro encontrado (a nova, quando foi alterado), para o If-Match das próximas escritas
+    private Map<Long, Long> versions = new LinkedHashMap<>();
+}
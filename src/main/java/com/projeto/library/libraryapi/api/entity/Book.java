@@ -1,22 +1,35 @@
 package com.projeto.library.libraryapi.api.entity;
 
+import com.projeto.library.libraryapi.util.IsbnKeys;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.DynamicUpdate;
 
 import javax.persistence.*;
+import java.time.Instant;
 
 @Data // vai colocar além dos Getters e Setters ele vai criar o toString() e o @EqualsAndHashCodes
 @Builder
 @AllArgsConstructor
 @NoArgsConstructor
 @Entity
-@Table(name = "book")
+// O UPDATE gerado pelo Hibernate só leva as colunas que mudaram, em vez de reescrever a linha toda
+@DynamicUpdate
+// Os índices únicos garantem o isbn sem duplicidade mesmo com cadastros concorrentes:
+// uk_book_isbn no texto cadastrado e uk_book_isbn_key no ISBN-13 equivalente (ver isbnKey)
+@Table(name = "book", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_book_isbn", columnNames = "isbn"),
+        @UniqueConstraint(name = "uk_book_isbn_key", columnNames = "isbn_key")
+})
 public class Book {
 
     @Id // já cria como chave primária
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    // Sequence com pooled optimizer (allocationSize) para o Hibernate conseguir agrupar os INSERTs em batch.
+    // Com IDENTITY cada insert precisa ir ao banco na hora para descobrir o id gerado
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "book_seq")
+    @SequenceGenerator(name = "book_seq", sequenceName = "book_seq", allocationSize = 50)
     @Column(name = "id")
     private Long id;
 
@@ -28,4 +41,25 @@ public class Book {
 
     @Column(name = "isbn")
     private String isbn;
+
+    // Número do ISBN-13 do isbn (ISBN-10 e ISBN-13 do mesmo livro dão o mesmo número, ver IsbnKeys.key);
+    // nulo quando o isbn não é um ISBN válido. Calculado a partir do isbn, não vem da API
+    @Column(name = "isbn_key")
+    private Long isbnKey;
+
+    // Incrementada pelo Hibernate a cada alteração: impede que um update sobrescreva outro (optimistic locking)
+    // e serve de ETag para o GET
+    @Version
+    @Column(name = "version")
+    private Long version;
+
+    @Column(name = "last_modified")
+    private Instant lastModified;
+
+    @PrePersist
+    @PreUpdate
+    void touch() {
+        this.lastModified = Instant.now();
+        this.isbnKey = IsbnKeys.isbnKeyOf(isbn);
+    }
 }
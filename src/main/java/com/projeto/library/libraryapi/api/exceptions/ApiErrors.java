@@ -21,6 +21,10 @@ public class ApiErrors {
         this.errors = Arrays.asList(businessExeption.getMessage());
     }
 
+    public ApiErrors(String message) {
+        this.errors = Arrays.asList(message);
+    }
+
     public List<String> getErrors() {
         return errors;
     }
@@ -0,0 +1,29 @@
+package com.projeto.library.libraryapi.api.mapper;
+
+import com.projeto.library.libraryapi.api.dto.BookDTO;
+import com.projeto.library.libraryapi.api.entity.Book;
+
+// Conversão entre Book e BookDTO escrita à mão.
+// Substitui o ModelMapper, que descobre as propriedades por reflexão a cada chamada e pesava nas listagens
+public class BookMapper {
+
+    public Book toEntity(BookDTO bookDTO) {
+        return Book.builder()
+                .id(bookDTO.getId())
+                .title(bookDTO.getTitle())
+                .author(bookDTO.getAuthor())
+                .isbn(bookDTO.getIsbn())
+                .build();
+    }
+
+    public BookDTO toDto(Book book) {
+        return BookDTO.builder()
+                .id(book.getId())
+                .title(book.getTitle())
+                .author(book.getAuthor())
+                .isbn(book.getIsbn())
+                .version(book.getVersion())
+                .lastModified(book.getLastModified())
+                .build();
+    }
+}
@@ -0,0 +1,43 @@
+package com.projeto.library.libraryapi.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+// Modo assíncrono (profile "async", ver AsyncBookController): a requisição em andamento não prende uma thread do Tomcat.
+// Só o JDBC roda em threads, num pool do tamanho do pool de conexões; o resto espera na fila sem thread.
+// Virtual threads (JDK 21 / Boot 3.2) ou WebFlux + R2DBC não cabem na base atual (Boot 2.3 / Java 11)
+@Configuration
+@Profile("async")
+public class AsyncConfig implements WebMvcConfigurer {
+
+    public static final String BOOK_EXECUTOR = "bookExecutor";
+
+    // Com 0 usa núcleos * 2 + 1, a mesma conta do pool de conexões (ver HikariPoolSizePostProcessor)
+    @Value("${library.async.pool-size:0}")
+    private int poolSize;
+
+    @Value("${library.async.queue-capacity:10000}")
+    private int queueCapacity;
+
+    @Bean(name = BOOK_EXECUTOR)
+    public ThreadPoolTaskExecutor bookExecutor() {
+        int size = poolSize > 0 ? poolSize : Runtime.getRuntime().availableProcessors() * 2 + 1;
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(size);
+        executor.setMaxPoolSize(size);
+        // Passando da fila a requisição é recusada (503) em vez de criar mais threads
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("book-async-");
+        return executor;
+    }
+
+    @Override
+    public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+        configurer.setTaskExecutor(bookExecutor());
+    }
+}
@@ -0,0 +1,28 @@
+package com.projeto.library.libraryapi.config;
+
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+
+// Formatos binários da API, escolhidos pelo Accept (e pelo Content-Type no corpo das requisições):
+// application/cbor e application/x-jackson-smile, com os mesmos campos do JSON (schema em resources/schema/book.cddl).
+// Os ObjectMappers saem do builder do Spring Boot, então seguem as mesmas spring.jackson.* do JSON.
+// O JSON continua sendo o padrão quando o cliente não pede um formato
+@Configuration
+public class BinaryFormatConfig {
+
+    @Bean
+    public MappingJackson2CborHttpMessageConverter cborHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+        return new MappingJackson2CborHttpMessageConverter(builder.factory(new CBORFactory()).build());
+    }
+
+    @Bean
+    public MappingJackson2SmileHttpMessageConverter smileHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+        // Smile guarda os nomes dos campos repetidos por referência, o que reduz bastante as listas de livros
+        return new MappingJackson2SmileHttpMessageConverter(builder.factory(new SmileFactory()).build());
+    }
+}
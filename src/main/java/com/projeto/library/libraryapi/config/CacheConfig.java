@@ -0,0 +1,53 @@
+package com.projeto.library.libraryapi.config;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.projeto.library.libraryapi.api.cache.BookPageCache;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.cache.CacheManagerCustomizer;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+
+// Liga o cache do Spring. O provedor (Caffeine), o tamanho e o TTL ficam no application.properties
+@Configuration
+@EnableCaching
+public class CacheConfig {
+
+    // Livros por id (já como BookDTO), usado pelo BookService.getDtoById
+    public static final String BOOKS = "books";
+
+    // Páginas do find já serializadas (BookPageCache), limpas a cada escrita no BookService
+    public static final String BOOK_PAGES = "bookPages";
+
+    // Total do find por filtro (BookCounter), limpo a cada escrita no BookService
+    public static final String BOOK_COUNTS = "bookCounts";
+
+    // As páginas têm tamanhos muito diferentes, então o limite é em bytes e não em quantidade como o de books
+    @Bean
+    public CacheManagerCustomizer<CaffeineCacheManager> bookPagesCache(
+            @Value("${library.page-cache.max-size:64MB}") DataSize maxSize,
+            @Value("${library.page-cache.ttl:30s}") Duration ttl) {
+        return cacheManager -> cacheManager.registerCustomCache(BOOK_PAGES, Caffeine.newBuilder()
+                .maximumWeight(maxSize.toBytes())
+                .<Object, Object>weigher((key, value) -> ((BookPageCache.CachedPage) value).weight())
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build());
+    }
+
+    // TTL curto: o total pode ficar desatualizado por escritas feitas em outras instâncias da aplicação
+    @Bean
+    public CacheManagerCustomizer<CaffeineCacheManager> bookCountsCache(
+            @Value("${library.count-cache.max-size:10000}") long maxSize,
+            @Value("${library.count-cache.ttl:10s}") Duration ttl) {
+        return cacheManager -> cacheManager.registerCustomCache(BOOK_COUNTS, Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build());
+    }
+}
@@ -0,0 +1,38 @@
+package com.projeto.library.libraryapi.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.EnvironmentAware;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+// Define o tamanho do pool de conexões no profile "prod".
+// library.datasource.pool-size fixa o valor; com 0 (padrão) usa núcleos * 2 + 1, a fórmula de referência do PostgreSQL.
+// O pool fica de tamanho fixo (minimumIdle = maximumPoolSize) para não abrir conexões no meio de um pico.
+// Roda depois do bind de spring.datasource.hikari.*, antes da primeira conexão
+@Component
+@Profile("prod")
+public class HikariPoolSizePostProcessor implements BeanPostProcessor, EnvironmentAware {
+
+    private Environment environment;
+
+    @Override
+    public void setEnvironment(Environment environment) {
+        this.environment = environment;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (bean instanceof HikariDataSource) {
+            HikariDataSource dataSource = (HikariDataSource) bean;
+            int poolSize = environment.getProperty("library.datasource.pool-size", Integer.class, 0);
+            if (poolSize <= 0) {
+                poolSize = Runtime.getRuntime().availableProcessors() * 2 + 1;
+            }
+            dataSource.setMaximumPoolSize(poolSize);
+            dataSource.setMinimumIdle(poolSize);
+        }
+        return bean;
+    }
+}
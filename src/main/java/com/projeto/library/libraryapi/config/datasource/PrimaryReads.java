@@ -0,0 +1,32 @@
+package com.projeto.library.libraryapi.config.datasource;
+
+import java.util.function.Supplier;
+
+// Leituras que vão para um cache (livro por id, páginas serializadas) precisam vir do primário:
+// o evict de uma escrita roda logo depois do commit no primário, e uma réplica ainda atrasada
+// colocaria de volta no cache o valor antigo, que ficaria lá até o TTL.
+// Dentro do call as transações read-only vão para o primário, sem marcar a requisição como ReadYourWrites.
+// Sem o profile "replica" não muda nada
+public final class PrimaryReads {
+
+    private static final ThreadLocal<Boolean> ACTIVE = new ThreadLocal<>();
+
+    private PrimaryReads() {
+    }
+
+    public static <T> T call(Supplier<T> read) {
+        if (isActive()) {
+            return read.get();
+        }
+        ACTIVE.set(Boolean.TRUE);
+        try {
+            return read.get();
+        } finally {
+            ACTIVE.remove();
+        }
+    }
+
+    public static boolean isActive() {
+        return ACTIVE.get() != null;
+    }
+}
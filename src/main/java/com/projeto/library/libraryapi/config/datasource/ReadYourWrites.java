@@ -0,0 +1,25 @@
+package com.projeto.library.libraryapi.config.datasource;
+
+// Marca a thread que já escreveu no primário durante a requisição.
+// Depois disso as leituras da mesma requisição também vão para o primário, para não ler de uma réplica
+// que ainda não recebeu a escrita. Limpo no fim de cada requisição por ReadYourWritesInterceptor, que também
+// marca as requisições seguintes do mesmo cliente enquanto uma réplica ainda pode estar sem a escrita (cookie)
+public final class ReadYourWrites {
+
+    private static final ThreadLocal<Boolean> WROTE = new ThreadLocal<>();
+
+    private ReadYourWrites() {
+    }
+
+    static void markWrite() {
+        WROTE.set(Boolean.TRUE);
+    }
+
+    public static boolean isSticky() {
+        return WROTE.get() != null;
+    }
+
+    public static void clear() {
+        WROTE.remove();
+    }
+}
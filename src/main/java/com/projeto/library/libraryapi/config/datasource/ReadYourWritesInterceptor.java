@@ -0,0 +1,68 @@
+package com.projeto.library.libraryapi.config.datasource;
+
+import org.springframework.http.HttpMethod;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.util.WebUtils;
+
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.time.Duration;
+
+// Cada requisição começa lendo das réplicas, independente do que a thread fez na requisição anterior.
+// Depois de uma escrita, as requisições seguintes do mesmo cliente leem do primário enquanto uma réplica na rotação
+// ainda pode não ter a escrita: até o atraso tolerado mais o intervalo entre as medições (ver ReplicaProperties).
+// O prazo vai no cookie STICKY_COOKIE, então só vale para clientes que devolvem o cookie
+public class ReadYourWritesInterceptor implements HandlerInterceptor {
+
+    public static final String STICKY_COOKIE = "library-primary-until";
+
+    private final Duration window;
+
+    public ReadYourWritesInterceptor(Duration window) {
+        this.window = window;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        ReadYourWrites.clear();
+        long now = System.currentTimeMillis();
+        if (isSticky(request, now)) {
+            ReadYourWrites.markWrite();
+        }
+        // O cookie vai antes do handler, enquanto a resposta ainda não foi enviada. Uma escrita que falhar
+        // só manda o cliente para o primário por um tempo, sem ler nada errado
+        if (isWrite(request)) {
+            Cookie cookie = new Cookie(STICKY_COOKIE, Long.toString(now + window.toMillis()));
+            cookie.setPath("/");
+            cookie.setHttpOnly(true);
+            cookie.setMaxAge((int) Math.max(1, (window.toMillis() + 999) / 1000));
+            response.addCookie(cookie);
+        }
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        ReadYourWrites.clear();
+    }
+
+    // O prazo é do cliente: só vale dentro da janela, para um cookie alterado não prender o cliente no primário
+    private boolean isSticky(HttpServletRequest request, long now) {
+        Cookie cookie = WebUtils.getCookie(request, STICKY_COOKIE);
+        if (cookie == null) {
+            return false;
+        }
+        try {
+            long until = Long.parseLong(cookie.getValue());
+            return until > now && until - now <= window.toMillis();
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    private static boolean isWrite(HttpServletRequest request) {
+        HttpMethod method = HttpMethod.resolve(request.getMethod());
+        return method != HttpMethod.GET && method != HttpMethod.HEAD && method != HttpMethod.OPTIONS;
+    }
+}
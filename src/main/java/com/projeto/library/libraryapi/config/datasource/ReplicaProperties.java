@@ -0,0 +1,36 @@
+package com.projeto.library.libraryapi.config.datasource;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+// Réplicas de leitura do profile "replica" (ver ReplicaRoutingConfig)
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "library.datasource")
+public class ReplicaProperties {
+
+    // library.datasource.replicas[0].url=..., sem usuário e senha usa os do primário
+    private List<Replica> replicas = new ArrayList<>();
+
+    // Atraso máximo tolerado; acima disso a réplica sai da rotação até alcançar o primário
+    private Duration replicaMaxLag = Duration.ofSeconds(5);
+
+    // Consulta que devolve o atraso da réplica em segundos
+    private String replicaLagQuery;
+
+    // De quanto em quanto tempo o atraso é medido
+    private Duration replicaCheckInterval = Duration.ofSeconds(1);
+
+    @Getter
+    @Setter
+    public static class Replica {
+        private String url;
+        private String username;
+        private String password;
+    }
+}
@@ -0,0 +1,101 @@
+package com.projeto.library.libraryapi.config.datasource;
+
+import com.projeto.library.libraryapi.config.HikariPoolSizePostProcessor;
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.util.StringUtils;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import javax.sql.DataSource;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Réplicas de leitura (profile "replica"): os métodos @Transactional(readOnly = true) do BookService
+// leem das réplicas e as escritas vão para o primário (spring.datasource.*), ver ReplicaRoutingDataSource.
+// As réplicas usam a mesma configuração de pool do primário.
+// O Spring Boot só publica as métricas hikaricp.* do pool que ele enxerga (o primário, por trás do proxy);
+// os pools das réplicas registram as suas aqui, com o nome do pool na tag "pool"
+@Configuration
+@Profile("replica")
+@EnableConfigurationProperties(ReplicaProperties.class)
+public class ReplicaRoutingConfig implements WebMvcConfigurer, DisposableBean {
+
+    private final ReplicaProperties properties;
+
+    private ReplicaRoutingDataSource routingDataSource;
+
+    public ReplicaRoutingConfig(ReplicaProperties properties) {
+        this.properties = properties;
+    }
+
+    // O único DataSource do contexto, usado pelo JPA.
+    // Os pools e o roteamento são criados aqui e não como beans separados: com mais de um DataSource no contexto,
+    // a inicialização do schema do Spring Boot entra em ciclo com o DataSource principal
+    @Bean
+    @Primary
+    public DataSource dataSource(DataSourceProperties dataSourceProperties, Environment environment, ObjectProvider<HikariPoolSizePostProcessor> poolSize,
+                                 ObjectProvider<MeterRegistry> meterRegistry) {
+        HikariDataSource primary = dataSourceProperties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        // Mesmo bind de spring.datasource.hikari.* que o Spring Boot faz no DataSource dele
+        Binder.get(environment).bind("spring.datasource.hikari", Bindable.ofInstance(primary));
+        poolSize.ifAvailable(processor -> processor.postProcessAfterInitialization(primary, "dataSource"));
+        if (primary.getPoolName() == null) {
+            primary.setPoolName("library-pool");
+        }
+
+        Map<String, DataSource> replicas = new LinkedHashMap<>();
+        List<ReplicaProperties.Replica> replicaList = properties.getReplicas();
+        for (int i = 0; i < replicaList.size(); i++) {
+            ReplicaProperties.Replica replica = replicaList.get(i);
+            HikariConfig config = new HikariConfig();
+            primary.copyStateTo(config);
+            String name = "replica-" + i;
+            config.setPoolName(primary.getPoolName() + "-" + name);
+            config.setJdbcUrl(replica.getUrl());
+            if (StringUtils.hasText(replica.getUsername())) {
+                config.setUsername(replica.getUsername());
+                config.setPassword(replica.getPassword());
+            }
+            // Antes de criar o HikariDataSource: o pool já começa a abrir conexões no construtor
+            meterRegistry.ifAvailable(registry -> config.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(registry)));
+            replicas.put(name, new HikariDataSource(config));
+        }
+
+        routingDataSource = new ReplicaRoutingDataSource(primary, replicas,
+                properties.getReplicaMaxLag(), properties.getReplicaLagQuery());
+        routingDataSource.afterPropertiesSet();
+        routingDataSource.startLagMonitor(properties.getReplicaCheckInterval());
+        return new LazyConnectionDataSourceProxy(routingDataSource);
+    }
+
+    @Override
+    public void destroy() throws Exception {
+        if (routingDataSource != null) {
+            routingDataSource.close();
+        }
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        // Uma réplica na rotação está no máximo replicaMaxLag atrasada na última medição, que pode ter sido
+        // há até replicaCheckInterval
+        registry.addInterceptor(new ReadYourWritesInterceptor(
+                properties.getReplicaMaxLag().plus(properties.getReplicaCheckInterval()))).addPathPatterns("/api/**");
+    }
+}
@@ -0,0 +1,153 @@
+package com.projeto.library.libraryapi.config.datasource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Manda as transações read-only para as réplicas (em rodízio) e todo o resto para o primário.
+// Vai para o primário também quando:
+// - a requisição já escreveu (ReadYourWrites), para ler o que acabou de gravar;
+// - a leitura vai para um cache (PrimaryReads);
+// - nenhuma réplica está dentro do atraso tolerado (maxLag) na última verificação de checkReplicaLag.
+// Precisa estar atrás de um LazyConnectionDataSourceProxy: a conexão só é escolhida no primeiro comando,
+// quando a transação já está marcada como read-only
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource implements AutoCloseable {
+
+    public static final String PRIMARY = "primary";
+
+    // Recurso da transação com o nome da réplica escolhida, enquanto a transação estiver aberta
+    private static final Object REPLICA_READ = new Object();
+
+    private static final Logger log = LoggerFactory.getLogger(ReplicaRoutingDataSource.class);
+
+    private final Map<String, DataSource> replicas;
+    private final Duration maxLag;
+    private final String lagQuery;
+    private final AtomicInteger next = new AtomicInteger();
+    private ScheduledExecutorService lagMonitor;
+
+    // Réplicas aptas a receber leitura; começa com todas até a primeira verificação
+    private volatile List<String> available;
+
+    public ReplicaRoutingDataSource(DataSource primary, Map<String, DataSource> replicas, Duration maxLag, String lagQuery) {
+        this.replicas = new LinkedHashMap<>(replicas);
+        this.maxLag = maxLag;
+        this.lagQuery = lagQuery;
+        this.available = Collections.unmodifiableList(new ArrayList<>(replicas.keySet()));
+
+        Map<Object, Object> targets = new HashMap<>(replicas);
+        targets.put(PRIMARY, primary);
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(primary);
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (!TransactionSynchronizationManager.isActualTransactionActive()) {
+            return PRIMARY;
+        }
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            ReadYourWrites.markWrite();
+            return PRIMARY;
+        }
+        List<String> candidates = available;
+        if (ReadYourWrites.isSticky() || PrimaryReads.isActive() || candidates.isEmpty()) {
+            return PRIMARY;
+        }
+        String replica = candidates.get(Math.floorMod(next.getAndIncrement(), candidates.size()));
+        markReplicaRead(replica);
+        return replica;
+    }
+
+    // Se a transação atual está lendo de uma réplica. Quem guarda o resultado num cache (ver BookCounter) usa isso
+    // para não guardar um valor que pode estar atrasado
+    public static boolean isReadingFromReplica() {
+        return TransactionSynchronizationManager.hasResource(REPLICA_READ);
+    }
+
+    private static void markReplicaRead(String replica) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()
+                || TransactionSynchronizationManager.hasResource(REPLICA_READ)) {
+            return;
+        }
+        TransactionSynchronizationManager.bindResource(REPLICA_READ, replica);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+            @Override
+            public void afterCompletion(int status) {
+                TransactionSynchronizationManager.unbindResourceIfPossible(REPLICA_READ);
+            }
+        });
+    }
+
+    // Mede o atraso de cada réplica com lagQuery (segundos) e tira da rotação as que passaram de maxLag
+    // ou não responderam. Chamado periodicamente pelo startLagMonitor; sem lagQuery todas ficam na rotação
+    public void checkReplicaLag() {
+        if (lagQuery == null || lagQuery.trim().isEmpty()) {
+            return;
+        }
+        List<String> healthy = new ArrayList<>(replicas.size());
+        replicas.forEach((name, replica) -> {
+            try (Connection connection = replica.getConnection();
+                 Statement statement = connection.createStatement();
+                 ResultSet result = statement.executeQuery(lagQuery)) {
+                double lagSeconds = result.next() ? result.getDouble(1) : Double.MAX_VALUE;
+                if (lagSeconds * 1000 <= maxLag.toMillis()) {
+                    healthy.add(name);
+                } else {
+                    log.warn("Réplica {} com {}s de atraso, leituras vão para o primário", name, lagSeconds);
+                }
+            } catch (Exception e) {
+                log.warn("Réplica {} indisponível: {}", name, e.getMessage());
+            }
+        });
+        available = Collections.unmodifiableList(healthy);
+    }
+
+    // Roda checkReplicaLag a cada interval numa thread própria, até o close
+    public void startLagMonitor(Duration interval) {
+        if (lagQuery == null || lagQuery.trim().isEmpty() || replicas.isEmpty()) {
+            return;
+        }
+        lagMonitor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "replica-lag-monitor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        lagMonitor.scheduleWithFixedDelay(this::checkReplicaLag, 0, interval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    public List<String> getAvailableReplicas() {
+        return available;
+    }
+
+    // Fecha os pools do primário e das réplicas junto com o contexto
+    @Override
+    public void close() throws Exception {
+        if (lagMonitor != null) {
+            lagMonitor.shutdownNow();
+        }
+        for (Object dataSource : getResolvedDataSources().values()) {
+            if (dataSource instanceof AutoCloseable) {
+                ((AutoCloseable) dataSource).close();
+            }
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.projeto.library.libraryapi.config.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.stereotype.Component;
+
+// Mede todas as chamadas ao BookService e ao BookRepository:
+// - library.book.service / library.book.repository: timer (latência, p50/p99/p999 e vazão) por operação
+// - library.book.errors: contador de exceções por camada, operação e tipo
+@Aspect
+@Component
+public class BookMetricsAspect {
+
+    static final String SERVICE_TIMER = "library.book.service";
+    static final String REPOSITORY_TIMER = "library.book.repository";
+    static final String ERRORS = "library.book.errors";
+
+    private final MeterRegistry meterRegistry;
+
+    public BookMetricsAspect(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Around("execution(* com.projeto.library.libraryapi.service.BookService+.*(..))")
+    public Object timeService(ProceedingJoinPoint joinPoint) throws Throwable {
+        return time(joinPoint, SERVICE_TIMER, "service");
+    }
+
+    @Around("execution(* com.projeto.library.libraryapi.repository.BookRepository+.*(..))")
+    public Object timeRepository(ProceedingJoinPoint joinPoint) throws Throwable {
+        return time(joinPoint, REPOSITORY_TIMER, "repository");
+    }
+
+    private Object time(ProceedingJoinPoint joinPoint, String timer, String layer) throws Throwable {
+        String operation = joinPoint.getSignature().getName();
+        String exception = "none";
+        Timer.Sample sample = Timer.start(meterRegistry);
+        try {
+            return joinPoint.proceed();
+        } catch (Throwable e) {
+            exception = e.getClass().getSimpleName();
+            meterRegistry.counter(ERRORS, "layer", layer, "operation", operation, "exception", exception).increment();
+            throw e;
+        } finally {
+            // Os percentis e o histograma vêm de management.metrics.distribution.* no application.properties
+            sample.stop(meterRegistry.timer(timer, "operation", operation, "exception", exception));
+        }
+    }
+}
@@ -1,9 +1,89 @@
 package com.projeto.library.libraryapi.repository;
 
+import com.projeto.library.libraryapi.api.dto.BookDTO;
 import com.projeto.library.libraryapi.api.entity.Book;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
-public interface BookRepository extends JpaRepository<Book, Long> {
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Stream;
+
+public interface BookRepository extends JpaRepository<Book, Long>, BookRepositoryCustom {
     // Não preciso criar a implementação desse método, o spring faz isso em runtime
     boolean existsByIsbn(String isbn);
+
+    // Se algum livro tem esse ISBN-13 (ver Book.isbnKey), cadastrado como ISBN-10 ou ISBN-13
+    boolean existsByIsbnKey(Long isbnKey);
+
+    // Verifica vários isbns de uma vez só, uma query por lote em vez de uma por livro
+    @Query("select b.isbn from Book b where b.isbn in :isbns")
+    Set<String> findExistingIsbns(@Param("isbns") Collection<String> isbns);
+
+    // O mesmo pelo ISBN-13, para conferir de uma vez as respostas do IsbnIndex de um lote
+    @Query("select b.isbnKey from Book b where b.isbnKey in :isbnKeys")
+    Set<Long> findExistingIsbnKeys(@Param("isbnKeys") Collection<Long> isbnKeys);
+
+    // Lê direto no BookDTO, sem montar a entidade nem guardar cópia dela no contexto de persistência
+    // Os métodos com @Query não herdam a transação read-only do SimpleJpaRepository, e o BookService
+    // chama este sem transação (ver SingleFlight)
+    @Transactional(readOnly = true)
+    @Query("select new com.projeto.library.libraryapi.api.dto.BookDTO(b.id, b.title, b.author, b.isbn, b.version, b.lastModified) " +
+            "from Book b where b.id = :id")
+    Optional<BookDTO> findDtoById(@Param("id") Long id);
+
+    // Vários livros numa única consulta, também direto no BookDTO
+    @Query("select new com.projeto.library.libraryapi.api.dto.BookDTO(b.id, b.title, b.author, b.isbn, b.version, b.lastModified) " +
+            "from Book b where b.id in :ids")
+    List<BookDTO> findDtosByIds(@Param("ids") Collection<Long> ids);
+
+    // Id do livro com esse isbn exatamente como foi cadastrado
+    @Transactional(readOnly = true)
+    @Query("select b.id from Book b where b.isbn = :isbn")
+    Optional<Long> findIdByIsbn(@Param("isbn") String isbn);
+
+    // Id do livro com esse ISBN-13 (ver Book.isbnKey), cadastrado como ISBN-10 ou ISBN-13
+    @Transactional(readOnly = true)
+    @Query("select b.id from Book b where b.isbnKey = :isbnKey")
+    Optional<Long> findIdByIsbnKey(@Param("isbnKey") Long isbnKey);
+
+    // Todos os isbns cadastrados, lidos com cursor (precisa de transação)
+    @Query("select b.isbn from Book b where b.isbn is not null")
+    Stream<String> streamAllIsbns();
+
+    // Pares (id, isbn) de todos os livros, lidos com cursor (precisa de transação)
+    @Query("select b.id, b.isbn from Book b where b.isbn is not null")
+    Stream<Object[]> streamAllIdsAndIsbns();
+
+    // Pares (id, versão) de todos os livros, lidos com cursor (precisa de transação). Ver LuceneBookSearchService
+    @Query("select b.id, coalesce(b.version, 0) from Book b")
+    Stream<Object[]> streamAllIdsAndVersions();
+
+    // Um único DELETE, sem carregar o livro antes; devolve quantas linhas foram apagadas (0 = não existe)
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("delete from Book b where b.id = :id")
+    int deleteBookById(@Param("id") Long id);
+
+    // Um único UPDATE, sem carregar o livro antes; devolve quantas linhas foram alteradas (0 = não existe)
+    // O update em massa não passa pelo @Version nem pelo @PreUpdate, por isso a versão e a data vão na query
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update Book b set b.title = :title, b.author = :author, " +
+            "b.version = coalesce(b.version, 0) + 1, b.lastModified = :now where b.id = :id")
+    int updateTitleAndAuthor(@Param("id") Long id, @Param("title") String title,
+                             @Param("author") String author, @Param("now") Instant now);
+
+    // Mesmo UPDATE, só se o livro ainda estiver na versão que o cliente leu
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update Book b set b.title = :title, b.author = :author, " +
+            "b.version = coalesce(b.version, 0) + 1, b.lastModified = :now " +
+            "where b.id = :id and coalesce(b.version, 0) = :version")
+    int updateTitleAndAuthor(@Param("id") Long id, @Param("title") String title,
+                             @Param("author") String author, @Param("now") Instant now,
+                             @Param("version") Long version);
 }
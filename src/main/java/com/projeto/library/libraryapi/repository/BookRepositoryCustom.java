@@ -0,0 +1,61 @@
+package com.projeto.library.libraryapi.repository;
+
+import com.projeto.library.libraryapi.api.dto.BookDTO;
+import com.projeto.library.libraryapi.api.entity.Book;
+import com.projeto.library.libraryapi.service.BookCursor;
+import org.springframework.data.domain.ExampleMatcher;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.function.LongSupplier;
+import java.util.stream.Stream;
+
+// Consultas que o Spring Data não consegue gerar sozinho, implementadas em BookRepositoryCustomImpl
+public interface BookRepositoryCustom {
+
+    // Percorre os livros que batem com o filtro (mesmas regras do find) com um cursor, sem carregar tudo em memória.
+    // Precisa ser consumido dentro de uma transação e fechado no final
+    Stream<Book> streamByFilter(Book filter);
+
+    // Mesmo resultado do findAll(Example, Pageable) do find, mas lido direto no BookDTO (sem entidades).
+    // matcher: CONTAINING ou STARTING, ignorando maiúsculas como o Example
+    Page<BookDTO> findDtos(Book filter, ExampleMatcher.StringMatcher matcher, Pageable pageable);
+
+    // Mesmo findDtos, com o total vindo de total em vez do count exato. Como no findAll do Spring Data,
+    // total só é chamado quando a página não diz sozinha qual é o total (ver BookCounter)
+    Page<BookDTO> findDtos(Book filter, ExampleMatcher.StringMatcher matcher, Pageable pageable, LongSupplier total);
+
+    // Mesma busca do findDtos, mas o SELECT só leva os atributos de fields; cada livro vem como atributo -> valor,
+    // na ordem de fields
+    Page<Map<String, Object>> findFields(Book filter, ExampleMatcher.StringMatcher matcher, Pageable pageable,
+                                         Collection<String> fields);
+
+    Page<Map<String, Object>> findFields(Book filter, ExampleMatcher.StringMatcher matcher, Pageable pageable,
+                                         Collection<String> fields, LongSupplier total);
+
+    // count(*) exato dos livros que batem com o filtro, com as mesmas regras do findDtos
+    long count(Book filter, ExampleMatcher.StringMatcher matcher);
+
+    // Quantidade de linhas da tabela segundo as estatísticas do PostgreSQL (pg_class.reltuples), sem ler a tabela.
+    // Só funciona no PostgreSQL; vazio quando a tabela ainda não foi analisada (VACUUM/ANALYZE)
+    OptionalLong estimateCount();
+
+    // Só os atributos de fields do livro com esse id
+    Optional<Map<String, Object>> findFieldsById(Long id, Collection<String> fields);
+
+    // Paginação por keyset: até limit livros ordenados por (sort, id) que vêm depois do cursor.
+    // Os livros com o campo nulo vêm no fim, por id. Com after nulo começa do início.
+    // Não faz OFFSET, então o custo é o mesmo em qualquer página
+    List<Book> findAfter(Book filter, String sort, BookCursor after, int limit);
+
+    // Um único UPDATE nos livros dos ids, mexendo só nas colunas que estão em changes (atributo -> novo valor),
+    // além da versão, do last_modified e do isbn_key quando o isbn muda. Com version, só altera quem ainda estiver nessa versão.
+    // Devolve quantas linhas foram alteradas
+    int patch(Collection<Long> ids, Map<String, Object> changes, Long version, Instant now);
+}
@@ -0,0 +1,301 @@
+package com.projeto.library.libraryapi.repository;
+
+import com.projeto.library.libraryapi.api.dto.BookDTO;
+import com.projeto.library.libraryapi.api.entity.Book;
+import com.projeto.library.libraryapi.service.BookCursor;
+import com.projeto.library.libraryapi.util.IsbnKeys;
+import org.hibernate.annotations.QueryHints;
+import org.springframework.data.domain.ExampleMatcher;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.query.EscapeCharacter;
+import org.springframework.data.jpa.repository.query.QueryUtils;
+import org.springframework.data.repository.support.PageableExecutionUtils;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.Tuple;
+import javax.persistence.TypedQuery;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.CriteriaUpdate;
+import javax.persistence.criteria.Expression;
+import javax.persistence.criteria.Path;
+import javax.persistence.criteria.Predicate;
+import javax.persistence.criteria.Root;
+import javax.persistence.criteria.Selection;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.function.LongSupplier;
+import java.util.stream.Stream;
+
+public class BookRepositoryCustomImpl implements BookRepositoryCustom {
+
+    // Quantidade de linhas que o driver traz do banco por vez quando usamos cursor
+    static final int FETCH_SIZE = 500;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public Stream<Book> streamByFilter(Book filter) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Book> query = cb.createQuery(Book.class);
+        Root<Book> book = query.from(Book.class);
+        query.select(book)
+                .where(filterPredicates(cb, book, filter))
+                .orderBy(cb.asc(book.get("id")));
+
+        return entityManager.createQuery(query)
+                .setHint(QueryHints.FETCH_SIZE, FETCH_SIZE)
+                .setHint(QueryHints.READ_ONLY, true)
+                .getResultStream()
+                // Tira cada livro do contexto de persistência depois de lido, assim a memória não cresce com a tabela
+                .peek(entityManager::detach);
+    }
+
+    @Override
+    public List<Book> findAfter(Book filter, String sort, BookCursor after, int limit) {
+        if ("id".equals(sort)) {
+            return findAfter(filter, sort, after, limit, false);
+        }
+        // Duas consultas em vez de uma com NULLS LAST, que cada banco ordena de um jeito e o Criteria não expressa:
+        // primeiro os livros com o campo (índice (campo, id)), depois os sem o campo, por id.
+        // Um cursor sem valor já está nos livros sem o campo
+        List<Book> books = after != null && after.getValue() == null
+                ? new ArrayList<>()
+                : findAfter(filter, sort, after, limit, false);
+        if (books.size() < limit) {
+            BookCursor afterNull = after != null && after.getValue() == null ? after : null;
+            books.addAll(findAfter(filter, sort, afterNull, limit - books.size(), true));
+        }
+        return books;
+    }
+
+    private List<Book> findAfter(Book filter, String sort, BookCursor after, int limit, boolean nullKeys) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Book> query = cb.createQuery(Book.class);
+        Root<Book> book = query.from(Book.class);
+        Path<Long> id = book.get("id");
+
+        List<Predicate> predicates = new ArrayList<>(Arrays.asList(filterPredicates(cb, book, filter)));
+        if ("id".equals(sort)) {
+            if (after != null) {
+                predicates.add(cb.greaterThan(id, after.getId()));
+            }
+            query.orderBy(cb.asc(id));
+        } else if (nullKeys) {
+            // Todos com o mesmo campo (nulo), então só o id ordena e desempata
+            predicates.add(cb.isNull(book.get(sort)));
+            if (after != null) {
+                predicates.add(cb.greaterThan(id, after.getId()));
+            }
+            query.orderBy(cb.asc(id));
+        } else {
+            Path<String> key = book.get(sort);
+            predicates.add(cb.isNotNull(key));
+            if (after != null) {
+                // (key > valor) or (key = valor and id > último id), o id desempata livros com o mesmo valor
+                predicates.add(cb.or(
+                        cb.greaterThan(key, after.getValue()),
+                        cb.and(cb.equal(key, after.getValue()), cb.greaterThan(id, after.getId()))));
+            }
+            query.orderBy(cb.asc(key), cb.asc(id));
+        }
+        query.select(book).where(predicates.toArray(new Predicate[0]));
+
+        return entityManager.createQuery(query)
+                .setMaxResults(limit)
+                .getResultList();
+    }
+
+    @Override
+    public int patch(Collection<Long> ids, Map<String, Object> changes, Long version, Instant now) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaUpdate<Book> update = cb.createCriteriaUpdate(Book.class);
+        Root<Book> book = update.from(Book.class);
+
+        // O SET só tem as colunas enviadas, o resto da linha não é reescrito
+        changes.forEach((attribute, value) -> update.set(attribute, value));
+        // Update em massa não passa pelo @Version nem pelo @PreUpdate
+        if (changes.containsKey("isbn")) {
+            Long isbnKey = IsbnKeys.isbnKeyOf((String) changes.get("isbn"));
+            Path<Long> isbnKeyPath = book.get("isbnKey");
+            if (isbnKey == null) {
+                update.set(isbnKeyPath, cb.nullLiteral(Long.class));
+            } else {
+                update.set(isbnKeyPath, isbnKey);
+            }
+        }
+        Expression<Long> currentVersion = cb.coalesce(book.get("version"), 0L);
+        update.set(book.<Long>get("version"), cb.sum(currentVersion, 1L));
+        update.set(book.<Instant>get("lastModified"), now);
+
+        List<Predicate> predicates = new ArrayList<>();
+        predicates.add(book.get("id").in(ids));
+        if (version != null) {
+            predicates.add(cb.equal(currentVersion, version));
+        }
+        update.where(predicates.toArray(new Predicate[0]));
+
+        int updated = entityManager.createQuery(update).executeUpdate();
+        // Os livros que estavam no contexto de persistência ficaram com os valores antigos
+        entityManager.clear();
+        return updated;
+    }
+
+    @Override
+    // A consulta e o count na mesma transação read-only; o BookService não abre transação para ela (ver SingleFlight)
+    @Transactional(readOnly = true)
+    public Page<BookDTO> findDtos(Book filter, ExampleMatcher.StringMatcher matcher, Pageable pageable) {
+        return findDtos(filter, matcher, pageable, () -> count(filter, matcher));
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Page<BookDTO> findDtos(Book filter, ExampleMatcher.StringMatcher matcher, Pageable pageable, LongSupplier total) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<BookDTO> query = cb.createQuery(BookDTO.class);
+        Root<Book> book = query.from(Book.class);
+        query.select(cb.construct(BookDTO.class,
+                book.get("id"), book.get("title"), book.get("author"), book.get("isbn"),
+                book.get("version"), book.get("lastModified")));
+        return page(query, book, filter, matcher, pageable, total);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Page<Map<String, Object>> findFields(Book filter, ExampleMatcher.StringMatcher matcher, Pageable pageable,
+                                                Collection<String> fields) {
+        return findFields(filter, matcher, pageable, fields, () -> count(filter, matcher));
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Page<Map<String, Object>> findFields(Book filter, ExampleMatcher.StringMatcher matcher, Pageable pageable,
+                                                Collection<String> fields, LongSupplier total) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Tuple> query = cb.createTupleQuery();
+        Root<Book> book = query.from(Book.class);
+        query.multiselect(selections(book, fields));
+        return page(query, book, filter, matcher, pageable, total).map(tuple -> toMap(tuple, fields));
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Optional<Map<String, Object>> findFieldsById(Long id, Collection<String> fields) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Tuple> query = cb.createTupleQuery();
+        Root<Book> book = query.from(Book.class);
+        query.multiselect(selections(book, fields)).where(cb.equal(book.get("id"), id));
+        return entityManager.createQuery(query).getResultStream().findFirst().map(tuple -> toMap(tuple, fields));
+    }
+
+    // Uma coluna no SELECT para cada atributo pedido, com o próprio nome como alias
+    private List<Selection<?>> selections(Root<Book> book, Collection<String> fields) {
+        if (fields.isEmpty()) {
+            throw new IllegalArgumentException("Nenhum campo informado");
+        }
+        List<Selection<?>> selections = new ArrayList<>(fields.size());
+        for (String field : fields) {
+            selections.add(book.get(field).alias(field));
+        }
+        return selections;
+    }
+
+    private Map<String, Object> toMap(Tuple tuple, Collection<String> fields) {
+        Map<String, Object> values = new LinkedHashMap<>();
+        for (String field : fields) {
+            values.put(field, tuple.get(field));
+        }
+        return values;
+    }
+
+    // Filtro, ordenação e paginação do findDtos e do findFields
+    private <T> Page<T> page(CriteriaQuery<T> query, Root<Book> book, Book filter, ExampleMatcher.StringMatcher matcher,
+                             Pageable pageable, LongSupplier total) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        query.where(filterPredicates(cb, book, filter, matcher));
+        if (pageable.getSort().isSorted()) {
+            query.orderBy(QueryUtils.toOrders(pageable.getSort(), book, cb));
+        }
+
+        TypedQuery<T> typedQuery = entityManager.createQuery(query);
+        if (pageable.isPaged()) {
+            typedQuery.setFirstResult((int) pageable.getOffset());
+            typedQuery.setMaxResults(pageable.getPageSize());
+        }
+        // Como no findAll do Spring Data, o count só roda quando a página não diz sozinha qual é o total
+        return PageableExecutionUtils.getPage(typedQuery.getResultList(), pageable, total);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public long count(Book filter, ExampleMatcher.StringMatcher matcher) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Long> query = cb.createQuery(Long.class);
+        Root<Book> book = query.from(Book.class);
+        query.select(cb.count(book)).where(filterPredicates(cb, book, filter, matcher));
+        return entityManager.createQuery(query).getSingleResult();
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public OptionalLong estimateCount() {
+        // reltuples é -1 (PostgreSQL 14+) ou 0 (versões anteriores) enquanto a tabela nunca foi analisada
+        Number estimate = (Number) entityManager
+                .createNativeQuery("select reltuples from pg_class where oid = 'book'::regclass")
+                .getSingleResult();
+        return estimate.longValue() > 0 ? OptionalLong.of(estimate.longValue()) : OptionalLong.empty();
+    }
+
+    private Predicate[] filterPredicates(CriteriaBuilder cb, Root<Book> book, Book filter) {
+        return filterPredicates(cb, book, filter, ExampleMatcher.StringMatcher.CONTAINING);
+    }
+
+    // Mesmas regras do Example usado no find: ignora campos nulos, ignora maiúsculas e compara os textos com o matcher.
+    // % e _ digitados pelo usuário são escapados, como o Example também faz
+    private Predicate[] filterPredicates(CriteriaBuilder cb, Root<Book> book, Book filter, ExampleMatcher.StringMatcher matcher) {
+        List<Predicate> predicates = new ArrayList<>();
+        if (filter.getId() != null) {
+            predicates.add(cb.equal(book.get("id"), filter.getId()));
+        }
+        addLike(predicates, cb, book, "title", filter.getTitle(), matcher);
+        addLike(predicates, cb, book, "author", filter.getAuthor(), matcher);
+        addLike(predicates, cb, book, "isbn", filter.getIsbn(), matcher);
+        return predicates.toArray(new Predicate[0]);
+    }
+
+    private void addLike(List<Predicate> predicates, CriteriaBuilder cb, Root<Book> book, String attribute, String value,
+                         ExampleMatcher.StringMatcher matcher) {
+        if (value == null) {
+            return;
+        }
+        Expression<String> column = cb.lower(book.get(attribute));
+        // Locale.ROOT: com o locale da JVM em turco, "I" viraria "ı" e não bateria com o lower() do banco
+        String escaped = EscapeCharacter.DEFAULT.escape(value.toLowerCase(Locale.ROOT));
+        char escape = EscapeCharacter.DEFAULT.getEscapeCharacter();
+        switch (matcher) {
+            case STARTING:
+                predicates.add(cb.like(column, escaped + "%", escape));
+                break;
+            case ENDING:
+                predicates.add(cb.like(column, "%" + escaped, escape));
+                break;
+            case CONTAINING:
+                predicates.add(cb.like(column, "%" + escaped + "%", escape));
+                break;
+            default:
+                predicates.add(cb.equal(column, value.toLowerCase(Locale.ROOT)));
+        }
+    }
+}
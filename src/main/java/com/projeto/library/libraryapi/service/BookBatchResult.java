@@ -0,0 +1,16 @@
+package com.projeto.library.libraryapi.service;
+
+import com.projeto.library.libraryapi.api.entity.Book;
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+// Resultado de um salvamento em lote: os livros salvos e os erros por linha (posição na lista recebida)
+@Getter
+public class BookBatchResult {
+    private final List<Book> saved = new ArrayList<>();
+    private final SortedMap<Integer, String> errors = new TreeMap<>();
+}
@@ -0,0 +1,123 @@
+package com.projeto.library.libraryapi.service;
+
+import com.projeto.library.libraryapi.api.entity.Book;
+import com.projeto.library.libraryapi.config.CacheConfig;
+import com.projeto.library.libraryapi.config.datasource.ReplicaRoutingDataSource;
+import com.projeto.library.libraryapi.repository.BookRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.ExampleMatcher;
+import org.springframework.jdbc.support.JdbcUtils;
+import org.springframework.jdbc.support.MetaDataAccessException;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.sql.DatabaseMetaData;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.OptionalLong;
+import java.util.function.LongSupplier;
+
+// Total das páginas do find sem um count(*) por requisição:
+// - sem filtro, no PostgreSQL, usa a estimativa das estatísticas da tabela (reltuples) quando ela passa de
+//   library.count.estimate-threshold; abaixo disso o count exato já é barato
+// - com filtro, guarda o count exato por filtro normalizado (CacheConfig.BOOK_COUNTS, TTL curto, limpo a cada escrita)
+// Com exact o count sempre roda, e o valor novo vai para o cache.
+// Count lido de uma réplica (profile "replica") não vai para o cache, já que ela pode estar atrasada
+@Component
+public class BookCounter {
+
+    private final BookRepository bookRepository;
+    private final DataSource dataSource;
+    private final Cache cache;
+    private final long estimateThreshold;
+    // Só no PostgreSQL, descoberto quando a aplicação sobe
+    private volatile boolean estimateAvailable;
+
+    public BookCounter(BookRepository bookRepository, DataSource dataSource, CacheManager cacheManager,
+                       @Value("${library.count.estimate-threshold:100000}") long estimateThreshold) {
+        this.bookRepository = bookRepository;
+        this.dataSource = dataSource;
+        this.cache = cacheManager.getCache(CacheConfig.BOOK_COUNTS);
+        this.estimateThreshold = estimateThreshold;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void detectDatabase() throws MetaDataAccessException {
+        String database = JdbcUtils.extractDatabaseMetaData(dataSource, DatabaseMetaData::getDatabaseProductName);
+        estimateAvailable = "PostgreSQL".equals(database);
+    }
+
+    // O total só é calculado se o repositório pedir, e depois disso o Total diz se ele é exato
+    public Total total(Book filter, ExampleMatcher.StringMatcher matcher, boolean exact) {
+        return new Total(filter, matcher, exact);
+    }
+
+    public class Total implements LongSupplier {
+
+        private final Book filter;
+        private final ExampleMatcher.StringMatcher matcher;
+        private final boolean exact;
+        // Continua true quando a própria página deu o total (última página, ou primeira incompleta)
+        private boolean totalExact = true;
+
+        private Total(Book filter, ExampleMatcher.StringMatcher matcher, boolean exact) {
+            this.filter = filter;
+            this.matcher = matcher;
+            this.exact = exact;
+        }
+
+        @Override
+        public long getAsLong() {
+            if (!exact) {
+                OptionalLong estimate = estimate();
+                if (estimate.isPresent()) {
+                    totalExact = false;
+                    return estimate.getAsLong();
+                }
+                Long cached = cache == null ? null : cache.get(key(), Long.class);
+                if (cached != null) {
+                    totalExact = false;
+                    return cached;
+                }
+            }
+            long count = bookRepository.count(filter, matcher);
+            // O count roda na mesma transação da página (ver BookRepositoryCustom.findDtos)
+            if (cache != null && !ReplicaRoutingDataSource.isReadingFromReplica()) {
+                cache.put(key(), count);
+            }
+            return count;
+        }
+
+        public boolean isTotalExact() {
+            return totalExact;
+        }
+
+        private OptionalLong estimate() {
+            if (!estimateAvailable || !unfiltered()) {
+                return OptionalLong.empty();
+            }
+            OptionalLong estimate = bookRepository.estimateCount();
+            return estimate.isPresent() && estimate.getAsLong() >= estimateThreshold ? estimate : OptionalLong.empty();
+        }
+
+        private boolean unfiltered() {
+            return filter.getId() == null && filter.getTitle() == null && filter.getAuthor() == null
+                    && filter.getIsbn() == null;
+        }
+
+        // O matcher e os textos em minúsculas, como na consulta; a paginação não muda o total
+        private List<Object> key() {
+            return Arrays.asList(matcher, filter.getId(), lower(filter.getTitle()), lower(filter.getAuthor()),
+                    lower(filter.getIsbn()));
+        }
+    }
+
+    private static String lower(String value) {
+        return value == null ? null : value.toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,67 @@
+package com.projeto.library.libraryapi.service;
+
+import com.projeto.library.libraryapi.api.entity.Book;
+import com.projeto.library.libraryapi.api.exceptions.BusinessExeption;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+
+// Posição da paginação por cursor (keyset): o último (campo de ordenação, id) visto pelo cliente.
+// Para o cliente é um token opaco, ele só devolve o que recebeu no "next".
+// value nulo quer dizer que o último livro visto não tinha o campo: os livros sem o campo vêm depois de todos
+// os outros, por id (ver BookRepositoryCustom.findAfter)
+@Getter
+@AllArgsConstructor
+public class BookCursor {
+
+    // Campos que podem ser usados para ordenar a paginação por cursor
+    public static final List<String> SORT_KEYS = Arrays.asList("id", "title", "author", "isbn");
+
+    private final String sort;
+    private final String value;
+    private final Long id;
+
+    // Cursor apontando para o livro, que passa a ser o último visto
+    public static BookCursor after(Book book, String sort) {
+        String value;
+        switch (sort) {
+            case "title":
+                value = book.getTitle();
+                break;
+            case "author":
+                value = book.getAuthor();
+                break;
+            case "isbn":
+                value = book.getIsbn();
+                break;
+            default:
+                value = String.valueOf(book.getId());
+        }
+        return new BookCursor(sort, value, book.getId());
+    }
+
+    public String encode() {
+        // O valor vai por último porque pode conter qualquer caractere; sem valor (nulo) o token só tem duas partes,
+        // o que é diferente de um valor vazio
+        String raw = sort + "\n" + id + (value == null ? "" : "\n" + value);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static BookCursor decode(String token) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            String[] parts = raw.split("\n", 3);
+            if (parts.length < 2 || !SORT_KEYS.contains(parts[0]) || (parts.length == 2 && parts[0].equals("id"))) {
+                throw new BusinessExeption("Cursor inválido");
+            }
+            return new BookCursor(parts[0], parts.length == 3 ? parts[2] : null, Long.valueOf(parts[1]));
+        } catch (IllegalArgumentException e) {
+            // Base64 ou id inválidos (NumberFormatException também é um IllegalArgumentException)
+            throw new BusinessExeption("Cursor inválido");
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package com.projeto.library.libraryapi.service;
+
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+
+import java.util.function.Function;
+
+// Página do find que diz se o totalElements é exato (count(*) agora) ou aproximado
+// (estimativa do PostgreSQL ou count guardado há pouco tempo, ver BookCounter). Vai no JSON como "totalExact"
+public class BookPage<T> extends PageImpl<T> {
+
+    private final boolean totalExact;
+
+    public BookPage(Page<T> page, boolean totalExact) {
+        super(page.getContent(), page.getPageable(), page.getTotalElements());
+        this.totalExact = totalExact;
+    }
+
+    public boolean isTotalExact() {
+        return totalExact;
+    }
+
+    @Override
+    public <U> BookPage<U> map(Function<? super T, ? extends U> converter) {
+        return new BookPage<>(super.map(converter), totalExact);
+    }
+}
@@ -0,0 +1,21 @@
+package com.projeto.library.libraryapi.service;
+
+import com.projeto.library.libraryapi.api.entity.Book;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+
+import java.util.Collection;
+
+// Busca textual por relevância em título e autor, feita num índice invertido separado do banco.
+// O BookService mantém o índice em dia a cada cadastro, alteração e exclusão
+public interface BookSearchService {
+
+    void index(Book book);
+
+    void indexAll(Collection<Book> books);
+
+    void delete(Long id);
+
+    // Os livros retornados são montados com os campos guardados no índice, sem ir ao banco
+    Page<Book> search(String query, Pageable pageRequest);
+}
@@ -1,19 +1,86 @@
 package com.projeto.library.libraryapi.service;
 
+import com.projeto.library.libraryapi.api.dto.BookDTO;
 import com.projeto.library.libraryapi.api.entity.Book;
+import org.springframework.data.domain.ExampleMatcher;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
 
 public interface BookService {
+
+    // Campos que podem ser alterados por PATCH
+    Set<String> PATCHABLE_FIELDS = Collections.unmodifiableSet(new HashSet<>(Arrays.asList("title", "author", "isbn")));
+
     Book save(Book book);
 
+    BookBatchResult saveAll(List<Book> books);
+
     Optional<Book> getById(Long id);
 
-    void delete(Book book);
+    // Leitura só para devolver o livro na API: a consulta já monta o BookDTO, sem carregar a entidade
+    Optional<BookDTO> getDtoById(Long id);
+
+    // Só os atributos de fields do livro (sparse fieldset), com o SELECT levando só essas colunas
+    Optional<Map<String, Object>> getFieldsById(Long id, Collection<String> fields);
+
+    // Vários livros por id com uma consulta IN a cada 500 ids, na ordem em que os ids foram pedidos.
+    // Os ids que não existem ficam de fora
+    List<BookDTO> getByIds(Collection<Long> ids);
+
+    // Id do livro com esse isbn (ISBN-10 ou ISBN-13, com ou sem hífens); sai do IsbnIndex sem ir ao banco
+    // quando o isbn é um ISBN válido que está no índice. O índice pode estar para trás de escritas de outra
+    // instância, então quem usa confere o isbn do livro lido e, se não bater, usa findIdByIsbnInDatabase
+    Optional<Long> findIdByIsbn(String isbn);
+
+    // Mesma busca direto no banco, sem o IsbnIndex
+    Optional<Long> findIdByIsbnInDatabase(String isbn);
+
+    // Apaga com um único DELETE; false quando o livro não existe
+    boolean delete(Long id);
 
-    Book update(Book book);
+    // Altera título e autor com um único UPDATE e devolve o livro já alterado (vazio quando não existe).
+    // Com version, só altera se o livro ainda estiver nessa versão, senão lança OptimisticLockingFailureException
+    Optional<Book> update(Long id, String title, String author, Long version);
+
+    // Altera só os campos de changes (nome do campo -> novo valor), com um UPDATE que não toca nas outras colunas.
+    // Mesmas regras do update para livro inexistente e para version. Sem campos (merge patch {}) não altera nada
+    // e devolve o livro como está
+    Optional<Book> patch(Long id, Map<String, Object> changes, Long version);
+
+    // Mesma alteração em vários livros com um único UPDATE; devolve os livros alterados (os ids que não existem ficam de fora).
+    // O isbn não pode ser alterado em lote, já que é único. Sem campos não altera nada e devolve os livros como estão
+    List<Book> patchAll(Collection<Long> ids, Map<String, Object> changes);
 
     Page<Book> find(Book filter, Pageable pageRequest);
+
+    // Mesmo find, escolhendo como os textos do filtro são comparados.
+    // STARTING (prefixo) consegue usar índice em qualquer banco; CONTAINING depende do índice de trigrama do PostgreSQL
+    Page<Book> find(Book filter, Pageable pageRequest, ExampleMatcher.StringMatcher matcher);
+
+    // Mesmo find, com a consulta selecionando só as colunas do BookDTO (sem entidades no contexto de persistência)
+    // Sem exactCount o total pode ser aproximado (ver BookCounter), e a página diz se é exato
+    BookPage<BookDTO> findDtos(Book filter, Pageable pageRequest, ExampleMatcher.StringMatcher matcher, boolean exactCount);
+
+    // Mesmo find, com o SELECT levando só os atributos de fields; cada livro vem como atributo -> valor
+    BookPage<Map<String, Object>> findFields(Book filter, Pageable pageRequest, ExampleMatcher.StringMatcher matcher,
+                                             Collection<String> fields, boolean exactCount);
+
+    // Paginação por cursor: a página seguinte ao cursor (ou a primeira, com after nulo), sem count(*)
+    Slice<Book> findAfter(Book filter, String sort, BookCursor after, int size);
+
+    long count(Book filter);
+
+    // Passa cada livro que bate com o filtro para o consumer, na ordem do id, sem montar a lista em memória
+    void export(Book filter, Consumer<Book> consumer);
 }
\ No newline at end of file
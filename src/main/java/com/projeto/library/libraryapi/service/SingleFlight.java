@@ -0,0 +1,80 @@
+package com.projeto.library.libraryapi.service;
+
+import org.springframework.dao.QueryTimeoutException;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+// Junta leituras iguais que chegam ao mesmo tempo: a primeira chamada com uma chave executa a consulta,
+// as outras esperam o mesmo CompletableFuture e recebem o mesmo resultado (ou a mesma exceção).
+// Nada fica guardado depois que a consulta termina, então não é um cache: a próxima chamada consulta de novo
+public class SingleFlight<K, V> {
+
+    private final ConcurrentMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+
+    // Quanto quem chegou depois espera pela consulta em andamento
+    private final Duration timeout;
+
+    public SingleFlight(Duration timeout) {
+        this.timeout = timeout;
+    }
+
+    public V execute(K key, Supplier<V> query) {
+        CompletableFuture<V> call = new CompletableFuture<>();
+        CompletableFuture<V> running = inFlight.putIfAbsent(key, call);
+        if (running != null) {
+            return await(running);
+        }
+
+        // A consulta roda na thread de quem chegou primeiro
+        try {
+            V result = query.get();
+            call.complete(result);
+            return result;
+        } catch (RuntimeException | Error e) {
+            call.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, call);
+        }
+    }
+
+    // Depois de uma escrita: a consulta em andamento com essa chave pode ter começado antes do commit, então
+    // quem chegar a partir daqui faz uma consulta nova em vez de esperar por ela. Quem já está esperando continua
+    public void forget(K key) {
+        inFlight.remove(key);
+    }
+
+    public void forgetAll() {
+        inFlight.clear();
+    }
+
+    // Quantidade de chaves com consulta em andamento
+    public int inFlight() {
+        return inFlight.size();
+    }
+
+    private V await(CompletableFuture<V> running) {
+        try {
+            return running.get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            throw new QueryTimeoutException("Consulta em andamento não terminou em " + timeout.toMillis() + "ms", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new QueryTimeoutException("Espera pela consulta em andamento interrompida", e);
+        } catch (ExecutionException e) {
+            // A mesma exceção da consulta, para quem esperou ser tratado igual a quem consultou
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw (Error) cause;
+        }
+    }
+}
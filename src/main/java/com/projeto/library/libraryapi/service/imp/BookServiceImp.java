@@ -1,69 +1,611 @@
 package com.projeto.library.libraryapi.service.imp;
 
+import com.projeto.library.libraryapi.api.dto.BookDTO;
 import com.projeto.library.libraryapi.api.entity.Book;
 import com.projeto.library.libraryapi.api.exceptions.BusinessExeption;
+import com.projeto.library.libraryapi.config.CacheConfig;
+import com.projeto.library.libraryapi.config.datasource.PrimaryReads;
 import com.projeto.library.libraryapi.repository.BookRepository;
+import com.projeto.library.libraryapi.service.BookBatchResult;
+import com.projeto.library.libraryapi.service.BookCounter;
+import com.projeto.library.libraryapi.service.BookCursor;
+import com.projeto.library.libraryapi.service.BookPage;
+import com.projeto.library.libraryapi.service.BookSearchService;
 import com.projeto.library.libraryapi.service.BookService;
+import com.projeto.library.libraryapi.service.SingleFlight;
+import com.projeto.library.libraryapi.service.isbn.IsbnFilter;
+import com.projeto.library.libraryapi.service.isbn.IsbnIndex;
+import com.projeto.library.libraryapi.util.IsbnKeys;
+import org.hibernate.exception.ConstraintViolationException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Caching;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.data.domain.Example;
 import org.springframework.data.domain.ExampleMatcher;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 // Regra de negócio
 
 @Service
 public class BookServiceImp implements BookService {
 
+    // Tamanho de cada lote do saveAll, múltiplo do hibernate.jdbc.batch_size
+    static final int BATCH_CHUNK_SIZE = 500;
+
+    // Índices únicos do isbn (ver Book): uk_book_isbn e uk_book_isbn_key começam com esse nome
+    private static final String ISBN_CONSTRAINT = "uk_book_isbn";
+
     private BookRepository bookRepository;
+    private IsbnFilter isbnFilter;
+    private IsbnIndex isbnIndex;
+    private BookSearchService bookSearchService;
+    private BookCounter bookCounter;
+
+    // Quantidade de contadores de escrita por livro (potência de 2); livros no mesmo contador só perdem um put no cache
+    static final int WRITE_STRIPES = 1024;
+
+    // Leituras iguais e simultâneas viram uma consulta só (ver SingleFlight)
+    private SingleFlight<Long, Optional<BookDTO>> bookReads;
+    private SingleFlight<List<Object>, BookPage<BookDTO>> pageReads;
 
-    public BookServiceImp(BookRepository bookRepository) {
+    // Livros por id, preenchido pelo getDtoById
+    private Cache books;
+
+    // Escritas confirmadas, por grupo de ids (id & (WRITE_STRIPES - 1)) e em todos os livros de uma vez.
+    // A leitura que viu um desses números mudar não deixa o resultado no cache (ver getDtoById)
+    private final AtomicLongArray bookWrites = new AtomicLongArray(WRITE_STRIPES);
+    private final AtomicLong allBookWrites = new AtomicLong();
+
+    public BookServiceImp(BookRepository bookRepository, IsbnFilter isbnFilter, IsbnIndex isbnIndex,
+                          BookSearchService bookSearchService, BookCounter bookCounter, CacheManager cacheManager,
+                          @Value("${library.single-flight.timeout:5s}") Duration singleFlightTimeout) {
         this.bookRepository = bookRepository;
+        this.isbnFilter = isbnFilter;
+        this.isbnIndex = isbnIndex;
+        this.bookSearchService = bookSearchService;
+        this.bookCounter = bookCounter;
+        this.books = cacheManager.getCache(CacheConfig.BOOKS);
+        this.bookReads = new SingleFlight<>(singleFlightTimeout);
+        this.pageReads = new SingleFlight<>(singleFlightTimeout);
     }
 
     @Override
+    // Toda escrita invalida as páginas do find já serializadas e os totais guardados, já que muda o resultado ou o total de alguma
+    @CacheEvict(cacheNames = {CacheConfig.BOOK_PAGES, CacheConfig.BOOK_COUNTS}, allEntries = true)
     public Book save(Book book) {
 
-        if(bookRepository.existsByIsbn(book.getIsbn())){
+        // Isbn novo vira um único INSERT, quem garante a unicidade é o índice uk_book_isbn
+        if(isbnExists(book.getIsbn())){
             throw new BusinessExeption("Isbn já cadastrado");
         }
-        return bookRepository.save(book);
+        Book savedBook;
+        try {
+            // O flush faz o INSERT acontecer aqui, para a violação do índice cair no catch
+            savedBook = bookRepository.saveAndFlush(book);
+        } catch (DataIntegrityViolationException e) {
+            // Outro cadastro com o mesmo isbn entrou entre a verificação e o insert
+            if (isDuplicateIsbn(e)) {
+                throw new BusinessExeption("Isbn já cadastrado");
+            }
+            throw e;
+        }
+        isbnFilter.put(savedBook.getIsbn());
+        isbnIndex.put(savedBook.getIsbn(), savedBook.getId());
+        bookSearchService.index(savedBook);
+        forgetReads(savedBook.getId());
+        return savedBook;
+    }
+
+    // Verificação antes do INSERT, para não gastar um id da sequence com um isbn que já existe.
+    // Quem garante de verdade são os índices únicos (isbn e isbn_key): se o IsbnIndex ou o filtro estiverem
+    // para trás, o INSERT falha e cai no mesmo "Isbn já cadastrado".
+    // Para ISBN válido o IsbnIndex responde pelo ISBN-13 equivalente; nos outros casos só consulta o banco
+    // se o filtro não garantir que o isbn é novo.
+    // Um acerto do IsbnIndex é conferido no banco: o livro pode ter sido apagado ou trocado de isbn em outra
+    // instância, e sem conferir o isbn ficaria recusado até a aplicação reiniciar
+    private boolean isbnExists(String isbn) {
+        long id = isbnIndex.idOf(isbn);
+        if (id == IsbnIndex.NOT_FOUND) {
+            return false;
+        }
+        if (id != IsbnIndex.UNKNOWN) {
+            return bookRepository.existsByIsbnKey(IsbnKeys.isbnKeyOf(isbn));
+        }
+        return isbnFilter.mightContain(isbn) && bookRepository.existsByIsbn(isbn);
     }
 
     @Override
+    @CacheEvict(cacheNames = {CacheConfig.BOOK_PAGES, CacheConfig.BOOK_COUNTS}, allEntries = true)
+    public BookBatchResult saveAll(List<Book> books) {
+        BookBatchResult result = new BookBatchResult();
+        // isbns já aceitos nesta mesma carga, para pegar duplicados dentro do próprio arquivo
+        Set<String> accepted = new HashSet<>();
+
+        for (int start = 0; start < books.size(); start += BATCH_CHUNK_SIZE) {
+            List<Book> chunk = books.subList(start, Math.min(start + BATCH_CHUNK_SIZE, books.size()));
+
+            // Uma única consulta por lote, só com os isbns que nem o IsbnIndex nem o filtro garantem que são novos.
+            // Os acertos do IsbnIndex são conferidos no banco pelo ISBN-13, como no isbnExists, numa consulta só
+            Set<String> existing = new HashSet<>();
+            Set<String> candidates = new HashSet<>();
+            Map<Long, List<String>> indexed = new HashMap<>();
+            for (Book book : chunk) {
+                String isbn = book.getIsbn();
+                if (isbn == null) {
+                    continue;
+                }
+                long id = isbnIndex.idOf(isbn);
+                if (id == IsbnIndex.UNKNOWN) {
+                    if (isbnFilter.mightContain(isbn)) {
+                        candidates.add(isbn);
+                    }
+                } else if (id != IsbnIndex.NOT_FOUND) {
+                    indexed.computeIfAbsent(IsbnKeys.key(isbn), key -> new ArrayList<>()).add(isbn);
+                }
+            }
+            if (!candidates.isEmpty()) {
+                existing.addAll(bookRepository.findExistingIsbns(candidates));
+            }
+            if (!indexed.isEmpty()) {
+                bookRepository.findExistingIsbnKeys(indexed.keySet()).forEach(key -> existing.addAll(indexed.get(key)));
+            }
+
+            List<Book> toSave = new ArrayList<>(chunk.size());
+            List<Integer> rows = new ArrayList<>(chunk.size());
+            for (int i = 0; i < chunk.size(); i++) {
+                Book book = chunk.get(i);
+                if (existing.contains(book.getIsbn()) || !accepted.add(book.getIsbn())) {
+                    result.getErrors().put(start + i, "Isbn já cadastrado");
+                    continue;
+                }
+                toSave.add(book);
+                rows.add(start + i);
+            }
+
+            // Cada lote roda na sua própria transação (a do saveAll do repositório), com os INSERTs em batch
+            List<Book> savedBooks;
+            try {
+                savedBooks = bookRepository.saveAll(toSave);
+            } catch (DataIntegrityViolationException e) {
+                // Algum isbn do lote foi cadastrado por outra requisição depois da consulta.
+                // O lote inteiro voltou atrás, então salva livro a livro para saber quais falharam
+                if (!isDuplicateIsbn(e)) {
+                    throw e;
+                }
+                savedBooks = saveOneByOne(toSave, rows, result);
+            }
+            savedBooks.forEach(savedBook -> {
+                isbnFilter.put(savedBook.getIsbn());
+                isbnIndex.put(savedBook.getIsbn(), savedBook.getId());
+            });
+            bookSearchService.indexAll(savedBooks);
+            result.getSaved().addAll(savedBooks);
+            forgetReads(null);
+        }
+        return result;
+    }
+
+    private List<Book> saveOneByOne(List<Book> books, List<Integer> rows, BookBatchResult result) {
+        List<Book> savedBooks = new ArrayList<>(books.size());
+        for (int i = 0; i < books.size(); i++) {
+            Book book = books.get(i);
+            // O id que a sequence deu na tentativa que voltou atrás não vale mais
+            book.setId(null);
+            try {
+                savedBooks.add(bookRepository.saveAndFlush(book));
+            } catch (DataIntegrityViolationException e) {
+                if (!isDuplicateIsbn(e)) {
+                    throw e;
+                }
+                result.getErrors().put(rows.get(i), "Isbn já cadastrado");
+            }
+        }
+        return savedBooks;
+    }
+
+    // Só a violação do uk_book_isbn quer dizer isbn repetido. As outras (tamanho da coluna, not null)
+    // sobem como vieram. O H2 devolve o nome do índice (PUBLIC.UK_BOOK_ISBN_INDEX_1) em vez do nome
+    // da constraint, por isso a comparação por contains
+    private static boolean isDuplicateIsbn(DataIntegrityViolationException e) {
+        if (!(e.getCause() instanceof ConstraintViolationException)) {
+            return false;
+        }
+        String constraint = ((ConstraintViolationException) e.getCause()).getConstraintName();
+        return constraint != null && constraint.toLowerCase(Locale.ROOT).contains(ISBN_CONSTRAINT);
+    }
+
+    @Override
+    // Leituras são read-only: com o profile "replica" vão para as réplicas (ver ReplicaRoutingDataSource)
+    @Transactional(readOnly = true)
     public Optional<Book> getById(Long id) {
         return this.bookRepository.findById(id);
     }
 
     @Override
-    public void delete(Book book) {
-        if(book == null || book.getId() == null){
+    // Sem @Transactional aqui: quem espera a consulta de outra requisição não pode estar segurando uma conexão.
+    // A transação read-only (FlushMode.MANUAL, sem dirty checking) é a da própria consulta no repositório
+    // Livro não encontrado não vai para o cache, assim um livro cadastrado depois já aparece na hora.
+    // O resultado vai para o cache, então a leitura é no primário (ver PrimaryReads).
+    // O cache é feito aqui e não com @Cacheable: uma leitura que começou antes do commit de uma escrita pode
+    // terminar depois da limpeza do cache feita no commit (forgetReads) e guardar o livro antigo por todo o TTL.
+    // Por isso a leitura anota o contador de escritas do livro antes de consultar e, se ele mudou, desfaz o put
+    public Optional<BookDTO> getDtoById(Long id) {
+        BookDTO cached = books.get(id, BookDTO.class);
+        if (cached != null) {
+            return Optional.of(cached);
+        }
+        long writes = writesOf(id);
+        Optional<BookDTO> book = bookReads.execute(id, () -> PrimaryReads.call(() -> this.bookRepository.findDtoById(id)));
+        book.ifPresent(found -> {
+            books.put(id, found);
+            // Conferido depois do put: a escrita conta antes de limpar, então ou a limpeza dela vem depois
+            // deste put, ou esta conferência já vê a contagem nova
+            if (writesOf(id) != writes) {
+                books.evict(id);
+            }
+        });
+        return book;
+    }
+
+    private long writesOf(Long id) {
+        return allBookWrites.get() + bookWrites.get(stripe(id));
+    }
+
+    private static int stripe(Long id) {
+        return Long.hashCode(id) & (WRITE_STRIPES - 1);
+    }
+
+    @Override
+    // A transação read-only é a da consulta no repositório
+    public Optional<Map<String, Object>> getFieldsById(Long id, Collection<String> fields) {
+        return bookRepository.findFieldsById(id, fields);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<BookDTO> getByIds(Collection<Long> ids) {
+        // Sem repetidos e sem nulos, mantendo a ordem pedida
+        List<Long> distinctIds = ids.stream().filter(Objects::nonNull).distinct().collect(Collectors.toList());
+        Map<Long, BookDTO> found = new HashMap<>(distinctIds.size() * 2);
+        for (int start = 0; start < distinctIds.size(); start += BATCH_CHUNK_SIZE) {
+            List<Long> chunk = distinctIds.subList(start, Math.min(start + BATCH_CHUNK_SIZE, distinctIds.size()));
+            bookRepository.findDtosByIds(chunk).forEach(book -> found.put(book.getId(), book));
+        }
+
+        List<BookDTO> books = new ArrayList<>(found.size());
+        for (Long id : distinctIds) {
+            BookDTO book = found.get(id);
+            if (book != null) {
+                books.add(book);
+            }
+        }
+        return books;
+    }
+
+    @Override
+    public Optional<Long> findIdByIsbn(String isbn) {
+        long id = isbnIndex.idOf(isbn);
+        if (id != IsbnIndex.UNKNOWN && id != IsbnIndex.NOT_FOUND) {
+            return Optional.of(id);
+        }
+        // O índice só acelera: quando não acha, a resposta é do banco
+        return findIdByIsbnInDatabase(isbn);
+    }
+
+    @Override
+    public Optional<Long> findIdByIsbnInDatabase(String isbn) {
+        // Pelo ISBN-13 equivalente se for ISBN válido, senão pelo texto cadastrado
+        Long isbnKey = IsbnKeys.isbnKeyOf(isbn);
+        return isbnKey == null ? bookRepository.findIdByIsbn(isbn) : bookRepository.findIdByIsbnKey(isbnKey);
+    }
+
+    @Override
+    @Transactional
+    @Caching(evict = {
+            @CacheEvict(cacheNames = CacheConfig.BOOKS, key = "#id"),
+            @CacheEvict(cacheNames = {CacheConfig.BOOK_PAGES, CacheConfig.BOOK_COUNTS}, allEntries = true)
+    })
+    public boolean delete(Long id) {
+        if(id == null){
+            throw new IllegalArgumentException("Book id can not be null");
+        }
+
+        // O número de linhas apagadas já diz se o livro existia, sem um SELECT antes
+        if (bookRepository.deleteBookById(id) == 0) {
+            return false;
+        }
+        afterCommit(() -> {
+            isbnIndex.remove(id);
+            bookSearchService.delete(id);
+        });
+        forgetReads(id);
+        return true;
+    }
+
+    @Override
+    @Transactional
+    // Remove antes, para não sobrar no cache um livro alterado se o update falhar,
+    // e depois, para descartar uma leitura concorrente que tenha recolocado a versão antiga
+    @Caching(evict = {
+            @CacheEvict(cacheNames = CacheConfig.BOOKS, key = "#id", beforeInvocation = true),
+            @CacheEvict(cacheNames = CacheConfig.BOOKS, key = "#id"),
+            @CacheEvict(cacheNames = {CacheConfig.BOOK_PAGES, CacheConfig.BOOK_COUNTS}, allEntries = true)
+    })
+    public Optional<Book> update(Long id, String title, String author, Long version) {
+        if(id == null){
+            throw new IllegalArgumentException("Book id can not be null");
+        }
+
+        int updated = version == null
+                ? bookRepository.updateTitleAndAuthor(id, title, author, Instant.now())
+                : bookRepository.updateTitleAndAuthor(id, title, author, Instant.now(), version);
+        if (updated == 0) {
+            // Só quando nada foi alterado é preciso saber se o livro não existe ou se mudou de versão
+            if (version != null && bookRepository.existsById(id)) {
+                throw new ObjectOptimisticLockingFailureException(Book.class, id);
+            }
+            return Optional.empty();
+        }
+
+        // A leitura é só para devolver o livro com a nova versão; a alteração já foi feita no UPDATE
+        Optional<Book> updatedBook = bookRepository.findById(id);
+        updatedBook.ifPresent(book -> afterCommit(() -> bookSearchService.index(book)));
+        forgetReads(id);
+        return updatedBook;
+    }
+
+    @Override
+    @Transactional
+    // Merge patch vazio não altera nada, então também não limpa os caches
+    @Caching(evict = {
+            @CacheEvict(cacheNames = CacheConfig.BOOKS, key = "#id", beforeInvocation = true, condition = "!#changes.isEmpty()"),
+            @CacheEvict(cacheNames = CacheConfig.BOOKS, key = "#id", condition = "!#changes.isEmpty()"),
+            @CacheEvict(cacheNames = {CacheConfig.BOOK_PAGES, CacheConfig.BOOK_COUNTS}, allEntries = true,
+                    condition = "!#changes.isEmpty()")
+    })
+    public Optional<Book> patch(Long id, Map<String, Object> changes, Long version) {
+        if(id == null){
             throw new IllegalArgumentException("Book id can not be null");
         }
+        checkPatchable(changes);
+        if (changes.isEmpty()) {
+            // Nada a alterar (RFC 7396: {} é um patch válido); devolve o livro como está, conferindo o If-Match
+            Optional<Book> book = bookRepository.findById(id);
+            if (version != null && book.isPresent() && !version.equals(versionOf(book.get()))) {
+                throw new ObjectOptimisticLockingFailureException(Book.class, id);
+            }
+            return book;
+        }
 
-        this.bookRepository.delete(book);
+        if (executePatch(Collections.singleton(id), changes, version) == 0) {
+            if (version != null && bookRepository.existsById(id)) {
+                throw new ObjectOptimisticLockingFailureException(Book.class, id);
+            }
+            return Optional.empty();
+        }
+
+        Optional<Book> patchedBook = bookRepository.findById(id);
+        patchedBook.ifPresent(book -> afterCommit(() -> {
+            isbnIndex.put(book.getIsbn(), book.getId());
+            bookSearchService.index(book);
+        }));
+        forgetReads(id);
+        return patchedBook;
     }
 
     @Override
-    public Book update(Book book) {
-        if(book == null || book.getId() == null){
+    @Transactional
+    // Os ids podem ser muitos, então limpa o cache inteiro em vez de um por um
+    @CacheEvict(cacheNames = {CacheConfig.BOOKS, CacheConfig.BOOK_PAGES, CacheConfig.BOOK_COUNTS}, allEntries = true,
+            condition = "!#changes.isEmpty()")
+    public List<Book> patchAll(Collection<Long> ids, Map<String, Object> changes) {
+        if (ids.stream().anyMatch(Objects::isNull)) {
             throw new IllegalArgumentException("Book id can not be null");
         }
+        checkPatchable(changes);
+        if (changes.containsKey("isbn")) {
+            throw new BusinessExeption("Isbn não pode ser alterado em lote");
+        }
+        if (ids.isEmpty()) {
+            return Collections.emptyList();
+        }
+        if (changes.isEmpty()) {
+            // Patch vazio: nenhum UPDATE, só os livros como estão
+            return bookRepository.findAllById(ids);
+        }
+        if (executePatch(ids, changes, null) == 0) {
+            return Collections.emptyList();
+        }
 
-        // O save tanto salva quanto atualiza
-        return this.bookRepository.save(book);
+        // A leitura é para devolver e reindexar os livros alterados, numa única consulta
+        List<Book> patchedBooks = bookRepository.findAllById(ids);
+        afterCommit(() -> bookSearchService.indexAll(patchedBooks));
+        forgetReads(null);
+        return patchedBooks;
+    }
+
+    // Leituras em andamento que começaram antes do commit podem trazer o valor antigo (ver SingleFlight.forget).
+    // Com id nulo esquece todos os livros; as páginas são sempre todas, já que a escrita pode mudar qualquer uma.
+    // O @CacheEvict pode rodar antes do commit, e uma leitura nesse intervalo guardaria o livro antigo,
+    // então o cache é limpo de novo depois do commit. A ordem importa (ver getDtoById): primeiro quem chegar
+    // não entra mais na leitura antiga, depois a contagem muda, e só então o cache é limpo
+    private void forgetReads(Long id) {
+        afterCommit(() -> {
+            if (id == null) {
+                bookReads.forgetAll();
+                allBookWrites.incrementAndGet();
+                books.clear();
+            } else {
+                bookReads.forget(id);
+                bookWrites.incrementAndGet(stripe(id));
+                books.evict(id);
+            }
+            pageReads.forgetAll();
+        });
+    }
+
+    // Roda action só depois que a transação atual confirmar, para os índices em memória e de busca nunca
+    // mostrarem uma alteração que voltou atrás. Sem transação (save e saveAll já commitaram no repositório) roda na hora
+    private static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
+    private void checkPatchable(Map<String, Object> changes) {
+        if (changes == null) {
+            throw new IllegalArgumentException("Changes can not be null");
+        }
+        for (String field : changes.keySet()) {
+            if (!PATCHABLE_FIELDS.contains(field)) {
+                throw new BusinessExeption("Campo não pode ser alterado: " + field);
+            }
+        }
+    }
+
+    // Livro salvo antes do @Version tem versão nula, que o banco trata como 0 (ver BookRepository.patch)
+    private static long versionOf(Book book) {
+        return book.getVersion() == null ? 0 : book.getVersion();
+    }
+
+    private int executePatch(Collection<Long> ids, Map<String, Object> changes, Long version) {
+        int updated;
+        try {
+            updated = bookRepository.patch(ids, changes, version, Instant.now());
+        } catch (DataIntegrityViolationException e) {
+            // O novo isbn já é de outro livro
+            if (isDuplicateIsbn(e)) {
+                throw new BusinessExeption("Isbn já cadastrado");
+            }
+            throw e;
+        }
+        if (updated > 0 && changes.get("isbn") != null) {
+            isbnFilter.put((String) changes.get("isbn"));
+        }
+        return updated;
     }
 
     @Override
+    @Transactional(readOnly = true)
     public Page<Book> find(Book filter, Pageable pageRequest) {
-        Example<Book> example = Example.of(filter,
+        return find(filter, pageRequest, ExampleMatcher.StringMatcher.CONTAINING);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Page<Book> find(Book filter, Pageable pageRequest, ExampleMatcher.StringMatcher matcher) {
+        return bookRepository.findAll(exampleOf(filter, matcher), pageRequest);
+    }
+
+    @Override
+    // Mesmo motivo do getDtoById para não ter @Transactional
+    public BookPage<BookDTO> findDtos(Book filter, Pageable pageRequest, ExampleMatcher.StringMatcher matcher,
+                                      boolean exactCount) {
+        return pageReads.execute(findKey(filter, pageRequest, matcher, exactCount), () -> {
+            BookCounter.Total total = bookCounter.total(filter, matcher, exactCount);
+            Page<BookDTO> page = bookRepository.findDtos(filter, matcher, pageRequest, total);
+            return new BookPage<>(page, total.isTotalExact());
+        });
+    }
+
+    @Override
+    public BookPage<Map<String, Object>> findFields(Book filter, Pageable pageRequest, ExampleMatcher.StringMatcher matcher,
+                                                    Collection<String> fields, boolean exactCount) {
+        BookCounter.Total total = bookCounter.total(filter, matcher, exactCount);
+        Page<Map<String, Object>> page = bookRepository.findFields(filter, matcher, pageRequest, fields, total);
+        return new BookPage<>(page, total.isTotalExact());
+    }
+
+    // Buscas que dão o mesmo resultado têm a mesma chave: os textos vão em minúsculas, como na consulta.
+    // Leitura no primário não aproveita a de uma réplica (ver PrimaryReads)
+    private static List<Object> findKey(Book filter, Pageable pageRequest, ExampleMatcher.StringMatcher matcher,
+                                        boolean exactCount) {
+        return Arrays.asList(matcher, pageRequest, exactCount, PrimaryReads.isActive(), filter.getId(),
+                lowerCase(filter.getTitle()), lowerCase(filter.getAuthor()), lowerCase(filter.getIsbn()));
+    }
+
+    private static String lowerCase(String value) {
+        return value == null ? null : value.toLowerCase(Locale.ROOT);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Slice<Book> findAfter(Book filter, String sort, BookCursor after, int size) {
+        if (!BookCursor.SORT_KEYS.contains(sort)) {
+            throw new BusinessExeption("Ordenação inválida: " + sort);
+        }
+        if (after != null && !after.getSort().equals(sort)) {
+            throw new BusinessExeption("Cursor não corresponde à ordenação " + sort);
+        }
+
+        // Busca um livro a mais só para saber se existe próxima página
+        List<Book> books = bookRepository.findAfter(filter, sort, after, size + 1);
+        boolean hasNext = books.size() > size;
+        List<Book> content = hasNext ? books.subList(0, size) : books;
+        return new SliceImpl<>(content, PageRequest.of(0, size), hasNext);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public long count(Book filter) {
+        return bookRepository.count(exampleOf(filter, ExampleMatcher.StringMatcher.CONTAINING));
+    }
+
+    // O withIgnoreCase gera lower(coluna) like ..., a mesma expressão dos índices criados no PostgreSQL
+    private Example<Book> exampleOf(Book filter, ExampleMatcher.StringMatcher matcher) {
+        return Example.of(filter,
                 ExampleMatcher.matching()
                         .withIgnoreCase()
                         .withIgnoreNullValues()
-                        .withStringMatcher(ExampleMatcher.StringMatcher.CONTAINING)
+                        .withStringMatcher(matcher)
         );
-        return bookRepository.findAll(example, pageRequest);
+    }
+
+    @Override
+    // O cursor do banco só fica aberto dentro da transação
+    @Transactional(readOnly = true)
+    public void export(Book filter, Consumer<Book> consumer) {
+        try (Stream<Book> books = bookRepository.streamByFilter(filter)) {
+            books.forEach(consumer);
+        }
     }
 }
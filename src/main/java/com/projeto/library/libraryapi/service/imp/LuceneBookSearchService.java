@@ -0,0 +1,326 @@
+package com.projeto.library.libraryapi.service.imp;
+
+import com.projeto.library.libraryapi.api.entity.Book;
+import com.projeto.library.libraryapi.api.exceptions.BusinessExeption;
+import com.projeto.library.libraryapi.repository.BookRepository;
+import com.projeto.library.libraryapi.service.BookSearchService;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.NumericDocValuesField;
+import org.apache.lucene.document.StoredField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.DocValues;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.NumericDocValues;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.queryparser.classic.MultiFieldQueryParser;
+import org.apache.lucene.queryparser.classic.ParseException;
+import org.apache.lucene.queryparser.classic.QueryParser;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.util.Bits;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+// Índice do Lucene gravado em disco, dentro da própria aplicação (sem serviço externo).
+// Cada escrita atualiza só o documento do livro e já aparece na busca (near real-time, sem commit).
+// O commit, que grava no disco com fsync, roda de tempos em tempos numa thread separada.
+// Na subida o índice é conferido com o banco em segundo plano, e só os livros que não batem são refeitos
+@Slf4j
+@Service
+public class LuceneBookSearchService implements BookSearchService {
+
+    // Até onde a busca pagina, páginas mais fundas que isso não fazem sentido numa busca por relevância
+    static final int MAX_RESULTS = 10_000;
+
+    // Quantos livros desatualizados o reconcile carrega do banco por vez
+    static final int RECONCILE_BATCH_SIZE = 500;
+
+    private final BookRepository bookRepository;
+    private final Analyzer analyzer = new StandardAnalyzer();
+    private final Directory directory;
+    private final IndexWriter writer;
+    private final SearcherManager searcherManager;
+    private final ScheduledExecutorService committer;
+    private final TransactionTemplate transactionTemplate;
+
+    // Ids escritos pelo index/delete enquanto o reconcile roda, para ele não sobrescrever com o que leu antes
+    private volatile Set<Long> touchedWhileReconciling;
+
+    public LuceneBookSearchService(BookRepository bookRepository,
+                                   PlatformTransactionManager transactionManager,
+                                   @Value("${library.search.index-dir}") String indexDir,
+                                   @Value("${library.search.commit-interval:5s}") Duration commitInterval) throws IOException {
+        this.bookRepository = bookRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+        Path path = Paths.get(indexDir);
+        Files.createDirectories(path);
+        this.directory = FSDirectory.open(path);
+        this.writer = new IndexWriter(directory, new IndexWriterConfig(analyzer)
+                .setOpenMode(IndexWriterConfig.OpenMode.CREATE_OR_APPEND));
+        this.searcherManager = new SearcherManager(writer, null);
+        this.committer = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "book-index-commit");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = commitInterval.toMillis();
+        committer.scheduleWithFixedDelay(this::commit, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    // O índice fica fora do banco e pode ter ficado para trás (queda antes do commit, índice apagado ou
+    // de outro banco, escrita que falhou). Roda na thread do commit, para não segurar a subida da aplicação
+    // nem cruzar com um commit periódico; até terminar a busca responde com o índice como estava
+    @EventListener(ApplicationReadyEvent.class)
+    public void reconcileInBackground() {
+        committer.execute(() -> {
+            try {
+                reconcile();
+            } catch (IOException | RuntimeException e) {
+                log.error("Could not reconcile the book search index with the database", e);
+            }
+        });
+    }
+
+    // Compara o par (id, versão) de cada livro do banco com o do índice e só reindexa os livros novos ou
+    // com outra versão, e só apaga os que não existem mais no banco. Índice em dia não é reescrito
+    public void reconcile() throws IOException {
+        touchedWhileReconciling = ConcurrentHashMap.newKeySet();
+        try {
+            Map<Long, Long> indexed = indexedVersions();
+            List<Long> stale = new ArrayList<>();
+            transactionTemplate.executeWithoutResult(status -> {
+                try (Stream<Object[]> books = bookRepository.streamAllIdsAndVersions()) {
+                    books.forEach(book -> {
+                        Long id = (Long) book[0];
+                        Long version = indexed.remove(id);
+                        if (version == null || version != ((Number) book[1]).longValue()) {
+                            stale.add(id);
+                        }
+                    });
+                }
+            });
+            if (stale.isEmpty() && indexed.isEmpty()) {
+                return;
+            }
+            log.info("Book search index is out of sync with the database, reindexing {} and removing {} books",
+                    stale.size(), indexed.size());
+
+            for (int from = 0; from < stale.size(); from += RECONCILE_BATCH_SIZE) {
+                List<Long> ids = stale.subList(from, Math.min(from + RECONCILE_BATCH_SIZE, stale.size()));
+                for (Book book : bookRepository.findAllById(ids)) {
+                    if (!touchedWhileReconciling.contains(book.getId())) {
+                        writer.updateDocument(idTerm(book.getId()), toDocument(book));
+                    }
+                }
+            }
+            for (Long id : indexed.keySet()) {
+                if (!touchedWhileReconciling.contains(id)) {
+                    writer.deleteDocuments(idTerm(id));
+                }
+            }
+            writer.commit();
+            searcherManager.maybeRefreshBlocking();
+        } finally {
+            touchedWhileReconciling = null;
+        }
+    }
+
+    // id -> versão de cada livro do índice, lidos dos doc values
+    private Map<Long, Long> indexedVersions() throws IOException {
+        Map<Long, Long> versions = new HashMap<>();
+        IndexSearcher searcher = searcherManager.acquire();
+        try {
+            for (LeafReaderContext context : searcher.getIndexReader().leaves()) {
+                LeafReader reader = context.reader();
+                Bits liveDocs = reader.getLiveDocs();
+                NumericDocValues idValues = DocValues.getNumeric(reader, "idValue");
+                NumericDocValues versionValues = DocValues.getNumeric(reader, "version");
+                for (int doc = 0; doc < reader.maxDoc(); doc++) {
+                    if (liveDocs != null && !liveDocs.get(doc)) {
+                        continue;
+                    }
+                    if (idValues.advanceExact(doc)) {
+                        // Documento sem versão (índice antigo) fica com -1 e é reindexado
+                        versions.put(idValues.longValue(), versionValues.advanceExact(doc) ? versionValues.longValue() : -1);
+                    }
+                }
+            }
+        } finally {
+            searcherManager.release(searcher);
+        }
+        return versions;
+    }
+
+    @Override
+    public void index(Book book) {
+        indexAll(Collections.singletonList(book));
+    }
+
+    @Override
+    public void indexAll(Collection<Book> books) {
+        try {
+            for (Book book : books) {
+                touched(book.getId());
+                writer.updateDocument(idTerm(book.getId()), toDocument(book));
+            }
+            searcherManager.maybeRefreshBlocking();
+        } catch (IOException e) {
+            // O livro já está salvo no banco, a falha no índice não deve desfazer a operação
+            log.error("Could not index books in the search index", e);
+        }
+    }
+
+    @Override
+    public void delete(Long id) {
+        try {
+            touched(id);
+            writer.deleteDocuments(idTerm(id));
+            searcherManager.maybeRefreshBlocking();
+        } catch (IOException e) {
+            log.error("Could not remove book {} from the search index", id, e);
+        }
+    }
+
+    @Override
+    public Page<Book> search(String text, Pageable pageRequest) {
+        if (text == null || text.trim().isEmpty()) {
+            throw new BusinessExeption("Informe o texto da busca");
+        }
+        int offset = (int) pageRequest.getOffset();
+        if (offset + pageRequest.getPageSize() > MAX_RESULTS) {
+            throw new BusinessExeption("A busca só retorna os primeiros " + MAX_RESULTS + " resultados");
+        }
+
+        Query query = parse(text);
+        try {
+            IndexSearcher searcher = searcherManager.acquire();
+            try {
+                TopDocs top = searcher.search(query, offset + pageRequest.getPageSize());
+                List<Book> books = new ArrayList<>();
+                for (int i = offset; i < top.scoreDocs.length; i++) {
+                    ScoreDoc hit = top.scoreDocs[i];
+                    books.add(toBook(searcher.doc(hit.doc)));
+                }
+                return new PageImpl<>(books, pageRequest, top.totalHits.value);
+            } finally {
+                searcherManager.release(searcher);
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not search the book index", e);
+        }
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        committer.shutdownNow();
+        searcherManager.close();
+        // O close do IndexWriter já faz o último commit
+        writer.close();
+        directory.close();
+    }
+
+    // O texto do usuário é tratado como palavras soltas, sem a sintaxe do Lucene
+    private Query parse(String text) {
+        Map<String, Float> boosts = new HashMap<>();
+        // Bater no título vale mais do que bater no autor
+        boosts.put("title", 2f);
+        boosts.put("author", 1f);
+        try {
+            return new MultiFieldQueryParser(new String[]{"title", "author"}, analyzer, boosts)
+                    .parse(QueryParser.escape(text));
+        } catch (ParseException e) {
+            throw new BusinessExeption("Texto de busca inválido");
+        }
+    }
+
+    // Grava no disco o que mudou desde o último commit. Se a aplicação cair antes, o reconcile da próxima
+    // subida percebe a diferença com o banco
+    private void commit() {
+        try {
+            if (writer.hasUncommittedChanges()) {
+                writer.commit();
+            }
+        } catch (IOException | RuntimeException e) {
+            log.error("Could not commit the book search index", e);
+        }
+    }
+
+    // O livro já foi escrito no índice depois do commit no banco; o reconcile não deve sobrescrever com o que leu antes
+    private void touched(Long id) {
+        Set<Long> touched = touchedWhileReconciling;
+        if (touched != null) {
+            touched.add(id);
+        }
+    }
+
+    private static Term idTerm(Long id) {
+        return new Term("id", String.valueOf(id));
+    }
+
+    private static Document toDocument(Book book) {
+        Document document = new Document();
+        document.add(new StringField("id", String.valueOf(book.getId()), Field.Store.YES));
+        // Doc values do id e da versão, só para o reconcile comparar com o banco
+        document.add(new NumericDocValuesField("idValue", book.getId()));
+        document.add(new NumericDocValuesField("version", book.getVersion() == null ? 0 : book.getVersion()));
+        if (book.getTitle() != null) {
+            document.add(new TextField("title", book.getTitle(), Field.Store.YES));
+        }
+        if (book.getAuthor() != null) {
+            document.add(new TextField("author", book.getAuthor(), Field.Store.YES));
+        }
+        if (book.getIsbn() != null) {
+            document.add(new StoredField("isbn", book.getIsbn()));
+        }
+        return document;
+    }
+
+    private static Book toBook(Document document) {
+        return Book.builder()
+                .id(Long.valueOf(document.get("id")))
+                .title(document.get("title"))
+                .author(document.get("author"))
+                .isbn(document.get("isbn"))
+                .build();
+    }
+}
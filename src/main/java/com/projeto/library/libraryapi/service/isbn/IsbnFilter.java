@@ -0,0 +1,63 @@
+package com.projeto.library.libraryapi.service.isbn;
+
+import com.google.common.base.Charsets;
+import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnels;
+import com.projeto.library.libraryapi.repository.BookRepository;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.stream.Stream;
+
+// Filtro de Bloom com os isbns cadastrados, para o cadastro não precisar ir ao banco em todo isbn novo.
+// "Não contém" é garantido; "talvez contém" ainda precisa ser confirmado no banco (existsByIsbn).
+// Livros excluídos continuam no filtro (um Bloom não remove), o que só faz o isbn cair na consulta ao banco
+@Component
+public class IsbnFilter {
+
+    // Tamanho mínimo do filtro e taxa de falso positivo desejada
+    static final long MIN_EXPECTED_ISBNS = 1_000_000;
+    static final double FALSE_POSITIVE_RATE = 0.01;
+
+    private final BookRepository bookRepository;
+
+    private volatile BloomFilter<CharSequence> filter;
+
+    // Enquanto o filtro não foi carregado do banco, tudo é "talvez contém"
+    private volatile boolean ready;
+
+    public IsbnFilter(BookRepository bookRepository) {
+        this.bookRepository = bookRepository;
+        this.filter = create(MIN_EXPECTED_ISBNS);
+    }
+
+    // Carrega o filtro com os isbns do banco quando a aplicação sobe
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(readOnly = true)
+    public void load() {
+        // Deixa folga para o crescimento da tabela antes do filtro perder precisão
+        BloomFilter<CharSequence> loaded = create(Math.max(bookRepository.count() * 2, MIN_EXPECTED_ISBNS));
+        // Os cadastros feitos durante a carga já entram no filtro novo
+        this.filter = loaded;
+        try (Stream<String> isbns = bookRepository.streamAllIsbns()) {
+            isbns.forEach(loaded::put);
+        }
+        this.ready = true;
+    }
+
+    public boolean mightContain(String isbn) {
+        return !ready || isbn == null || filter.mightContain(isbn);
+    }
+
+    public void put(String isbn) {
+        if (isbn != null) {
+            filter.put(isbn);
+        }
+    }
+
+    private static BloomFilter<CharSequence> create(long expectedIsbns) {
+        return BloomFilter.create(Funnels.stringFunnel(Charsets.UTF_8), expectedIsbns, FALSE_POSITIVE_RATE);
+    }
+}
@@ -0,0 +1,166 @@
+package com.projeto.library.libraryapi.service.isbn;
+
+import com.projeto.library.libraryapi.repository.BookRepository;
+import com.projeto.library.libraryapi.util.IsbnKeys;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.concurrent.locks.StampedLock;
+import java.util.stream.Stream;
+
+// Índice em memória isbn -> id dos livros, para buscar pelo isbn sem ir ao banco.
+// O isbn (ISBN-10 ou ISBN-13, com ou sem hífens) vira o número do ISBN-13 (IsbnKeys.key), guardado num mapa de long sem boxing.
+// É o mesmo número da coluna isbn_key (ver Book), onde o índice único uk_book_isbn_key garante a regra no banco;
+// aqui é só um atalho para a consulta. Isbns que não são ISBN válidos ficam de fora, e quem consulta recebe UNKNOWN.
+// Como o IsbnFilter, é carregado quando a aplicação sobe e mantido pelo BookServiceImp depois de cada commit.
+// Pode ficar para trás (escrita de outra instância), por isso NOT_FOUND não é resposta final: quem consulta confere no banco
+@Component
+public class IsbnIndex {
+
+    // O isbn é um ISBN válido, o índice está carregado e não tem nenhum livro com esse isbn
+    public static final long NOT_FOUND = -1;
+
+    // O índice não sabe responder (isbn que não é ISBN válido ou índice ainda carregando)
+    public static final long UNKNOWN = -2;
+
+    static final int MIN_EXPECTED_ISBNS = 1024;
+
+    private final BookRepository bookRepository;
+
+    // Leitura otimista: quem consulta não bloqueia nem é bloqueado, só repete com lock se uma escrita cruzou a leitura
+    private final StampedLock lock = new StampedLock();
+
+    // isbn -> id e o inverso, para remover e trocar o isbn de um livro só com o id
+    private LongLongHashMap idsByIsbn;
+    private LongLongHashMap isbnsById;
+
+    // Ids alterados durante a carga, para a carga não sobrescrever com o que leu antes da alteração
+    private LongLongHashMap touchedWhileLoading;
+
+    private volatile boolean ready;
+
+    public IsbnIndex(BookRepository bookRepository) {
+        this.bookRepository = bookRepository;
+        this.idsByIsbn = new LongLongHashMap(MIN_EXPECTED_ISBNS);
+        this.isbnsById = new LongLongHashMap(MIN_EXPECTED_ISBNS);
+    }
+
+    // Carrega o índice com os livros do banco quando a aplicação sobe
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(readOnly = true)
+    public void load() {
+        int expected = (int) Math.min(Math.max(bookRepository.count(), MIN_EXPECTED_ISBNS), Integer.MAX_VALUE / 2);
+        long stamp = lock.writeLock();
+        try {
+            // As escritas feitas durante a carga já entram no índice novo
+            ready = false;
+            idsByIsbn = new LongLongHashMap(expected);
+            isbnsById = new LongLongHashMap(expected);
+            touchedWhileLoading = new LongLongHashMap(MIN_EXPECTED_ISBNS);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+
+        try (Stream<Object[]> books = bookRepository.streamAllIdsAndIsbns()) {
+            books.forEach(book -> {
+                long id = (Long) book[0];
+                long key = IsbnKeys.key((String) book[1]);
+                if (key == IsbnKeys.INVALID) {
+                    return;
+                }
+                long writeStamp = lock.writeLock();
+                try {
+                    if (touchedWhileLoading.get(id) == LongLongHashMap.NO_VALUE) {
+                        index(key, id);
+                    }
+                } finally {
+                    lock.unlockWrite(writeStamp);
+                }
+            });
+        }
+
+        stamp = lock.writeLock();
+        try {
+            touchedWhileLoading = null;
+            ready = true;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    // Id do livro com esse isbn, NOT_FOUND ou UNKNOWN. Não aloca nada
+    public long idOf(String isbn) {
+        if (!ready) {
+            return UNKNOWN;
+        }
+        long key = IsbnKeys.key(isbn);
+        if (key == IsbnKeys.INVALID) {
+            return UNKNOWN;
+        }
+
+        long stamp = lock.tryOptimisticRead();
+        long id = idsByIsbn.get(key);
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                id = idsByIsbn.get(key);
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return id == LongLongHashMap.NO_VALUE ? NOT_FOUND : id;
+    }
+
+    // Livro cadastrado ou com o isbn alterado; o isbn anterior do livro sai do índice
+    public void put(String isbn, Long id) {
+        if (id == null) {
+            return;
+        }
+        long key = IsbnKeys.key(isbn);
+        long stamp = lock.writeLock();
+        try {
+            touch(id);
+            unindex(id);
+            if (key != IsbnKeys.INVALID) {
+                index(key, id);
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    public void remove(Long id) {
+        if (id == null) {
+            return;
+        }
+        long stamp = lock.writeLock();
+        try {
+            touch(id);
+            unindex(id);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    // Se outro livro ainda estiver com a chave (escritas fora de ordem), o id dele continua com a chave no inverso:
+    // quando ele for removido a chave fica com o livro novo, e uma consulta que não achar vai ao banco
+    private void index(long key, long id) {
+        idsByIsbn.put(key, id);
+        isbnsById.put(id, key);
+    }
+
+    private void unindex(long id) {
+        long key = isbnsById.remove(id);
+        if (key != LongLongHashMap.NO_VALUE && idsByIsbn.get(key) == id) {
+            idsByIsbn.remove(key);
+        }
+    }
+
+    private void touch(long id) {
+        if (touchedWhileLoading != null) {
+            touchedWhileLoading.put(id, 0);
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package com.projeto.library.libraryapi.service.isbn;
+
+// Mapa long -> long com endereçamento aberto (sondagem linear) num único array de long, sem boxing nem um objeto por entrada.
+// Chave e valor ficam lado a lado (posições 2i e 2i+1), então achar a chave já traz o valor na mesma linha de cache.
+// A chave 0 marca posição vazia, então as chaves precisam ser diferentes de 0. Não é thread-safe (ver IsbnIndex)
+final class LongLongHashMap {
+
+    // Devolvido pelo get/put/remove quando a chave não existe
+    static final long NO_VALUE = Long.MIN_VALUE;
+
+    private static final int MIN_CAPACITY = 16;
+
+    // Acima disso a sondagem linear começa a ficar longa
+    private static final double MAX_LOAD = 0.75;
+
+    private long[] table;
+    private int size;
+    private int resizeAt;
+
+    LongLongHashMap(int expectedSize) {
+        allocate(capacityFor(expectedSize));
+    }
+
+    int size() {
+        return size;
+    }
+
+    long get(long key) {
+        // Lê o array uma vez só e limita a sondagem ao tamanho dele: com leitura otimista (IsbnIndex)
+        // um resize concorrente pode trocar o array no meio, e o resultado é descartado depois
+        long[] table = this.table;
+        int mask = (table.length >> 1) - 1;
+        int slot = slot(key, mask);
+        for (int probes = 0; probes <= mask; probes++) {
+            long current = table[slot << 1];
+            if (current == 0) {
+                return NO_VALUE;
+            }
+            if (current == key) {
+                return table[(slot << 1) + 1];
+            }
+            slot = (slot + 1) & mask;
+        }
+        return NO_VALUE;
+    }
+
+    // Devolve o valor anterior, ou NO_VALUE se a chave era nova
+    long put(long key, long value) {
+        if (key == 0) {
+            throw new IllegalArgumentException("A chave 0 é reservada");
+        }
+        int mask = (table.length >> 1) - 1;
+        int slot = slot(key, mask);
+        while (table[slot << 1] != 0) {
+            if (table[slot << 1] == key) {
+                long previous = table[(slot << 1) + 1];
+                table[(slot << 1) + 1] = value;
+                return previous;
+            }
+            slot = (slot + 1) & mask;
+        }
+        table[slot << 1] = key;
+        table[(slot << 1) + 1] = value;
+        if (++size > resizeAt) {
+            resize((mask + 1) * 2);
+        }
+        return NO_VALUE;
+    }
+
+    // Devolve o valor removido, ou NO_VALUE se a chave não existia
+    long remove(long key) {
+        int mask = (table.length >> 1) - 1;
+        int slot = slot(key, mask);
+        while (table[slot << 1] != key) {
+            if (table[slot << 1] == 0) {
+                return NO_VALUE;
+            }
+            slot = (slot + 1) & mask;
+        }
+        long removed = table[(slot << 1) + 1];
+        size--;
+
+        // Em vez de deixar uma marca de removido, puxa para o buraco as chaves seguintes que
+        // passaram da posição delas por causa dele, assim a busca continua parando na primeira posição vazia
+        int gap = slot;
+        int next = slot;
+        while (true) {
+            next = (next + 1) & mask;
+            long current = table[next << 1];
+            if (current == 0) {
+                break;
+            }
+            int home = slot(current, mask);
+            if (((next - home) & mask) >= ((next - gap) & mask)) {
+                table[gap << 1] = current;
+                table[(gap << 1) + 1] = table[(next << 1) + 1];
+                gap = next;
+            }
+        }
+        table[gap << 1] = 0;
+        return removed;
+    }
+
+    private void resize(int capacity) {
+        long[] old = table;
+        allocate(capacity);
+        int mask = capacity - 1;
+        for (int i = 0; i < old.length; i += 2) {
+            long key = old[i];
+            if (key != 0) {
+                int slot = slot(key, mask);
+                while (table[slot << 1] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                table[slot << 1] = key;
+                table[(slot << 1) + 1] = old[i + 1];
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        table = new long[capacity * 2];
+        resizeAt = (int) (capacity * MAX_LOAD);
+    }
+
+    private static int capacityFor(int expectedSize) {
+        int capacity = MIN_CAPACITY;
+        while (capacity * MAX_LOAD < expectedSize) {
+            capacity *= 2;
+        }
+        return capacity;
+    }
+
+    // Os isbns são números sequenciais, então espalha os bits antes de usar a máscara
+    private static int slot(long key, int mask) {
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+}
@@ -0,0 +1,80 @@
+package com.projeto.library.libraryapi.util;
+
+// Número do ISBN-13 de um isbn: ISBN-10 e ISBN-13 do mesmo livro dão o mesmo número.
+// Usado pela entidade (coluna isbn_key), pelo IsbnIndex e pela migração V4, sem depender de nenhum deles
+public final class IsbnKeys {
+
+    // Chave de isbn que não é ISBN válido (todo ISBN-13 válido começa com 978 ou 979, então nunca é 0)
+    public static final long INVALID = 0;
+
+    private static final long ISBN_10_PREFIX = 978_000_000_000L;
+
+    private IsbnKeys() {
+    }
+
+    // Número do ISBN-13 do isbn, ignorando hífens e espaços; ISBN-10 vira o ISBN-13 equivalente (prefixo 978).
+    // INVALID quando não é um ISBN válido (tamanho, caracteres ou dígito verificador)
+    public static long key(CharSequence isbn) {
+        if (isbn == null) {
+            return INVALID;
+        }
+        long number = 0;
+        int digits = 0;
+        // Somas dos dígitos verificadores, calculadas na mesma passada para valer como ISBN-10 ou ISBN-13
+        int sum10 = 0;
+        int sum13 = 0;
+        // Soma do ISBN-13 com prefixo 978 gerado a partir dos 9 primeiros dígitos de um ISBN-10 (9*1 + 7*3 + 8*1 = 38)
+        int sumConverted = 38;
+        boolean checkX = false;
+        for (int i = 0; i < isbn.length(); i++) {
+            char c = isbn.charAt(i);
+            if (c == '-' || c == ' ') {
+                continue;
+            }
+            if (checkX) {
+                return INVALID;
+            }
+            int digit;
+            if (c >= '0' && c <= '9') {
+                digit = c - '0';
+            } else if ((c == 'X' || c == 'x') && digits == 9) {
+                digit = 10;
+                checkX = true;
+            } else {
+                return INVALID;
+            }
+            if (digits == 13) {
+                return INVALID;
+            }
+            sum10 += (10 - digits) * digit;
+            sum13 += (digits % 2 == 0 ? 1 : 3) * digit;
+            if (digits < 9) {
+                sumConverted += (digits % 2 == 0 ? 3 : 1) * digit;
+                number = number * 10 + digit;
+            } else if (!checkX) {
+                number = number * 10 + digit;
+            }
+            digits++;
+        }
+
+        if (digits == 13) {
+            long prefix = number / 10_000_000_000L;
+            return sum13 % 10 == 0 && (prefix == 978 || prefix == 979) ? number : INVALID;
+        }
+        if (digits == 10) {
+            if (sum10 % 11 != 0) {
+                return INVALID;
+            }
+            // Descarta o dígito verificador do ISBN-10 e calcula o do ISBN-13
+            long first9 = checkX ? number : number / 10;
+            return (ISBN_10_PREFIX + first9) * 10 + (10 - sumConverted % 10) % 10;
+        }
+        return INVALID;
+    }
+
+    // Mesmo número, nulo quando o isbn não é um ISBN válido (valor da coluna isbn_key)
+    public static Long isbnKeyOf(String isbn) {
+        long key = key(isbn);
+        return key == INVALID ? null : key;
+    }
+}
@@ -0,0 +1,71 @@
+package db.migration.postgresql;
+
+import com.projeto.library.libraryapi.util.IsbnKeys;
+import org.flywaydb.core.api.migration.BaseJavaMigration;
+import org.flywaydb.core.api.migration.Context;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.sql.Types;
+
+// Coluna isbn_key (ver Book.isbnKey) preenchida para os livros que já existem. Em Java porque o ISBN-13
+// equivalente é calculado com a mesma regra da aplicação (IsbnKeys.key).
+// Livros cadastrados antes com o mesmo ISBN em formas diferentes (ISBN-10 e ISBN-13) ficam com a chave só
+// no de menor id, para o índice único da V5 poder ser criado; os outros são logados para revisão
+public class V4__book_isbn_key extends BaseJavaMigration {
+
+    private static final Logger log = LoggerFactory.getLogger(V4__book_isbn_key.class);
+
+    private static final int BATCH_SIZE = 1000;
+
+    @Override
+    public void migrate(Context context) throws Exception {
+        Connection connection = context.getConnection();
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("alter table book add column if not exists isbn_key bigint");
+        }
+
+        try (Statement select = connection.createStatement();
+             PreparedStatement update = connection.prepareStatement("update book set isbn_key = ? where id = ?")) {
+            // Lido com cursor (a migração roda em transação), sem carregar a tabela em memória
+            select.setFetchSize(BATCH_SIZE);
+            int pending = 0;
+            try (ResultSet books = select.executeQuery("select id, isbn from book where isbn is not null")) {
+                while (books.next()) {
+                    Long isbnKey = IsbnKeys.isbnKeyOf(books.getString(2));
+                    if (isbnKey == null) {
+                        continue;
+                    }
+                    update.setLong(1, isbnKey);
+                    update.setLong(2, books.getLong(1));
+                    update.addBatch();
+                    if (++pending == BATCH_SIZE) {
+                        update.executeBatch();
+                        pending = 0;
+                    }
+                }
+            }
+            if (pending > 0) {
+                update.executeBatch();
+            }
+        }
+
+        try (PreparedStatement duplicates = connection.prepareStatement(
+                "select id, isbn from (select id, isbn, row_number() over (partition by isbn_key order by id) as position " +
+                        "from book where isbn_key is not null) books where position > 1");
+             PreparedStatement clear = connection.prepareStatement("update book set isbn_key = ? where id = ?");
+             ResultSet books = duplicates.executeQuery()) {
+            while (books.next()) {
+                log.warn("Livro {} tem o mesmo ISBN de um livro mais antigo em outra forma ({}), isbn_key fica vazio",
+                        books.getLong(1), books.getString(2));
+                clear.setNull(1, Types.BIGINT);
+                clear.setLong(2, books.getLong(1));
+                clear.executeUpdate();
+            }
+        }
+    }
+}
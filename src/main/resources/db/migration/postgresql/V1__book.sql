@@ -0,0 +1,29 @@
+-- Tabela book no formato que a entidade Book espera (spring.jpa.hibernate.ddl-auto=validate).
+-- Roda tanto num banco vazio quanto num banco criado pelo ddl-auto antigo (baseline-on-migrate na versão 0),
+-- por isso cada passo só cria o que ainda não existe
+
+create table if not exists book (
+    id     bigint not null primary key,
+    title  varchar(255),
+    author varchar(255),
+    isbn   varchar(255)
+);
+
+-- Optimistic locking / ETag e data da última alteração
+alter table book add column if not exists version bigint;
+alter table book add column if not exists last_modified timestamp;
+
+-- Ids por sequence com o mesmo allocationSize do @SequenceGenerator, para o Hibernate agrupar os INSERTs.
+-- Nos bancos que já têm livros (ids da antiga coluna identity), a sequence começa depois do maior id
+create sequence if not exists book_seq start 1 increment 50;
+select setval('book_seq', max(id)) from book having max(id) is not null;
+
+-- Isbn único mesmo com cadastros concorrentes. Falha aqui se o banco já tiver isbns duplicados,
+-- que precisam ser resolvidos antes
+do $$
+begin
+    if not exists (select 1 from pg_constraint where conname = 'uk_book_isbn') then
+        alter table book add constraint uk_book_isbn unique (isbn);
+    end if;
+end
+$$;
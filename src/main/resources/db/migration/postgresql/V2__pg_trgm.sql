@@ -0,0 +1,2 @@
+-- Operadores de trigrama para os índices da busca "contém" (V3). Precisa de permissão para criar a extensão
+create extension if not exists pg_trgm;
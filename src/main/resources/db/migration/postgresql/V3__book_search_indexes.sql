@@ -0,0 +1,12 @@
+-- Índices da busca de livros, que o Hibernate não sabe gerar a partir da entidade:
+-- - trigrama (pg_trgm) em lower(coluna), usado pelo "contém" (lower(col) like '%x%') que o Example gera
+-- - b-tree com text_pattern_ops em lower(coluna), usado pela busca por prefixo (lower(col) like 'x%')
+-- Com concurrently a criação não bloqueia os INSERTs e UPDATEs da tabela. O Flyway roda esta migração fora de
+-- transação (concurrently não roda dentro de uma), por isso ela só tem esses comandos.
+-- Se uma criação for interrompida fica um índice inválido com o mesmo nome: apague-o antes de rodar de novo
+
+create index concurrently if not exists idx_book_title_trgm on book using gin (lower(title) gin_trgm_ops);
+create index concurrently if not exists idx_book_author_trgm on book using gin (lower(author) gin_trgm_ops);
+create index concurrently if not exists idx_book_isbn_trgm on book using gin (lower(isbn) gin_trgm_ops);
+create index concurrently if not exists idx_book_title_prefix on book (lower(title) text_pattern_ops);
+create index concurrently if not exists idx_book_author_prefix on book (lower(author) text_pattern_ops);
@@ -0,0 +1,3 @@
+-- ISBN-10 e ISBN-13 do mesmo livro não podem ser cadastrados como livros diferentes (ver Book.isbnKey).
+-- Como na V3, concurrently para não bloquear as escritas, numa migração só com ele (roda fora de transação)
+create unique index concurrently if not exists uk_book_isbn_key on book (isbn_key);
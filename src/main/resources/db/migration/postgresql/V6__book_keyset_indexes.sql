@@ -0,0 +1,7 @@
+-- Índices da paginação por cursor (BookRepositoryCustom.findAfter), que ordena por (campo, id) e busca
+-- (campo > valor) or (campo = valor and id > último id). Sem eles cada página ordena a tabela inteira.
+-- O isbn já tem o índice único uk_book_isbn, e o id a chave primária.
+-- Como na V3, concurrently para não bloquear as escritas, numa migração só com eles (roda fora de transação)
+
+create index concurrently if not exists idx_book_title_id on book (title, id);
+create index concurrently if not exists idx_book_author_id on book (author, id);
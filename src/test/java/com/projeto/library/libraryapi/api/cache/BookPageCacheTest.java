@@ -0,0 +1,112 @@
+package com.projeto.library.libraryapi.api.cache;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.projeto.library.libraryapi.api.dto.BookDTO;
+import com.projeto.library.libraryapi.api.entity.Book;
+import com.projeto.library.libraryapi.config.CacheConfig;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.data.domain.ExampleMatcher;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+public class BookPageCacheTest {
+
+    private BookPageCache bookPageCache;
+
+    @BeforeEach
+    public void setUp() {
+        bookPageCache = new BookPageCache(new ConcurrentMapCacheManager(CacheConfig.BOOK_PAGES), new ObjectMapper(),
+                new MappingJackson2CborHttpMessageConverter(), new MappingJackson2SmileHttpMessageConverter(),
+                true, DataSize.ofKilobytes(2));
+    }
+
+    @Test
+    @DisplayName("it should pick the cached format from the Accept header, JSON first")
+    public void negotiateTest() {
+        Assertions.assertThat(bookPageCache.negotiate(null)).contains(MediaType.APPLICATION_JSON);
+        Assertions.assertThat(bookPageCache.negotiate("*/*")).contains(MediaType.APPLICATION_JSON);
+        Assertions.assertThat(bookPageCache.negotiate("application/cbor, application/json;q=0.5")).contains(MediaType.APPLICATION_CBOR);
+        Assertions.assertThat(bookPageCache.negotiate("application/x-jackson-smile").get().getSubtype()).isEqualTo("x-jackson-smile");
+        Assertions.assertThat(bookPageCache.negotiate("text/html")).isEmpty();
+    }
+
+    @Test
+    @DisplayName("it should use the same key for filters that differ only in case")
+    public void keyTest() {
+        PageRequest pageRequest = PageRequest.of(0, 10);
+        List<Object> key = bookPageCache.key(Book.builder().title("Aventuras").build(), pageRequest,
+                ExampleMatcher.StringMatcher.CONTAINING, false, MediaType.APPLICATION_JSON);
+
+        Assertions.assertThat(bookPageCache.key(Book.builder().title("aVENTURAS").build(), pageRequest,
+                ExampleMatcher.StringMatcher.CONTAINING, false, MediaType.APPLICATION_JSON)).isEqualTo(key);
+        Assertions.assertThat(bookPageCache.key(Book.builder().title("Aventuras").build(), PageRequest.of(1, 10),
+                ExampleMatcher.StringMatcher.CONTAINING, false, MediaType.APPLICATION_JSON)).isNotEqualTo(key);
+        Assertions.assertThat(bookPageCache.key(Book.builder().title("Aventuras").build(), pageRequest,
+                ExampleMatcher.StringMatcher.CONTAINING, false, MediaType.APPLICATION_CBOR)).isNotEqualTo(key);
+        Assertions.assertThat(bookPageCache.key(Book.builder().title("Aventuras").build(), pageRequest,
+                ExampleMatcher.StringMatcher.CONTAINING, true, MediaType.APPLICATION_JSON)).isNotEqualTo(key);
+    }
+
+    @Test
+    @DisplayName("it should not share a key between different filters")
+    public void keyCollisionTest() {
+        PageRequest pageRequest = PageRequest.of(0, 10);
+
+        // "a|b" + "" e "a" + "b|" davam a mesma chave quando as partes eram juntadas com "|"
+        Assertions.assertThat(bookPageCache.key(Book.builder().title("a|b").author("").build(), pageRequest,
+                ExampleMatcher.StringMatcher.CONTAINING, false, MediaType.APPLICATION_JSON))
+                .isNotEqualTo(bookPageCache.key(Book.builder().title("a").author("b|").build(), pageRequest,
+                        ExampleMatcher.StringMatcher.CONTAINING, false, MediaType.APPLICATION_JSON));
+        // ?title= filtra (like '%%' deixa de fora os títulos nulos), sem title não filtra
+        Assertions.assertThat(bookPageCache.key(Book.builder().title("").build(), pageRequest,
+                ExampleMatcher.StringMatcher.CONTAINING, false, MediaType.APPLICATION_JSON))
+                .isNotEqualTo(bookPageCache.key(new Book(), pageRequest,
+                        ExampleMatcher.StringMatcher.CONTAINING, false, MediaType.APPLICATION_JSON));
+    }
+
+    @Test
+    @DisplayName("it should keep the serialized page and its gzip only above the size threshold")
+    public void putTest() throws IOException {
+        // cenário
+        Page<BookDTO> small = new PageImpl<>(books(1), PageRequest.of(0, 10), 1);
+        Page<BookDTO> large = new PageImpl<>(books(100), PageRequest.of(0, 100), 100);
+
+        // execução
+        bookPageCache.put(Collections.singletonList("small"), small, "\"small\"", MediaType.APPLICATION_JSON);
+        bookPageCache.put(Collections.singletonList("large"), large, "\"large\"", MediaType.APPLICATION_JSON);
+        BookPageCache.CachedPage cachedSmall = bookPageCache.get(Collections.singletonList("small"));
+        BookPageCache.CachedPage cachedLarge = bookPageCache.get(Collections.singletonList("large"));
+
+        // verificação
+        Assertions.assertThat(cachedSmall.getGzipBody()).isNull();
+        Assertions.assertThat(cachedLarge.getEtag()).isEqualTo("\"large\"");
+        Assertions.assertThat(cachedLarge.getGzipBody().length).isLessThan(cachedLarge.getBody().length);
+        try (GZIPInputStream gzip = new GZIPInputStream(new ByteArrayInputStream(cachedLarge.getGzipBody()))) {
+            Assertions.assertThat(gzip.readAllBytes()).isEqualTo(cachedLarge.getBody());
+        }
+    }
+
+    private List<BookDTO> books(int size) {
+        List<BookDTO> books = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            books.add(BookDTO.builder().id((long) i).title("As aventuras " + i).author("Leonardo").isbn("00" + i).build());
+        }
+        return books;
+    }
+}
@@ -0,0 +1,142 @@
+package com.projeto.library.libraryapi.api.controller;
+
+import com.projeto.library.libraryapi.api.dto.BookDTO;
+import com.projeto.library.libraryapi.api.mapper.BookMapper;
+import com.projeto.library.libraryapi.config.AsyncConfig;
+import com.projeto.library.libraryapi.config.CacheConfig;
+import com.projeto.library.libraryapi.service.BookService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.BDDMockito;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.Cache;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+import org.springframework.test.web.servlet.result.MockMvcResultMatchers;
+
+import java.util.Optional;
+
+// Testa o modo assíncrono: a resposta só sai no segundo dispatch (asyncDispatch), depois que o future completa
+@ExtendWith(SpringExtension.class)
+@ActiveProfiles({"test", "async"})
+@WebMvcTest(AsyncBookController.class)
+@Import(AsyncConfig.class)
+@AutoConfigureMockMvc
+public class AsyncBookControllerTest {
+
+    private static String BOOK_API = "/api/async/books";
+
+    @Autowired
+    MockMvc mvc;
+
+    @MockBean
+    BookService bookService;
+
+    @MockBean
+    BookMapper bookMapper;
+
+    @Autowired
+    CacheManager cacheManager;
+
+    private Cache books;
+
+    @TestConfiguration
+    static class CacheTestConfig {
+        @Bean
+        public CacheManager cacheManager() {
+            return new ConcurrentMapCacheManager(CacheConfig.BOOKS);
+        }
+    }
+
+    @BeforeEach
+    public void setUp() {
+        books = cacheManager.getCache(CacheConfig.BOOKS);
+        books.clear();
+    }
+
+    @Test
+    @DisplayName("it should read a book that is not cached on the book executor")
+    public void getBookAsyncTest() throws Exception {
+        // cenário
+        BDDMockito.given(bookService.getDtoById(1l)).willReturn(Optional.of(book()));
+
+        // execução
+        MvcResult result = mvc.perform(MockMvcRequestBuilders.get(BOOK_API.concat("/1")))
+                .andExpect(MockMvcResultMatchers.request().asyncStarted())
+                .andReturn();
+
+        // verificação
+        mvc.perform(MockMvcRequestBuilders.asyncDispatch(result))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.header().string(HttpHeaders.ETAG, "\"1-3\""))
+                .andExpect(MockMvcResultMatchers.jsonPath("title").value("Meu livro"));
+    }
+
+    @Test
+    @DisplayName("it should answer a cached book without going to the service")
+    public void getCachedBookTest() throws Exception {
+        // cenário
+        books.put(1l, book());
+
+        // execução
+        MvcResult result = mvc.perform(MockMvcRequestBuilders.get(BOOK_API.concat("/1")))
+                .andReturn();
+
+        // verificação
+        mvc.perform(MockMvcRequestBuilders.asyncDispatch(result))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("id").value(1));
+        Mockito.verify(bookService, Mockito.never()).getDtoById(Mockito.any());
+    }
+
+    @Test
+    @DisplayName("it should return not found for a missing book")
+    public void getMissingBookTest() throws Exception {
+        // cenário
+        BDDMockito.given(bookService.getDtoById(1l)).willReturn(Optional.empty());
+
+        // execução
+        MvcResult result = mvc.perform(MockMvcRequestBuilders.get(BOOK_API.concat("/1")))
+                .andExpect(MockMvcResultMatchers.request().asyncStarted())
+                .andReturn();
+
+        // verificação
+        mvc.perform(MockMvcRequestBuilders.asyncDispatch(result))
+                .andExpect(MockMvcResultMatchers.status().isNotFound());
+    }
+
+    @Test
+    @DisplayName("it should return not modified when the ETag matches")
+    public void getBookNotModifiedTest() throws Exception {
+        // cenário
+        books.put(1l, book());
+
+        // execução
+        MvcResult result = mvc.perform(MockMvcRequestBuilders.get(BOOK_API.concat("/1"))
+                .header(HttpHeaders.IF_NONE_MATCH, "\"1-3\""))
+                .andReturn();
+
+        // verificação
+        mvc.perform(MockMvcRequestBuilders.asyncDispatch(result))
+                .andExpect(MockMvcResultMatchers.status().isNotModified());
+    }
+
+    private BookDTO book() {
+        return BookDTO.builder().id(1l).title("Meu livro").author("Autor").isbn("123").version(3l).build();
+    }
+}
@@ -1,10 +1,19 @@
 package com.projeto.library.libraryapi.api.controller;
 
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.projeto.library.libraryapi.api.cache.BookPageCache;
 import com.projeto.library.libraryapi.api.dto.BookDTO;
 import com.projeto.library.libraryapi.api.entity.Book;
 import com.projeto.library.libraryapi.api.exceptions.BusinessExeption;
+import com.projeto.library.libraryapi.service.BookBatchResult;
+import com.projeto.library.libraryapi.service.BookCursor;
+import com.projeto.library.libraryapi.service.BookPage;
+import com.projeto.library.libraryapi.service.BookSearchService;
 import com.projeto.library.libraryapi.service.BookService;
+import org.assertj.core.api.Assertions;
 import org.hamcrest.Matchers;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
@@ -15,10 +24,14 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.data.domain.ExampleMatcher;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 import org.springframework.test.web.servlet.MockMvc;
@@ -26,8 +39,14 @@ import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilde
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
 import org.springframework.test.web.servlet.result.MockMvcResultMatchers;
 
+import java.time.Instant;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 
 //TESTA O BookController
@@ -52,6 +71,12 @@ public class BookControllerTest {
     @MockBean
     BookService bookService;
 
+    @MockBean
+    BookSearchService bookSearchService;
+
+    @MockBean
+    BookPageCache bookPageCache;
+
     @Test
     @DisplayName("It should be able to create a new book")
     public void createBootTest() throws Exception {
@@ -106,6 +131,23 @@ public class BookControllerTest {
            .andExpect(MockMvcResultMatchers.jsonPath("errors", Matchers.hasSize(3))); // Será uma mensagem de erro para cada propriedade e, tem 3 propriedades(title, authot e isbn)
     }
 
+    @Test
+    @DisplayName("It should reject texts longer than the columns")
+    public void createBookTooLongTest() throws Exception {
+        BookDTO bookDTO = createNewBook();
+        bookDTO.setTitle(String.join("", Collections.nCopies(300, "a")));
+
+        mvc
+           .perform(MockMvcRequestBuilders.post(BOOK_API)
+                   .contentType(MediaType.APPLICATION_JSON)
+                   .accept(MediaType.APPLICATION_JSON)
+                   .content(new ObjectMapper().writeValueAsString(bookDTO)))
+           .andExpect(MockMvcResultMatchers.status().isBadRequest())
+           .andExpect(MockMvcResultMatchers.jsonPath("errors", Matchers.hasSize(1)));
+
+        Mockito.verify(bookService, Mockito.never()).save(Mockito.any(Book.class));
+    }
+
     @Test
     @DisplayName("It should not be able to create a book with duplicated ISBN")
     public void createBookWithDuplicatedISBN() throws Exception {
@@ -131,20 +173,109 @@ public class BookControllerTest {
             .andExpect(MockMvcResultMatchers.jsonPath("errors[0]").value("Isbn já cadastrado"));
     }
 
+    @Test
+    @DisplayName("It should create books in batch returning the errors by row")
+    public void createBooksInBatchTest() throws Exception {
+        BookBatchResult saved = new BookBatchResult();
+        saved.getSaved().add(Book.builder().id(1l).author("Leonardo").title("As aventuras").isbn("001").build());
+        saved.getErrors().put(1, "Isbn já cadastrado");
+        BDDMockito.given(bookService.saveAll(Mockito.anyList())).willReturn(saved);
+
+        // A segunda linha é inválida e nem chega no service, a terceira é duplicada
+        String json = new ObjectMapper().writeValueAsString(Arrays.asList(createNewBook(), new BookDTO(), createNewBook()));
+
+        MockHttpServletRequestBuilder request = MockMvcRequestBuilders
+                .post(BOOK_API.concat("/batch"))
+                .contentType(MediaType.APPLICATION_JSON)
+                .accept(MediaType.APPLICATION_JSON)
+                .content(json);
+
+        mvc
+            .perform(request)
+            .andExpect(MockMvcResultMatchers.status().isOk())
+            .andExpect(MockMvcResultMatchers.jsonPath("created").value(1))
+            .andExpect(MockMvcResultMatchers.jsonPath("errors", Matchers.hasSize(2)))
+            .andExpect(MockMvcResultMatchers.jsonPath("errors[0].row").value(1))
+            .andExpect(MockMvcResultMatchers.jsonPath("errors[0].errors", Matchers.hasSize(3)))
+            .andExpect(MockMvcResultMatchers.jsonPath("errors[1].row").value(2))
+            .andExpect(MockMvcResultMatchers.jsonPath("errors[1].errors[0]").value("Isbn já cadastrado"));
+    }
+
+    @Test
+    @DisplayName("It should create books in batch from a NDJSON stream")
+    public void createBooksFromNdjsonTest() throws Exception {
+        BookBatchResult saved = new BookBatchResult();
+        saved.getSaved().add(Book.builder().id(1l).author("Leonardo").title("As aventuras").isbn("001").build());
+        saved.getSaved().add(Book.builder().id(2l).author("Leonardo").title("As aventuras").isbn("002").build());
+        BDDMockito.given(bookService.saveAll(Mockito.anyList())).willReturn(saved);
+
+        ObjectMapper objectMapper = new ObjectMapper();
+        String ndjson = objectMapper.writeValueAsString(createNewBook()) + "\n"
+                + objectMapper.writeValueAsString(BookDTO.builder().author("Leonardo").title("As aventuras").isbn("002").build());
+
+        MockHttpServletRequestBuilder request = MockMvcRequestBuilders
+                .post(BOOK_API.concat("/batch"))
+                .contentType("application/x-ndjson")
+                .accept(MediaType.APPLICATION_JSON)
+                .content(ndjson);
+
+        mvc
+            .perform(request)
+            .andExpect(MockMvcResultMatchers.status().isOk())
+            .andExpect(MockMvcResultMatchers.jsonPath("created").value(2))
+            .andExpect(MockMvcResultMatchers.jsonPath("errors", Matchers.hasSize(0)));
+    }
+
+    @Test
+    @DisplayName("It should report a malformed NDJSON line by row and keep loading the rest")
+    public void createBooksFromNdjsonWithMalformedLineTest() throws Exception {
+        BDDMockito.given(bookService.saveAll(Mockito.anyList())).willAnswer(invocation -> {
+            BookBatchResult saved = new BookBatchResult();
+            saved.getSaved().addAll(invocation.getArgument(0));
+            return saved;
+        });
+
+        ObjectMapper objectMapper = new ObjectMapper();
+        // A segunda linha não é JSON e a terceira não tem o tipo certo; as outras são cadastradas
+        String ndjson = objectMapper.writeValueAsString(createNewBook()) + "\n"
+                + "{\"title\": \"As aventuras\", \n"
+                + "[1, 2]\n"
+                + "\n"
+                + objectMapper.writeValueAsString(BookDTO.builder().author("Leonardo").title("As aventuras").isbn("002").build());
+
+        MockHttpServletRequestBuilder request = MockMvcRequestBuilders
+                .post(BOOK_API.concat("/batch"))
+                .contentType("application/x-ndjson")
+                .accept(MediaType.APPLICATION_JSON)
+                .content(ndjson);
+
+        mvc
+            .perform(request)
+            .andExpect(MockMvcResultMatchers.status().isOk())
+            .andExpect(MockMvcResultMatchers.jsonPath("created").value(2))
+            .andExpect(MockMvcResultMatchers.jsonPath("errors", Matchers.hasSize(2)))
+            .andExpect(MockMvcResultMatchers.jsonPath("errors[0].row").value(1))
+            .andExpect(MockMvcResultMatchers.jsonPath("errors[0].errors[0]").value(Matchers.startsWith("JSON inválido")))
+            .andExpect(MockMvcResultMatchers.jsonPath("errors[1].row").value(2));
+
+        // O livro da linha 0 foi gravado antes da linha com erro, o da linha 3 depois
+        Mockito.verify(bookService, Mockito.times(2)).saveAll(Mockito.argThat(books -> books.size() == 1));
+    }
+
     @Test
     @DisplayName("it should return a book detail with given id")
     public void getBookDetailTest() throws Exception {
         // cenário (given)
         Long id = 1l;
 
-        Book book = Book.builder()
+        BookDTO book = BookDTO.builder()
                         .id(id)
                         .title(createNewBook().getTitle())
                         .author(createNewBook().getAuthor())
                         .isbn(createNewBook().getIsbn())
                         .build();
 
-        BDDMockito.given(bookService.getById(id)).willReturn(Optional.of(book));
+        BDDMockito.given(bookService.getDtoById(id)).willReturn(Optional.of(book));
 
         // execução (when)
         MockHttpServletRequestBuilder request = MockMvcRequestBuilders
@@ -164,11 +295,257 @@ public class BookControllerTest {
 
     }
 
+    @Test
+    @DisplayName("it should return many books at once and report the missing ids")
+    public void getBooksByIdsTest() throws Exception {
+        BookDTO first = BookDTO.builder().id(3l).title("As aventuras").author("Leonardo").isbn("001").build();
+        BookDTO second = BookDTO.builder().id(1l).title("Outras aventuras").author("Leonardo").isbn("002").build();
+        BDDMockito.given(bookService.getByIds(Mockito.anyCollection())).willReturn(Arrays.asList(first, second));
+
+        mvc
+            .perform(MockMvcRequestBuilders.get(BOOK_API.concat("?ids=3,2,1,3")).accept(MediaType.APPLICATION_JSON))
+            .andExpect(MockMvcResultMatchers.status().isOk())
+            .andExpect(MockMvcResultMatchers.jsonPath("books", Matchers.hasSize(2)))
+            .andExpect(MockMvcResultMatchers.jsonPath("books[0].id").value(3))
+            .andExpect(MockMvcResultMatchers.jsonPath("books[1].isbn").value("002"))
+            .andExpect(MockMvcResultMatchers.jsonPath("notFound", Matchers.contains(2)));
+
+        // Os ids repetidos vão uma vez só para o service, e a busca paginada não é usada
+        Mockito.verify(bookService).getByIds(Mockito.argThat(ids -> ids.size() == 3));
+        Mockito.verify(bookService, Mockito.never()).findDtos(Mockito.any(), Mockito.any(), Mockito.any(), Mockito.anyBoolean());
+    }
+
+    @Test
+    @DisplayName("it should return a book detail with given isbn")
+    public void getBookByIsbnTest() throws Exception {
+        BookDTO book = BookDTO.builder().id(1l).title("As aventuras").author("Leonardo").isbn("978-0-306-40615-7")
+                        .version(2l).build();
+        BDDMockito.given(bookService.findIdByIsbn("0-306-40615-2")).willReturn(Optional.of(1l));
+        BDDMockito.given(bookService.getDtoById(1l)).willReturn(Optional.of(book));
+
+        mvc
+            .perform(MockMvcRequestBuilders.get(BOOK_API.concat("/isbn/0-306-40615-2")).accept(MediaType.APPLICATION_JSON))
+            .andExpect(MockMvcResultMatchers.status().isOk())
+            .andExpect(MockMvcResultMatchers.jsonPath("id").value(1))
+            .andExpect(MockMvcResultMatchers.jsonPath("isbn").value("978-0-306-40615-7"))
+            .andExpect(MockMvcResultMatchers.header().string(HttpHeaders.ETAG, "\"1-2\""));
+
+        mvc
+            .perform(MockMvcRequestBuilders.get(BOOK_API.concat("/isbn/9780131103627")).accept(MediaType.APPLICATION_JSON))
+            .andExpect(MockMvcResultMatchers.status().isNotFound());
+    }
+
+    @Test
+    @DisplayName("it should look the isbn up in the database when the isbn index is stale")
+    public void getBookByStaleIsbnTest() throws Exception {
+        // O índice ainda aponta para o livro 1, que trocou de isbn em outra instância; o isbn agora é do livro 2
+        BookDTO changed = BookDTO.builder().id(1l).isbn("9780131103627").version(3l).build();
+        BookDTO book = BookDTO.builder().id(2l).isbn("978-0-306-40615-7").version(1l).build();
+        BDDMockito.given(bookService.findIdByIsbn("9780306406157")).willReturn(Optional.of(1l));
+        BDDMockito.given(bookService.findIdByIsbnInDatabase("9780306406157")).willReturn(Optional.of(2l));
+        BDDMockito.given(bookService.getDtoById(1l)).willReturn(Optional.of(changed));
+        BDDMockito.given(bookService.getDtoById(2l)).willReturn(Optional.of(book));
+
+        mvc
+            .perform(MockMvcRequestBuilders.get(BOOK_API.concat("/isbn/9780306406157")).accept(MediaType.APPLICATION_JSON))
+            .andExpect(MockMvcResultMatchers.status().isOk())
+            .andExpect(MockMvcResultMatchers.jsonPath("id").value(2))
+            .andExpect(MockMvcResultMatchers.header().string(HttpHeaders.ETAG, "\"2-1\""));
+
+        // Livro apagado em outra instância: o índice ainda tem o isbn, o banco não
+        BDDMockito.given(bookService.findIdByIsbn("9780131103627")).willReturn(Optional.of(3l));
+
+        mvc
+            .perform(MockMvcRequestBuilders.get(BOOK_API.concat("/isbn/9780131103627")).accept(MediaType.APPLICATION_JSON))
+            .andExpect(MockMvcResultMatchers.status().isNotFound());
+    }
+
+    @Test
+    @DisplayName("it should return only the requested fields of a book")
+    public void getBookFieldsTest() throws Exception {
+        Map<String, Object> book = new LinkedHashMap<>();
+        book.put("title", "As aventuras");
+        book.put("id", 1l);
+        book.put("version", 2l);
+        book.put("lastModified", Instant.parse("2020-10-01T10:00:00Z"));
+        BDDMockito.given(bookService.getFieldsById(1l, Arrays.asList("id", "title", "version", "lastModified")))
+                .willReturn(Optional.of(book));
+
+        mvc
+            .perform(MockMvcRequestBuilders.get(BOOK_API.concat("/1?fields=title,id")).accept(MediaType.APPLICATION_JSON))
+            .andExpect(MockMvcResultMatchers.status().isOk())
+            .andExpect(MockMvcResultMatchers.content().json("{\"id\":1,\"title\":\"As aventuras\"}", true))
+            .andExpect(MockMvcResultMatchers.header().string(HttpHeaders.ETAG, "W/\"1-2\""))
+            .andExpect(MockMvcResultMatchers.header().exists(HttpHeaders.LAST_MODIFIED));
+    }
+
+    @Test
+    @DisplayName("it should return only the requested fields of the books found")
+    public void findBooksFieldsTest() throws Exception {
+        Map<String, Object> book = new LinkedHashMap<>();
+        book.put("id", 1l);
+        book.put("isbn", "001");
+        book.put("version", 0l);
+        BDDMockito.given(bookService.findFields(Mockito.any(Book.class), Mockito.any(Pageable.class),
+                Mockito.eq(ExampleMatcher.StringMatcher.CONTAINING), Mockito.eq(Arrays.asList("isbn", "id", "version")),
+                Mockito.eq(false)))
+                .willReturn(new BookPage<>(new PageImpl<>(Arrays.asList(book), PageRequest.of(0, 100), 1), true));
+
+        mvc
+            .perform(MockMvcRequestBuilders.get(BOOK_API.concat("?title=aventuras&fields=isbn&page=0&size=100"))
+                    .accept(MediaType.APPLICATION_JSON))
+            .andExpect(MockMvcResultMatchers.status().isOk())
+            .andExpect(MockMvcResultMatchers.jsonPath("content[0]").value(Matchers.aMapWithSize(1)))
+            .andExpect(MockMvcResultMatchers.jsonPath("content[0].isbn").value("001"))
+            .andExpect(MockMvcResultMatchers.jsonPath("totalElements").value(1))
+            .andExpect(MockMvcResultMatchers.header().string(HttpHeaders.ETAG, Matchers.startsWith("W/\"")));
+
+        Mockito.verify(bookPageCache, Mockito.never()).get(Mockito.anyList());
+    }
+
+    @Test
+    @DisplayName("it should reject fields that the book does not have")
+    public void invalidFieldsTest() throws Exception {
+        mvc
+            .perform(MockMvcRequestBuilders.get(BOOK_API.concat("/1?fields=title,password")).accept(MediaType.APPLICATION_JSON))
+            .andExpect(MockMvcResultMatchers.status().isBadRequest())
+            .andExpect(MockMvcResultMatchers.jsonPath("errors[0]").value("Campo inválido: password"));
+
+        Mockito.verify(bookService, Mockito.never()).getFieldsById(Mockito.anyLong(), Mockito.any());
+    }
+
+    @Test
+    @DisplayName("it should return not modified when the book did not change since the last read")
+    public void getBookNotModifiedTest() throws Exception {
+        BookDTO book = BookDTO.builder().id(1l).title("As aventuras").author("Leonardo").isbn("001")
+                        .version(3l).lastModified(Instant.parse("2020-10-01T10:00:00Z")).build();
+        BDDMockito.given(bookService.getDtoById(1l)).willReturn(Optional.of(book));
+
+        // Primeira leitura devolve o ETag e o Last-Modified
+        mvc
+            .perform(MockMvcRequestBuilders.get(BOOK_API.concat("/1")).accept(MediaType.APPLICATION_JSON))
+            .andExpect(MockMvcResultMatchers.status().isOk())
+            .andExpect(MockMvcResultMatchers.header().string(HttpHeaders.ETAG, "\"1-3\""))
+            .andExpect(MockMvcResultMatchers.header().exists(HttpHeaders.LAST_MODIFIED));
+
+        // Com o mesmo ETag, 304 sem corpo
+        mvc
+            .perform(MockMvcRequestBuilders.get(BOOK_API.concat("/1"))
+                    .header(HttpHeaders.IF_NONE_MATCH, "\"1-3\"")
+                    .accept(MediaType.APPLICATION_JSON))
+            .andExpect(MockMvcResultMatchers.status().isNotModified())
+            .andExpect(MockMvcResultMatchers.content().string(""));
+    }
+
+    @Test
+    @DisplayName("it should not update a book when If-Match has an old version")
+    public void updateBookWithOldVersionTest() throws Exception {
+        BDDMockito.given(bookService.update(Mockito.eq(1l), Mockito.any(), Mockito.any(), Mockito.eq(1l)))
+                .willThrow(new ObjectOptimisticLockingFailureException(Book.class, 1l));
+
+        MockHttpServletRequestBuilder request = MockMvcRequestBuilders
+                .put(BOOK_API.concat("/1"))
+                .header(HttpHeaders.IF_MATCH, "\"1-1\"")
+                .content(new ObjectMapper().writeValueAsString(createNewBook()))
+                .accept(MediaType.APPLICATION_JSON)
+                .contentType(MediaType.APPLICATION_JSON);
+
+        mvc
+            .perform(request)
+            .andExpect(MockMvcResultMatchers.status().isPreconditionFailed());
+    }
+
+    @Test
+    @DisplayName("it should not update a book when If-Match has the tag of another book")
+    public void updateBookWithOtherBookTagTest() throws Exception {
+        MockHttpServletRequestBuilder request = MockMvcRequestBuilders
+                .put(BOOK_API.concat("/1"))
+                .header(HttpHeaders.IF_MATCH, "\"2-1\"")
+                .content(new ObjectMapper().writeValueAsString(createNewBook()))
+                .accept(MediaType.APPLICATION_JSON)
+                .contentType(MediaType.APPLICATION_JSON);
+
+        mvc
+            .perform(request)
+            .andExpect(MockMvcResultMatchers.status().isPreconditionFailed());
+
+        Mockito.verify(bookService, Mockito.never()).update(Mockito.any(), Mockito.any(), Mockito.any(), Mockito.any());
+    }
+
+    @Test
+    @DisplayName("it should return precondition failed when If-Match is * and the book does not exist")
+    public void updateMissingBookWithAnyTagTest() throws Exception {
+        BDDMockito.given(bookService.update(Mockito.eq(1l), Mockito.any(), Mockito.any(), Mockito.isNull()))
+                .willReturn(Optional.empty());
+
+        MockHttpServletRequestBuilder request = MockMvcRequestBuilders
+                .put(BOOK_API.concat("/1"))
+                .header(HttpHeaders.IF_MATCH, "*")
+                .content(new ObjectMapper().writeValueAsString(createNewBook()))
+                .accept(MediaType.APPLICATION_JSON)
+                .contentType(MediaType.APPLICATION_JSON);
+
+        mvc
+            .perform(request)
+            .andExpect(MockMvcResultMatchers.status().isPreconditionFailed());
+    }
+
+    @Test
+    @DisplayName("it should return precondition failed when patching a missing book with If-Match")
+    public void patchMissingBookWithTagTest() throws Exception {
+        BDDMockito.given(bookService.patch(Mockito.eq(1l), Mockito.anyMap(), Mockito.eq(1l)))
+                .willReturn(Optional.empty());
+
+        MockHttpServletRequestBuilder request = MockMvcRequestBuilders
+                .patch(BOOK_API.concat("/1"))
+                .header(HttpHeaders.IF_MATCH, "\"1-1\"")
+                .content("{\"title\": \"Novo\"}")
+                .contentType("application/merge-patch+json");
+
+        mvc
+            .perform(request)
+            .andExpect(MockMvcResultMatchers.status().isPreconditionFailed());
+    }
+
+    @Test
+    @DisplayName("it should validate the book sent on update")
+    public void updateInvalidBookTest() throws Exception {
+        MockHttpServletRequestBuilder request = MockMvcRequestBuilders
+                .put(BOOK_API.concat("/1"))
+                .content(new ObjectMapper().writeValueAsString(new BookDTO()))
+                .accept(MediaType.APPLICATION_JSON)
+                .contentType(MediaType.APPLICATION_JSON);
+
+        mvc
+            .perform(request)
+            .andExpect(MockMvcResultMatchers.status().isBadRequest())
+            .andExpect(MockMvcResultMatchers.jsonPath("errors", Matchers.hasSize(3)));
+
+        Mockito.verify(bookService, Mockito.never()).update(Mockito.any(), Mockito.any(), Mockito.any(), Mockito.any());
+    }
+
+    @Test
+    @DisplayName("it should return precondition failed when another request patched the book first")
+    public void patchBookConcurrentlyTest() throws Exception {
+        BDDMockito.given(bookService.patch(Mockito.eq(1l), Mockito.anyMap(), Mockito.eq(1l)))
+                .willThrow(new ObjectOptimisticLockingFailureException(Book.class, 1l));
+
+        MockHttpServletRequestBuilder request = MockMvcRequestBuilders
+                .patch(BOOK_API.concat("/1"))
+                .header(HttpHeaders.IF_MATCH, "\"1-1\"")
+                .content("{\"title\": \"Novo\"}")
+                .contentType("application/merge-patch+json");
+
+        mvc
+            .perform(request)
+            .andExpect(MockMvcResultMatchers.status().isPreconditionFailed());
+    }
+
     @Test
     @DisplayName("it should not return a book that does not exists")
     public void bookNotFoundTest() throws Exception {
 
-        BDDMockito.given(bookService.getById(Mockito.anyLong())).willReturn(Optional.empty());
+        BDDMockito.given(bookService.getDtoById(Mockito.anyLong())).willReturn(Optional.empty());
 
         MockHttpServletRequestBuilder request = MockMvcRequestBuilders
                 .get(BOOK_API.concat("/" + 1))
@@ -183,7 +560,7 @@ public class BookControllerTest {
     @DisplayName("it should be able to delete a book")
     public void deleteBookTest() throws Exception {
 
-        BDDMockito.given(bookService.getById(Mockito.anyLong())).willReturn(Optional.of(Book.builder().id(1l).build()));
+        BDDMockito.given(bookService.delete(1l)).willReturn(true);
 
         MockHttpServletRequestBuilder request = MockMvcRequestBuilders
                 .delete(BOOK_API.concat("/" + 1));
@@ -197,7 +574,7 @@ public class BookControllerTest {
     @DisplayName("it should return not found when the book is not found")
     public void notFoundBookTest() throws Exception {
 
-        BDDMockito.given(bookService.getById(Mockito.anyLong())).willReturn(Optional.empty());
+        BDDMockito.given(bookService.delete(Mockito.anyLong())).willReturn(false);
 
         MockHttpServletRequestBuilder request = MockMvcRequestBuilders
                 .delete(BOOK_API.concat("/" + 1));
@@ -213,11 +590,10 @@ public class BookControllerTest {
         Long id = 1l;
         String json = new ObjectMapper().writeValueAsString(createNewBook());
 
-        Book updatingBook = Book.builder().id(1l).title("some title").author("some author").isbn("321").build();
-        BDDMockito.given(bookService.getById(id)).willReturn(Optional.of(updatingBook));
-
-        Book updatedBook = Book.builder().id(id).author("Leonardo").title("As aventuras").isbn("001").build();
-        BDDMockito.given(bookService.update(updatingBook)).willReturn(updatedBook);
+        Book updatedBook = Book.builder().id(id).author("Leonardo").title("As aventuras").isbn("001").version(2l).build();
+        BDDMockito.given(bookService.update(Mockito.eq(id), Mockito.eq(createNewBook().getTitle()),
+                Mockito.eq(createNewBook().getAuthor()), Mockito.isNull()))
+                .willReturn(Optional.of(updatedBook));
 
         MockHttpServletRequestBuilder request = MockMvcRequestBuilders
                 .put(BOOK_API.concat("/" + 1))
@@ -231,7 +607,108 @@ public class BookControllerTest {
                 .andExpect(MockMvcResultMatchers.jsonPath("id").value(id))
                 .andExpect(MockMvcResultMatchers.jsonPath("title").value(createNewBook().getTitle()))
                 .andExpect(MockMvcResultMatchers.jsonPath("author").value(createNewBook().getAuthor()))
-                .andExpect(MockMvcResultMatchers.jsonPath("isbn").value(createNewBook().getIsbn()));
+                .andExpect(MockMvcResultMatchers.jsonPath("isbn").value(createNewBook().getIsbn()))
+                .andExpect(MockMvcResultMatchers.header().string(HttpHeaders.ETAG, "\"1-2\""));
+
+        Mockito.verify(bookService, Mockito.never()).getById(Mockito.anyLong());
+    }
+
+    @Test
+    @DisplayName("it should patch only the fields sent in the merge patch")
+    public void patchBookTest() throws Exception {
+        Book patchedBook = Book.builder().id(1l).author("Leonardo").title("Novo título").isbn("001").version(3l).build();
+        BDDMockito.given(bookService.patch(1l, Collections.singletonMap("title", "Novo título"), null))
+                .willReturn(Optional.of(patchedBook));
+
+        MockHttpServletRequestBuilder request = MockMvcRequestBuilders
+                .patch(BOOK_API.concat("/1"))
+                .content("{\"title\":\"Novo título\"}")
+                .accept(MediaType.APPLICATION_JSON)
+                .contentType("application/merge-patch+json");
+
+        mvc
+                .perform(request)
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("title").value("Novo título"))
+                .andExpect(MockMvcResultMatchers.jsonPath("author").value("Leonardo"))
+                .andExpect(MockMvcResultMatchers.header().string(HttpHeaders.ETAG, "\"1-3\""));
+    }
+
+    @Test
+    @DisplayName("it should not patch a field that can not be changed or removed")
+    public void patchInvalidFieldsTest() throws Exception {
+        for (String patch : Arrays.asList("{\"id\":2}", "{\"author\":null}", "{\"title\":\"\"}", "[]")) {
+            mvc
+                    .perform(MockMvcRequestBuilders
+                            .patch(BOOK_API.concat("/1"))
+                            .content(patch)
+                            .accept(MediaType.APPLICATION_JSON)
+                            .contentType("application/merge-patch+json"))
+                    .andExpect(MockMvcResultMatchers.status().isBadRequest())
+                    .andExpect(MockMvcResultMatchers.jsonPath("errors", Matchers.hasSize(1)));
+        }
+
+        Mockito.verify(bookService, Mockito.never()).patch(Mockito.any(), Mockito.any(), Mockito.any());
+    }
+
+    @Test
+    @DisplayName("it should patch many books at once and report the ids not found")
+    public void patchBooksTest() throws Exception {
+        Book first = Book.builder().id(1l).author("Maria").title("Um").isbn("001").build();
+        Book second = Book.builder().id(2l).author("Maria").title("Dois").isbn("002").build();
+        BDDMockito.given(bookService.patchAll(Mockito.anyCollection(), Mockito.eq(Collections.singletonMap("author", "Maria"))))
+                .willReturn(Arrays.asList(first, second));
+
+        MockHttpServletRequestBuilder request = MockMvcRequestBuilders
+                .patch(BOOK_API.concat("?ids=1,2,3"))
+                .content("{\"author\":\"Maria\"}")
+                .accept(MediaType.APPLICATION_JSON)
+                .contentType("application/merge-patch+json");
+
+        mvc
+                .perform(request)
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("updated").value(2))
+                .andExpect(MockMvcResultMatchers.jsonPath("notFound", Matchers.contains(3)))
+                .andExpect(MockMvcResultMatchers.jsonPath("versions.1").value(0));
+    }
+
+    @Test
+    @DisplayName("it should return the current versions without changing anything for an empty merge patch")
+    public void patchBooksEmptyTest() throws Exception {
+        Book first = Book.builder().id(1l).author("Maria").title("Um").isbn("001").version(4l).build();
+        BDDMockito.given(bookService.patchAll(Mockito.anyCollection(), Mockito.eq(Collections.emptyMap())))
+                .willReturn(Collections.singletonList(first));
+
+        MockHttpServletRequestBuilder request = MockMvcRequestBuilders
+                .patch(BOOK_API.concat("?ids=1,2"))
+                .content("{}")
+                .accept(MediaType.APPLICATION_JSON)
+                .contentType("application/merge-patch+json");
+
+        mvc
+                .perform(request)
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("updated").value(0))
+                .andExpect(MockMvcResultMatchers.jsonPath("notFound", Matchers.contains(2)))
+                .andExpect(MockMvcResultMatchers.jsonPath("versions.1").value(4));
+    }
+
+    @Test
+    @DisplayName("it should reject an empty id in the ids of a batch patch")
+    public void patchBooksNullIdTest() throws Exception {
+        MockHttpServletRequestBuilder request = MockMvcRequestBuilders
+                .patch(BOOK_API.concat("?ids=1,,2"))
+                .content("{\"author\":\"Maria\"}")
+                .accept(MediaType.APPLICATION_JSON)
+                .contentType("application/merge-patch+json");
+
+        mvc
+                .perform(request)
+                .andExpect(MockMvcResultMatchers.status().isBadRequest())
+                .andExpect(MockMvcResultMatchers.jsonPath("errors[0]").value("Ids não podem ser vazios"));
+
+        Mockito.verify(bookService, Mockito.never()).patchAll(Mockito.any(), Mockito.any());
     }
 
     @Test
@@ -240,7 +717,7 @@ public class BookControllerTest {
 
         String json = new ObjectMapper().writeValueAsString(createNewBook());
 
-        BDDMockito.given(bookService.getById(Mockito.anyLong())).willReturn(Optional.empty());
+        BDDMockito.given(bookService.update(Mockito.anyLong(), Mockito.any(), Mockito.any(), Mockito.any())).willReturn(Optional.empty());
 
         MockHttpServletRequestBuilder request = MockMvcRequestBuilders
                 .put(BOOK_API.concat("/" + 1))
@@ -258,15 +735,15 @@ public class BookControllerTest {
     public void findBooksByFilterTest() throws Exception {
         Long id = 1l;
 
-        Book book = Book.builder()
+        BookDTO book = BookDTO.builder()
                     .id(id)
                     .title(createNewBook().getTitle())
                     .author(createNewBook().getAuthor())
                     .isbn(createNewBook().getIsbn())
                     .build();
         // Pageable, para fazer buscas paginadas, passo qual a página e quantos registros ele deve trazer
-        BDDMockito.given(bookService.find(Mockito.any(Book.class), Mockito.any(Pageable.class)))
-                  .willReturn(new PageImpl<Book>(Arrays.asList(book), PageRequest.of(0,100), 1));
+        BDDMockito.given(bookService.findDtos(Mockito.any(Book.class), Mockito.any(Pageable.class), Mockito.eq(ExampleMatcher.StringMatcher.CONTAINING), Mockito.eq(false)))
+                  .willReturn(new BookPage<>(new PageImpl<BookDTO>(Arrays.asList(book), PageRequest.of(0,100), 1), true));
 
         String queryString = String.format("?title=%s&author=%s&page=0&size=100",
                               book.getTitle(), book.getAuthor());
@@ -281,7 +758,211 @@ public class BookControllerTest {
             .andExpect(MockMvcResultMatchers.jsonPath("content", Matchers.hasSize(1)))
             .andExpect(MockMvcResultMatchers.jsonPath("totalElements").value(1))
             .andExpect(MockMvcResultMatchers.jsonPath("pageable.pageSize").value(100))
-            .andExpect(MockMvcResultMatchers.jsonPath("pageable.pageNumber").value(0));
+            .andExpect(MockMvcResultMatchers.jsonPath("pageable.pageNumber").value(0))
+            .andExpect(MockMvcResultMatchers.header().exists(HttpHeaders.ETAG));
+    }
+
+    @Test
+    @DisplayName("it should export the books as NDJSON")
+    public void exportBooksAsNdjsonTest() throws Exception {
+        BDDMockito.willAnswer(invocation -> {
+            Consumer<Book> consumer = invocation.getArgument(1);
+            consumer.accept(Book.builder().id(1l).author("Leonardo").title("As aventuras").isbn("001").build());
+            consumer.accept(Book.builder().id(2l).author("Leonardo").title("Outras aventuras").isbn("002").build());
+            return null;
+        }).given(bookService).export(Mockito.any(Book.class), Mockito.any());
+
+        MockHttpServletRequestBuilder request = MockMvcRequestBuilders
+                .get(BOOK_API.concat("/export?author=Leonardo"));
+
+        mvc
+            .perform(request)
+            .andExpect(MockMvcResultMatchers.status().isOk())
+            .andExpect(MockMvcResultMatchers.content().contentTypeCompatibleWith("application/x-ndjson"))
+            .andExpect(MockMvcResultMatchers.content().string(
+                    "{\"id\":1,\"title\":\"As aventuras\",\"author\":\"Leonardo\",\"isbn\":\"001\"}\n"
+                    + "{\"id\":2,\"title\":\"Outras aventuras\",\"author\":\"Leonardo\",\"isbn\":\"002\"}\n"));
+    }
+
+    @Test
+    @DisplayName("it should export the books as CSV")
+    public void exportBooksAsCsvTest() throws Exception {
+        BDDMockito.willAnswer(invocation -> {
+            Consumer<Book> consumer = invocation.getArgument(1);
+            consumer.accept(Book.builder().id(1l).author("Leonardo").title("Aventuras, parte 1").isbn("001").build());
+            return null;
+        }).given(bookService).export(Mockito.any(Book.class), Mockito.any());
+
+        MockHttpServletRequestBuilder request = MockMvcRequestBuilders
+                .get(BOOK_API.concat("/export?format=csv"));
+
+        mvc
+            .perform(request)
+            .andExpect(MockMvcResultMatchers.status().isOk())
+            .andExpect(MockMvcResultMatchers.content().contentTypeCompatibleWith("text/csv"))
+            .andExpect(MockMvcResultMatchers.content().string(
+                    "id,title,author,isbn\n1,\"Aventuras, parte 1\",Leonardo,001\n"));
+    }
+
+    @Test
+    @DisplayName("it should filter books by prefix")
+    public void findBooksByPrefixTest() throws Exception {
+        BDDMockito.given(bookService.findDtos(Mockito.any(Book.class), Mockito.any(Pageable.class), Mockito.eq(ExampleMatcher.StringMatcher.STARTING), Mockito.eq(false)))
+                  .willReturn(new BookPage<>(new PageImpl<BookDTO>(Arrays.asList(), PageRequest.of(0,100), 0), true));
+
+        MockHttpServletRequestBuilder request = MockMvcRequestBuilders
+                .get(BOOK_API.concat("?title=As&match=prefix"))
+                .accept(MediaType.APPLICATION_JSON);
+
+        mvc
+            .perform(request)
+            .andExpect(MockMvcResultMatchers.status().isOk())
+            .andExpect(MockMvcResultMatchers.jsonPath("totalElements").value(0));
+    }
+
+    @Test
+    @DisplayName("it should say whether the total is exact and count exactly when asked")
+    public void findBooksExactCountTest() throws Exception {
+        BookDTO book = BookDTO.builder().id(1l).title("As aventuras").author("Leonardo").isbn("001").build();
+        BDDMockito.given(bookService.findDtos(Mockito.any(Book.class), Mockito.any(Pageable.class), Mockito.eq(ExampleMatcher.StringMatcher.CONTAINING), Mockito.eq(false)))
+                  .willReturn(new BookPage<>(new PageImpl<BookDTO>(Arrays.asList(book), PageRequest.of(0, 1), 5000), false));
+        BDDMockito.given(bookService.findDtos(Mockito.any(Book.class), Mockito.any(Pageable.class), Mockito.eq(ExampleMatcher.StringMatcher.CONTAINING), Mockito.eq(true)))
+                  .willReturn(new BookPage<>(new PageImpl<BookDTO>(Arrays.asList(book), PageRequest.of(0, 1), 4987), true));
+
+        mvc
+            .perform(MockMvcRequestBuilders.get(BOOK_API.concat("?size=1")).accept(MediaType.APPLICATION_JSON))
+            .andExpect(MockMvcResultMatchers.status().isOk())
+            .andExpect(MockMvcResultMatchers.jsonPath("totalElements").value(5000))
+            .andExpect(MockMvcResultMatchers.jsonPath("totalExact").value(false));
+
+        mvc
+            .perform(MockMvcRequestBuilders.get(BOOK_API.concat("?size=1&exactCount=true")).accept(MediaType.APPLICATION_JSON))
+            .andExpect(MockMvcResultMatchers.status().isOk())
+            .andExpect(MockMvcResultMatchers.jsonPath("totalElements").value(4987))
+            .andExpect(MockMvcResultMatchers.jsonPath("totalExact").value(true));
+    }
+
+    @Test
+    @DisplayName("it should return the books page in CBOR or Smile when the client asks for it")
+    public void findBooksInBinaryFormatTest() throws Exception {
+        BookDTO book = BookDTO.builder().id(1l).title("As aventuras").author("Leonardo").isbn("001").build();
+        BDDMockito.given(bookService.findDtos(Mockito.any(Book.class), Mockito.any(Pageable.class), Mockito.eq(ExampleMatcher.StringMatcher.CONTAINING), Mockito.eq(false)))
+                  .willReturn(new BookPage<>(new PageImpl<BookDTO>(Arrays.asList(book), PageRequest.of(0, 20), 1), true));
+
+        for (ObjectMapper mapper : Arrays.asList(new ObjectMapper(new CBORFactory()), new ObjectMapper(new SmileFactory()))) {
+            String format = mapper.getFactory() instanceof CBORFactory ? "application/cbor" : "application/x-jackson-smile";
+
+            byte[] body = mvc
+                .perform(MockMvcRequestBuilders.get(BOOK_API).accept(format))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.content().contentType(format))
+                .andReturn().getResponse().getContentAsByteArray();
+
+            JsonNode page = mapper.readTree(body);
+            Assertions.assertThat(page.get("totalElements").asLong()).isEqualTo(1);
+            Assertions.assertThat(page.get("content").get(0).get("title").asText()).isEqualTo("As aventuras");
+        }
+    }
+
+    @Test
+    @DisplayName("it should serve a cached page straight from the gzip bytes")
+    public void findCachedPageTest() throws Exception {
+        byte[] gzipBody = {31, -117, 8, 0};
+        BookPageCache.CachedPage cached = Mockito.mock(BookPageCache.CachedPage.class);
+        BDDMockito.given(cached.getMediaType()).willReturn(MediaType.APPLICATION_JSON);
+        BDDMockito.given(cached.getEtag()).willReturn("\"page\"");
+        BDDMockito.given(cached.getGzipBody()).willReturn(gzipBody);
+        BDDMockito.given(bookPageCache.isEnabled()).willReturn(true);
+        BDDMockito.given(bookPageCache.negotiate(Mockito.any())).willReturn(Optional.of(MediaType.APPLICATION_JSON));
+        List<Object> key = Collections.singletonList("key");
+        BDDMockito.given(bookPageCache.key(Mockito.any(), Mockito.any(), Mockito.any(), Mockito.anyBoolean(), Mockito.any())).willReturn(key);
+        BDDMockito.given(bookPageCache.get(key)).willReturn(cached);
+
+        mvc
+            .perform(MockMvcRequestBuilders.get(BOOK_API.concat("?title=As"))
+                    .accept(MediaType.APPLICATION_JSON)
+                    .header(HttpHeaders.ACCEPT_ENCODING, "gzip, deflate"))
+            .andExpect(MockMvcResultMatchers.status().isOk())
+            .andExpect(MockMvcResultMatchers.header().string(HttpHeaders.CONTENT_ENCODING, "gzip"))
+            .andExpect(MockMvcResultMatchers.header().string(HttpHeaders.ETAG, "\"page-json-gzip\""))
+            .andExpect(MockMvcResultMatchers.content().contentType(MediaType.APPLICATION_JSON))
+            .andExpect(MockMvcResultMatchers.content().bytes(gzipBody));
+
+        // Sem gzip os bytes são outros, então o ETag também
+        BDDMockito.given(cached.getBody()).willReturn(new byte[]{'{', '}'});
+        mvc
+            .perform(MockMvcRequestBuilders.get(BOOK_API.concat("?title=As"))
+                    .accept(MediaType.APPLICATION_JSON))
+            .andExpect(MockMvcResultMatchers.status().isOk())
+            .andExpect(MockMvcResultMatchers.header().doesNotExist(HttpHeaders.CONTENT_ENCODING))
+            .andExpect(MockMvcResultMatchers.header().string(HttpHeaders.ETAG, "\"page-json\""));
+
+        Mockito.verify(bookService, Mockito.never()).findDtos(Mockito.any(), Mockito.any(), Mockito.any(ExampleMatcher.StringMatcher.class), Mockito.anyBoolean());
+    }
+
+    @Test
+    @DisplayName("it should keep JSON as the default format")
+    public void findBooksDefaultFormatTest() throws Exception {
+        BDDMockito.given(bookService.findDtos(Mockito.any(Book.class), Mockito.any(Pageable.class), Mockito.eq(ExampleMatcher.StringMatcher.CONTAINING), Mockito.eq(false)))
+                  .willReturn(new BookPage<>(new PageImpl<BookDTO>(Arrays.asList(), PageRequest.of(0, 20), 0), true));
+
+        mvc
+            .perform(MockMvcRequestBuilders.get(BOOK_API).accept(MediaType.ALL))
+            .andExpect(MockMvcResultMatchers.status().isOk())
+            .andExpect(MockMvcResultMatchers.content().contentType(MediaType.APPLICATION_JSON));
+    }
+
+    @Test
+    @DisplayName("it should search books by text")
+    public void searchBooksTest() throws Exception {
+        Book book = Book.builder().id(1l).author("Leonardo").title("As aventuras").isbn("001").build();
+        BDDMockito.given(bookSearchService.search(Mockito.eq("aventuras"), Mockito.any(Pageable.class)))
+                  .willReturn(new PageImpl<Book>(Arrays.asList(book), PageRequest.of(0, 20), 1));
+
+        MockHttpServletRequestBuilder request = MockMvcRequestBuilders
+                .get(BOOK_API.concat("/search?q=aventuras"))
+                .accept(MediaType.APPLICATION_JSON);
+
+        mvc
+            .perform(request)
+            .andExpect(MockMvcResultMatchers.status().isOk())
+            .andExpect(MockMvcResultMatchers.jsonPath("content", Matchers.hasSize(1)))
+            .andExpect(MockMvcResultMatchers.jsonPath("content[0].isbn").value("001"))
+            .andExpect(MockMvcResultMatchers.jsonPath("totalElements").value(1));
+    }
+
+    @Test
+    @DisplayName("it should page books with a cursor")
+    public void seekBooksTest() throws Exception {
+        Book book = Book.builder().id(1l).author("Leonardo").title("As aventuras").isbn("001").build();
+        BDDMockito.given(bookService.findAfter(Mockito.any(Book.class), Mockito.eq("id"), Mockito.isNull(), Mockito.eq(1)))
+                  .willReturn(new SliceImpl<Book>(Arrays.asList(book), PageRequest.of(0, 1), true));
+
+        MockHttpServletRequestBuilder request = MockMvcRequestBuilders
+                .get(BOOK_API.concat("/seek?size=1"))
+                .accept(MediaType.APPLICATION_JSON);
+
+        mvc
+            .perform(request)
+            .andExpect(MockMvcResultMatchers.status().isOk())
+            .andExpect(MockMvcResultMatchers.jsonPath("content", Matchers.hasSize(1)))
+            .andExpect(MockMvcResultMatchers.jsonPath("next").value(BookCursor.after(book, "id").encode()))
+            .andExpect(MockMvcResultMatchers.jsonPath("totalElements").doesNotExist());
+
+        Mockito.verify(bookService, Mockito.never()).count(Mockito.any(Book.class));
+    }
+
+    @Test
+    @DisplayName("it should return bad request for an invalid cursor")
+    public void seekBooksWithInvalidCursorTest() throws Exception {
+        MockHttpServletRequestBuilder request = MockMvcRequestBuilders
+                .get(BOOK_API.concat("/seek?after=invalido"))
+                .accept(MediaType.APPLICATION_JSON);
+
+        mvc
+            .perform(request)
+            .andExpect(MockMvcResultMatchers.status().isBadRequest())
+            .andExpect(MockMvcResultMatchers.jsonPath("errors[0]").value("Cursor inválido"));
     }
 
     private BookDTO createNewBook() {
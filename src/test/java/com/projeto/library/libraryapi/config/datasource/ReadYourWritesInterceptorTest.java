@@ -0,0 +1,71 @@
+package com.projeto.library.libraryapi.config.datasource;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import javax.servlet.http.Cookie;
+import java.time.Duration;
+
+public class ReadYourWritesInterceptorTest {
+
+    private ReadYourWritesInterceptor interceptor = new ReadYourWritesInterceptor(Duration.ofSeconds(6));
+
+    @AfterEach
+    public void tearDown() {
+        ReadYourWrites.clear();
+    }
+
+    @Test
+    @DisplayName("it should keep reading from the primary on the request after a write")
+    public void stickyAfterWriteTest() {
+        // cenário
+        MockHttpServletResponse postResponse = new MockHttpServletResponse();
+        interceptor.preHandle(new MockHttpServletRequest("POST", "/api/books"), postResponse, null);
+        interceptor.afterCompletion(null, null, null, null);
+        Cookie cookie = postResponse.getCookie(ReadYourWritesInterceptor.STICKY_COOKIE);
+
+        MockHttpServletRequest get = new MockHttpServletRequest("GET", "/api/books");
+        get.setCookies(cookie);
+
+        // execução
+        interceptor.preHandle(get, new MockHttpServletResponse(), null);
+
+        // verificação
+        Assertions.assertThat(cookie).isNotNull();
+        Assertions.assertThat(cookie.getMaxAge()).isEqualTo(6);
+        Assertions.assertThat(ReadYourWrites.isSticky()).isTrue();
+    }
+
+    @Test
+    @DisplayName("it should read from the replicas without a write cookie")
+    public void notStickyWithoutCookieTest() {
+        // execução
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        interceptor.preHandle(new MockHttpServletRequest("GET", "/api/books"), response, null);
+
+        // verificação
+        Assertions.assertThat(ReadYourWrites.isSticky()).isFalse();
+        Assertions.assertThat(response.getCookie(ReadYourWritesInterceptor.STICKY_COOKIE)).isNull();
+    }
+
+    @Test
+    @DisplayName("it should ignore an expired or altered write cookie")
+    public void expiredOrAlteredCookieTest() {
+        long now = System.currentTimeMillis();
+        for (String value : new String[]{Long.toString(now - 1), Long.toString(now + 60_000), "abc"}) {
+            // cenário
+            MockHttpServletRequest get = new MockHttpServletRequest("GET", "/api/books");
+            get.setCookies(new Cookie(ReadYourWritesInterceptor.STICKY_COOKIE, value));
+
+            // execução
+            interceptor.preHandle(get, new MockHttpServletResponse(), null);
+
+            // verificação
+            Assertions.assertThat(ReadYourWrites.isSticky()).as(value).isFalse();
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.projeto.library.libraryapi.config.datasource;
+
+import com.projeto.library.libraryapi.config.HikariPoolSizePostProcessor;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.util.Collections;
+
+// Os pools das réplicas são criados à mão pelo ReplicaRoutingConfig, fora do alcance das métricas do Spring Boot
+public class ReplicaRoutingConfigTest {
+
+    private ReplicaRoutingConfig config;
+
+    @AfterEach
+    public void tearDown() throws Exception {
+        if (config != null) {
+            config.destroy();
+        }
+    }
+
+    @Test
+    @DisplayName("it should publish the hikari pool metrics of each replica")
+    public void replicaPoolMetricsTest() throws Exception {
+        // cenário
+        DataSourceProperties dataSourceProperties = new DataSourceProperties();
+        dataSourceProperties.setUrl("jdbc:h2:mem:routing-config;DB_CLOSE_DELAY=-1");
+        dataSourceProperties.setUsername("sa");
+        ReplicaProperties.Replica replica = new ReplicaProperties.Replica();
+        replica.setUrl("jdbc:h2:mem:routing-config;DB_CLOSE_DELAY=-1");
+        ReplicaProperties properties = new ReplicaProperties();
+        properties.setReplicas(Collections.singletonList(replica));
+
+        MeterRegistry meterRegistry = new SimpleMeterRegistry();
+        StaticListableBeanFactory beanFactory = new StaticListableBeanFactory();
+        beanFactory.addBean("meterRegistry", meterRegistry);
+
+        // execução
+        config = new ReplicaRoutingConfig(properties);
+        config.dataSource(dataSourceProperties, new MockEnvironment(),
+                beanFactory.getBeanProvider(HikariPoolSizePostProcessor.class),
+                beanFactory.getBeanProvider(MeterRegistry.class));
+
+        // verificação
+        Assertions.assertThat(meterRegistry.find("hikaricp.connections.active")
+                .tag("pool", "library-pool-replica-0").gauge()).isNotNull();
+        Assertions.assertThat(meterRegistry.find("hikaricp.connections.acquire")
+                .tag("pool", "library-pool-replica-0").timer()).isNotNull();
+    }
+}
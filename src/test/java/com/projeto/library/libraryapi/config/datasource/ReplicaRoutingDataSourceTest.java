@@ -0,0 +1,111 @@
+package com.projeto.library.libraryapi.config.datasource;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.Collections;
+
+// Roteamento com dois H2 em memória: cada banco tem uma tabela node dizendo quem ele é
+public class ReplicaRoutingDataSourceTest {
+
+    private JdbcTemplate primary;
+    private JdbcTemplate replica;
+    private ReplicaRoutingDataSource routingDataSource;
+    private JdbcTemplate jdbcTemplate;
+    private TransactionTemplate readOnly;
+    private TransactionTemplate readWrite;
+
+    @BeforeEach
+    public void setUp() {
+        DataSource primaryDataSource = h2("primary");
+        DataSource replicaDataSource = h2("replica");
+        primary = new JdbcTemplate(primaryDataSource);
+        replica = new JdbcTemplate(replicaDataSource);
+        replica.execute("create table lag (seconds int)");
+        replica.update("insert into lag values (0)");
+
+        routingDataSource = new ReplicaRoutingDataSource(primaryDataSource,
+                Collections.singletonMap("replica-0", replicaDataSource), Duration.ofSeconds(5), "select seconds from lag");
+        routingDataSource.afterPropertiesSet();
+        DataSource dataSource = new LazyConnectionDataSourceProxy(routingDataSource);
+
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(dataSource);
+        readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+        readWrite = new TransactionTemplate(transactionManager);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        ReadYourWrites.clear();
+        primary.execute("drop all objects");
+        replica.execute("drop all objects");
+    }
+
+    @Test
+    @DisplayName("it should send read-only transactions to the replica and the rest to the primary")
+    public void routeByTransactionTest() {
+        String readOnlyNode = readOnly.execute(status -> node());
+        String readWriteNode = readWrite.execute(status -> node());
+
+        Assertions.assertThat(readOnlyNode).isEqualTo("replica");
+        Assertions.assertThat(readWriteNode).isEqualTo("primary");
+        // Sem transação
+        Assertions.assertThat(node()).isEqualTo("primary");
+    }
+
+    @Test
+    @DisplayName("it should read from the primary after a write in the same request")
+    public void readYourWritesTest() {
+        // execução
+        readWrite.execute(status -> jdbcTemplate.update("update node set name = 'primary'"));
+        String afterWrite = readOnly.execute(status -> node());
+        ReadYourWrites.clear();
+        String nextRequest = readOnly.execute(status -> node());
+
+        // verificação
+        Assertions.assertThat(afterWrite).isEqualTo("primary");
+        Assertions.assertThat(nextRequest).isEqualTo("replica");
+    }
+
+    @Test
+    @DisplayName("it should stop reading from a replica that is behind the tolerated lag")
+    public void replicaLagTest() {
+        // cenário
+        replica.update("update lag set seconds = 30");
+
+        // execução
+        routingDataSource.checkReplicaLag();
+        String lagging = readOnly.execute(status -> node());
+        replica.update("update lag set seconds = 1");
+        routingDataSource.checkReplicaLag();
+        String caughtUp = readOnly.execute(status -> node());
+
+        // verificação
+        Assertions.assertThat(lagging).isEqualTo("primary");
+        Assertions.assertThat(caughtUp).isEqualTo("replica");
+    }
+
+    private String node() {
+        return jdbcTemplate.queryForObject("select name from node", String.class);
+    }
+
+    private DataSource h2(String name) {
+        DataSource dataSource = new DriverManagerDataSource("jdbc:h2:mem:routing-" + name + ";DB_CLOSE_DELAY=-1", "sa", "");
+        JdbcTemplate template = new JdbcTemplate(dataSource);
+        template.execute("create table node (name varchar(20))");
+        template.update("insert into node values (?)", name);
+        return dataSource;
+    }
+}
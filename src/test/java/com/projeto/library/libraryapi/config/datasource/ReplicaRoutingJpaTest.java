@@ -0,0 +1,138 @@
+package com.projeto.library.libraryapi.config.datasource;
+
+import com.projeto.library.libraryapi.api.entity.Book;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.orm.jpa.JpaTransactionManager;
+import org.springframework.orm.jpa.LocalContainerEntityManagerFactoryBean;
+import org.springframework.orm.jpa.SharedEntityManagerCreator;
+import org.springframework.orm.jpa.vendor.Database;
+import org.springframework.orm.jpa.vendor.HibernateJpaVendorAdapter;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.Collections;
+
+// Mesmo roteamento do ReplicaRoutingDataSourceTest, mas pelo caminho da aplicação: JPA com JpaTransactionManager
+// sobre o LazyConnectionDataSourceProxy. Cada banco tem o livro 1 com o próprio nome no título
+public class ReplicaRoutingJpaTest {
+
+    private JdbcTemplate primary;
+    private JdbcTemplate replica;
+    private EntityManagerFactory entityManagerFactory;
+    private EntityManager entityManager;
+    private TransactionTemplate readOnly;
+    private TransactionTemplate readWrite;
+
+    @BeforeEach
+    public void setUp() {
+        DataSource primaryDataSource = h2("primary");
+        DataSource replicaDataSource = h2("replica");
+        primary = new JdbcTemplate(primaryDataSource);
+        replica = new JdbcTemplate(replicaDataSource);
+
+        ReplicaRoutingDataSource routingDataSource = new ReplicaRoutingDataSource(primaryDataSource,
+                Collections.singletonMap("replica-0", replicaDataSource), Duration.ofSeconds(5), null);
+        routingDataSource.afterPropertiesSet();
+
+        HibernateJpaVendorAdapter vendorAdapter = new HibernateJpaVendorAdapter();
+        vendorAdapter.setDatabase(Database.H2);
+        LocalContainerEntityManagerFactoryBean factory = new LocalContainerEntityManagerFactoryBean();
+        factory.setDataSource(new LazyConnectionDataSourceProxy(routingDataSource));
+        factory.setJpaVendorAdapter(vendorAdapter);
+        factory.setPackagesToScan(Book.class.getPackage().getName());
+        factory.afterPropertiesSet();
+        entityManagerFactory = factory.getObject();
+        entityManager = SharedEntityManagerCreator.createSharedEntityManager(entityManagerFactory);
+
+        JpaTransactionManager transactionManager = new JpaTransactionManager(entityManagerFactory);
+        readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+        readWrite = new TransactionTemplate(transactionManager);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        ReadYourWrites.clear();
+        entityManagerFactory.close();
+        primary.execute("drop all objects");
+        replica.execute("drop all objects");
+    }
+
+    @Test
+    @DisplayName("it should send read-only JPA transactions to the replica and the rest to the primary")
+    public void routeByTransactionTest() {
+        // execução
+        boolean[] replicaRead = new boolean[1];
+        String readOnlyNode = readOnly.execute(status -> {
+            String node = node();
+            replicaRead[0] = ReplicaRoutingDataSource.isReadingFromReplica();
+            return node;
+        });
+        String readWriteNode = readWrite.execute(status -> node());
+
+        // verificação
+        Assertions.assertThat(readOnlyNode).isEqualTo("replica");
+        Assertions.assertThat(replicaRead[0]).isTrue();
+        Assertions.assertThat(readWriteNode).isEqualTo("primary");
+        // O recurso da réplica é solto no fim da transação
+        Assertions.assertThat(ReplicaRoutingDataSource.isReadingFromReplica()).isFalse();
+    }
+
+    @Test
+    @DisplayName("it should read from the primary inside PrimaryReads without making the request sticky")
+    public void primaryReadsTest() {
+        // execução
+        boolean[] replicaRead = new boolean[1];
+        String hinted = PrimaryReads.call(() -> readOnly.execute(status -> {
+            String node = node();
+            replicaRead[0] = ReplicaRoutingDataSource.isReadingFromReplica();
+            return node;
+        }));
+        String next = readOnly.execute(status -> node());
+
+        // verificação
+        Assertions.assertThat(hinted).isEqualTo("primary");
+        Assertions.assertThat(replicaRead[0]).isFalse();
+        Assertions.assertThat(next).isEqualTo("replica");
+        Assertions.assertThat(ReadYourWrites.isSticky()).isFalse();
+    }
+
+    @Test
+    @DisplayName("it should read from the primary after a JPA write in the same request")
+    public void readYourWritesTest() {
+        // execução
+        readWrite.execute(status -> {
+            entityManager.find(Book.class, 1l).setAuthor("alterado");
+            return null;
+        });
+        String afterWrite = readOnly.execute(status -> node());
+
+        // verificação
+        Assertions.assertThat(afterWrite).isEqualTo("primary");
+        Assertions.assertThat(primary.queryForObject("select author from book where id = 1", String.class))
+                .isEqualTo("alterado");
+    }
+
+    private String node() {
+        return entityManager.find(Book.class, 1l).getTitle();
+    }
+
+    private DataSource h2(String name) {
+        DataSource dataSource = new DriverManagerDataSource("jdbc:h2:mem:routing-jpa-" + name + ";DB_CLOSE_DELAY=-1", "sa", "");
+        JdbcTemplate template = new JdbcTemplate(dataSource);
+        template.execute("create table book (id bigint primary key, title varchar(255), author varchar(255), " +
+                "isbn varchar(255), isbn_key bigint, version bigint, last_modified timestamp)");
+        template.update("insert into book (id, title, version) values (1, ?, 0)", name);
+        return dataSource;
+    }
+}
@@ -0,0 +1,88 @@
+package com.projeto.library.libraryapi.config.metrics;
+
+import com.projeto.library.libraryapi.api.exceptions.BusinessExeption;
+import com.projeto.library.libraryapi.repository.BookRepository;
+import com.projeto.library.libraryapi.service.BookService;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+
+import java.util.Optional;
+
+// O aspecto aplicado num proxy do AspectJ em volta de mocks, com as métricas num SimpleMeterRegistry
+public class BookMetricsAspectTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private BookService bookService;
+    private BookService timedService;
+
+    @BeforeEach
+    public void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        bookService = Mockito.mock(BookService.class);
+        timedService = proxy(bookService);
+    }
+
+    private <T> T proxy(T target) {
+        AspectJProxyFactory factory = new AspectJProxyFactory(target);
+        factory.addAspect(new BookMetricsAspect(meterRegistry));
+        return factory.getProxy();
+    }
+
+    @Test
+    @DisplayName("it should time each service operation tagged with the operation name")
+    public void timeServiceTest() {
+        // cenário
+        Mockito.when(bookService.getById(1l)).thenReturn(Optional.empty());
+
+        // execução
+        timedService.getById(1l);
+        timedService.getById(1l);
+
+        // verificação
+        Timer timer = meterRegistry.find(BookMetricsAspect.SERVICE_TIMER)
+                .tags("operation", "getById", "exception", "none").timer();
+        Assertions.assertThat(timer).isNotNull();
+        Assertions.assertThat(timer.count()).isEqualTo(2);
+        Assertions.assertThat(meterRegistry.find(BookMetricsAspect.ERRORS).counter()).isNull();
+    }
+
+    @Test
+    @DisplayName("it should tag the timer with the exception and count the error")
+    public void timeServiceErrorTest() {
+        // cenário
+        Mockito.when(bookService.delete(1l)).thenThrow(new BusinessExeption("erro"));
+
+        // execução
+        org.junit.jupiter.api.Assertions.assertThrows(BusinessExeption.class, () -> timedService.delete(1l));
+
+        // verificação
+        Assertions.assertThat(meterRegistry.find(BookMetricsAspect.SERVICE_TIMER)
+                .tags("operation", "delete", "exception", "BusinessExeption").timer().count()).isEqualTo(1);
+        Assertions.assertThat(meterRegistry.find(BookMetricsAspect.SERVICE_TIMER)
+                .tags("exception", "none").timer()).isNull();
+        Assertions.assertThat(meterRegistry.find(BookMetricsAspect.ERRORS)
+                .tags("layer", "service", "operation", "delete", "exception", "BusinessExeption")
+                .counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("it should time the repository operations in their own timer")
+    public void timeRepositoryTest() {
+        // cenário
+        BookRepository timedRepository = proxy(Mockito.mock(BookRepository.class));
+
+        // execução
+        timedRepository.existsByIsbn("123");
+
+        // verificação
+        Assertions.assertThat(meterRegistry.find(BookMetricsAspect.REPOSITORY_TIMER)
+                .tags("operation", "existsByIsbn", "exception", "none").timer().count()).isEqualTo(1);
+        Assertions.assertThat(meterRegistry.find(BookMetricsAspect.SERVICE_TIMER).timer()).isNull();
+    }
+}
@@ -0,0 +1,71 @@
+package com.projeto.library.libraryapi.config.metrics;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.servlet.HandlerMapping;
+
+public class QueryCountInterceptorTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private QueryCountInterceptor interceptor;
+    private QueryCountInspector inspector;
+
+    @BeforeEach
+    public void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        interceptor = new QueryCountInterceptor(meterRegistry);
+        inspector = new QueryCountInspector();
+    }
+
+    // Simula uma requisição em que o Hibernate preparou "queries" comandos SQL
+    private void request(String method, String pattern, int queries) {
+        MockHttpServletRequest request = new MockHttpServletRequest(method, "/api/books/1");
+        if (pattern != null) {
+            request.setAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE, pattern);
+        }
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        interceptor.preHandle(request, response, null);
+        for (int i = 0; i < queries; i++) {
+            inspector.inspect("select 1");
+        }
+        interceptor.afterCompletion(request, response, null, null);
+    }
+
+    @Test
+    @DisplayName("it should record the number of SQL statements of each request by route")
+    public void recordQueriesTest() {
+        // cenário: comandos de antes da requisição não contam
+        inspector.inspect("select 1");
+
+        // execução
+        request("GET", "/api/books/{id}", 1);
+        request("GET", "/api/books/{id}", 3);
+        request("DELETE", "/api/books/{id}", 2);
+
+        // verificação
+        DistributionSummary get = meterRegistry.find(QueryCountInterceptor.QUERIES)
+                .tags("method", "GET", "uri", "/api/books/{id}").summary();
+        Assertions.assertThat(get.count()).isEqualTo(2);
+        Assertions.assertThat(get.totalAmount()).isEqualTo(4);
+        Assertions.assertThat(get.max()).isEqualTo(3);
+        Assertions.assertThat(meterRegistry.find(QueryCountInterceptor.QUERIES)
+                .tags("method", "DELETE").summary().totalAmount()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("it should tag requests without a matching route as UNKNOWN")
+    public void unknownRouteTest() {
+        // execução
+        request("GET", null, 0);
+
+        // verificação
+        Assertions.assertThat(meterRegistry.find(QueryCountInterceptor.QUERIES)
+                .tags("uri", "UNKNOWN").summary().count()).isEqualTo(1);
+    }
+}
@@ -2,18 +2,36 @@ package com.projeto.library.libraryapi.repository;
 
 // TESTES de integração
 
+import com.projeto.library.libraryapi.api.dto.BookDTO;
 import com.projeto.library.libraryapi.api.entity.Book;
+import com.projeto.library.libraryapi.config.metrics.QueryCountInspector;
+import com.projeto.library.libraryapi.service.BookCursor;
 import org.assertj.core.api.Assertions;
+import org.hibernate.exception.ConstraintViolationException;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
 import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.ExampleMatcher;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @ExtendWith(SpringExtension.class)
 @ActiveProfiles("test")
@@ -57,6 +75,143 @@ public class BookRepositoryTest {
         Assertions.assertThat(isbnExists).isFalse();
     }
 
+    @Test
+    @DisplayName("It should return only the isbns that are already in the database")
+    public void findExistingIsbnsTest(){
+        // cenário
+        entityManager.persist(createBook());
+
+        // execução
+        Set<String> existing = bookRepository.findExistingIsbns(Arrays.asList("123", "456"));
+
+        // verificação
+        Assertions.assertThat(existing).containsExactly("123");
+    }
+
+    @Test
+    @DisplayName("It should stream only the books that match the filter")
+    public void streamByFilterTest(){
+        // cenário
+        entityManager.persist(createBook());
+        entityManager.persist(Book.builder().title("Outro livro").author("Maria").isbn("456").build());
+
+        // execução
+        List<Book> books;
+        try (Stream<Book> stream = bookRepository.streamByFilter(Book.builder().author("leo").build())) {
+            books = stream.collect(Collectors.toList());
+        }
+
+        // verificação
+        Assertions.assertThat(books).extracting(Book::getIsbn).containsExactly("123");
+    }
+
+    @Test
+    @DisplayName("It should return the books after the cursor ordered by the sort key and id")
+    public void findAfterTest(){
+        // cenário
+        Book first = Book.builder().title("A").author("Leonardo").isbn("1").build();
+        Book second = Book.builder().title("B").author("Leonardo").isbn("2").build();
+        Book third = Book.builder().title("B").author("Leonardo").isbn("3").build();
+        entityManager.persist(third);
+        entityManager.persist(first);
+        entityManager.persist(second);
+        BookCursor afterThird = BookCursor.after(third, "title");
+
+        // execução
+        List<Book> firstPage = bookRepository.findAfter(new Book(), "title", null, 2);
+        List<Book> nextPage = bookRepository.findAfter(new Book(), "title", BookCursor.after(firstPage.get(1), "title"), 2);
+
+        // verificação
+        Assertions.assertThat(firstPage).extracting(Book::getTitle).containsExactly("A", "B");
+        Assertions.assertThat(nextPage).hasSize(1);
+        // O id desempata os livros com o mesmo título
+        Assertions.assertThat(nextPage.get(0).getId()).isGreaterThan(firstPage.get(1).getId());
+        Assertions.assertThat(bookRepository.findAfter(new Book(), "title", afterThird, 2))
+                .extracting(Book::getIsbn).doesNotContain("1", "3");
+    }
+
+    @Test
+    @DisplayName("It should page the books without the sort key after the others, by id")
+    public void findAfterWithNullKeysTest(){
+        // cenário
+        Book titled = Book.builder().title("null").author("Leonardo").isbn("1").build();
+        Book untitled = Book.builder().author("Leonardo").isbn("2").build();
+        Book otherUntitled = Book.builder().author("Leonardo").isbn("3").build();
+        entityManager.persist(untitled);
+        entityManager.persist(titled);
+        entityManager.persist(otherUntitled);
+
+        // execução
+        List<Book> books = new ArrayList<>();
+        BookCursor cursor = null;
+        for (int page = 0; page < 4; page++) {
+            List<Book> result = bookRepository.findAfter(new Book(), "title", cursor, 1);
+            if (result.isEmpty()) {
+                break;
+            }
+            books.addAll(result);
+            // Passa pelo token, como o cliente faz
+            cursor = BookCursor.decode(BookCursor.after(result.get(0), "title").encode());
+        }
+
+        // verificação
+        // O título "null" (texto) não se confunde com o livro sem título, e cada livro aparece uma vez só
+        Assertions.assertThat(books).extracting(Book::getIsbn).containsExactly("1", "2", "3");
+    }
+
+    @Test
+    @DisplayName("It should not be able to save two books with the same isbn")
+    public void uniqueIsbnTest(){
+        // cenário
+        entityManager.persist(createBook());
+
+        // execução
+        Throwable exception = Assertions.catchThrowable(() -> bookRepository.saveAndFlush(createBook()));
+
+        // verificação
+        Assertions.assertThat(exception).isInstanceOf(DataIntegrityViolationException.class);
+        // O BookService só trata como isbn repetido a violação com o nome do uk_book_isbn
+        Assertions.assertThat(((ConstraintViolationException) exception.getCause()).getConstraintName())
+                .containsIgnoringCase("uk_book_isbn");
+    }
+
+    @Test
+    @DisplayName("it should not save the same ISBN twice as ISBN-10 and ISBN-13")
+    public void uniqueIsbnKeyTest(){
+        // cenário
+        Book book = entityManager.persistAndFlush(
+                Book.builder().title("Aventuras").author("Leonardo").isbn("978-0-306-40615-7").build());
+
+        // execução
+        Throwable exception = Assertions.catchThrowable(() -> bookRepository.saveAndFlush(
+                Book.builder().title("Aventuras").author("Leonardo").isbn("0306406152").build()));
+
+        // verificação
+        Assertions.assertThat(book.getIsbnKey()).isEqualTo(9780306406157l);
+        Assertions.assertThat(((ConstraintViolationException) exception.getCause()).getConstraintName())
+                .containsIgnoringCase("uk_book_isbn_key");
+        Assertions.assertThat(bookRepository.findIdByIsbnKey(9780306406157l)).contains(book.getId());
+    }
+
+    @Test
+    @DisplayName("it should recalculate the isbn key when the isbn is patched")
+    public void patchIsbnKeyTest(){
+        // cenário
+        Book book = entityManager.persistAndFlush(
+                Book.builder().title("Aventuras").author("Leonardo").isbn("978-0-306-40615-7").build());
+
+        // execução
+        bookRepository.patch(Collections.singleton(book.getId()),
+                Collections.singletonMap("isbn", "0-13-110362-8"), null, Instant.now());
+        Long patchedKey = bookRepository.findById(book.getId()).get().getIsbnKey();
+        bookRepository.patch(Collections.singleton(book.getId()),
+                Collections.singletonMap("isbn", "sem-isbn"), null, Instant.now());
+
+        // verificação
+        Assertions.assertThat(patchedKey).isEqualTo(9780131103627l);
+        Assertions.assertThat(bookRepository.findById(book.getId()).get().getIsbnKey()).isNull();
+    }
+
     @Test
     @DisplayName("it should be able to return a book with an id")
     public void getByIdTest(){
@@ -100,6 +255,250 @@ public class BookRepositoryTest {
         Assertions.assertThat(deletedBook).isNull();
     }
 
+    @Test
+    @DisplayName("it should delete a book with a single statement and return the affected rows")
+    public void deleteBookByIdTest(){
+        // cenário
+        Book book = createBook();
+        entityManager.persist(book);
+
+        // execução
+        int deleted = bookRepository.deleteBookById(book.getId());
+        int deletedAgain = bookRepository.deleteBookById(book.getId());
+
+        // verificação
+        Assertions.assertThat(deleted).isEqualTo(1);
+        Assertions.assertThat(deletedAgain).isEqualTo(0);
+        Assertions.assertThat(entityManager.find(Book.class, book.getId())).isNull();
+    }
+
+    @Test
+    @DisplayName("it should update title and author with a single statement, checking the version")
+    public void updateTitleAndAuthorTest(){
+        // cenário
+        Book book = createBook();
+        entityManager.persist(book);
+        entityManager.flush();
+        Long version = book.getVersion();
+
+        // execução
+        int outdated = bookRepository.updateTitleAndAuthor(book.getId(), "Outro", "Outro", Instant.now(), version + 1);
+        int updated = bookRepository.updateTitleAndAuthor(book.getId(), "Novas aventuras", "Maria", Instant.now(), version);
+        int missing = bookRepository.updateTitleAndAuthor(-1l, "Novas aventuras", "Maria", Instant.now());
+
+        // verificação
+        Assertions.assertThat(outdated).isEqualTo(0);
+        Assertions.assertThat(updated).isEqualTo(1);
+        Assertions.assertThat(missing).isEqualTo(0);
+        Book found = entityManager.find(Book.class, book.getId());
+        Assertions.assertThat(found.getTitle()).isEqualTo("Novas aventuras");
+        Assertions.assertThat(found.getAuthor()).isEqualTo("Maria");
+        Assertions.assertThat(found.getVersion()).isEqualTo(version + 1);
+    }
+
+    @Test
+    @DisplayName("it should patch only the given columns of many books")
+    public void patchTest(){
+        // cenário
+        Book first = createBook();
+        Book second = Book.builder().title("Outro livro").author("Maria").isbn("456").build();
+        entityManager.persist(first);
+        entityManager.persist(second);
+        entityManager.flush();
+
+        // execução
+        int outdated = bookRepository.patch(Collections.singleton(first.getId()),
+                Collections.singletonMap("author", "Ana"), first.getVersion() + 1, Instant.now());
+        int patched = bookRepository.patch(Arrays.asList(first.getId(), second.getId()),
+                Collections.singletonMap("author", "Ana"), null, Instant.now());
+
+        // verificação
+        Assertions.assertThat(outdated).isEqualTo(0);
+        Assertions.assertThat(patched).isEqualTo(2);
+        Book foundFirst = entityManager.find(Book.class, first.getId());
+        Book foundSecond = entityManager.find(Book.class, second.getId());
+        Assertions.assertThat(foundFirst.getAuthor()).isEqualTo("Ana");
+        Assertions.assertThat(foundFirst.getTitle()).isEqualTo("Aventuras");
+        Assertions.assertThat(foundFirst.getVersion()).isEqualTo(first.getVersion() + 1);
+        Assertions.assertThat(foundSecond.getAuthor()).isEqualTo("Ana");
+        Assertions.assertThat(foundSecond.getTitle()).isEqualTo("Outro livro");
+    }
+
+    @Test
+    @DisplayName("it should increment the version and the last modified date on update")
+    public void versionOnUpdateTest(){
+        // cenário
+        Book book = createBook();
+        entityManager.persist(book);
+        entityManager.flush();
+        Long version = book.getVersion();
+
+        // execução
+        book.setTitle("Novas aventuras");
+        bookRepository.saveAndFlush(book);
+
+        // verificação
+        Assertions.assertThat(book.getVersion()).isEqualTo(version + 1);
+        Assertions.assertThat(book.getLastModified()).isNotNull();
+    }
+
+    @Test
+    @DisplayName("it should read a book straight into the DTO, without managing the entity")
+    public void findDtoByIdTest(){
+        // cenário
+        Book book = createBook();
+        entityManager.persist(book);
+        entityManager.flush();
+        entityManager.clear();
+
+        // execução
+        Optional<BookDTO> foundBook = bookRepository.findDtoById(book.getId());
+
+        // verificação
+        Assertions.assertThat(foundBook).isPresent();
+        Assertions.assertThat(foundBook.get().getIsbn()).isEqualTo("123");
+        Assertions.assertThat(foundBook.get().getVersion()).isEqualTo(book.getVersion());
+        Assertions.assertThat(foundBook.get().getLastModified()).isNotNull();
+        // A projeção não coloca a entidade no contexto de persistência
+        Assertions.assertThat(entityManager.getEntityManager().contains(book)).isFalse();
+        Assertions.assertThat(bookRepository.findDtoById(book.getId() + 1)).isEmpty();
+    }
+
+    @Test
+    @DisplayName("it should read many books by id with a single query")
+    public void findDtosByIdsTest(){
+        // cenário
+        Book first = createBook();
+        Book second = Book.builder().title("Outro livro").author("Maria").isbn("456").build();
+        entityManager.persist(first);
+        entityManager.persist(second);
+
+        // execução
+        List<BookDTO> books = bookRepository.findDtosByIds(Arrays.asList(first.getId(), second.getId(), second.getId() + 1));
+
+        // verificação
+        Assertions.assertThat(books).extracting(BookDTO::getIsbn).containsExactlyInAnyOrder("123", "456");
+    }
+
+    @Test
+    @DisplayName("it should filter, sort and count books with the DTO projection")
+    public void findDtosTest(){
+        // cenário
+        entityManager.persist(Book.builder().title("Aventuras 2").author("Leonardo").isbn("2").build());
+        entityManager.persist(Book.builder().title("Aventuras 1").author("Leonardo").isbn("1").build());
+        entityManager.persist(Book.builder().title("Outras aventuras").author("Leonardo").isbn("3").build());
+        entityManager.persist(Book.builder().title("Outro livro").author("Maria").isbn("4").build());
+        Book filter = Book.builder().title("AVENTURAS").build();
+
+        // execução
+        Page<BookDTO> containing = bookRepository.findDtos(filter, ExampleMatcher.StringMatcher.CONTAINING,
+                PageRequest.of(0, 2, Sort.by("title")));
+        Page<BookDTO> starting = bookRepository.findDtos(filter, ExampleMatcher.StringMatcher.STARTING,
+                PageRequest.of(0, 10));
+
+        // verificação
+        Assertions.assertThat(containing.getContent()).extracting(BookDTO::getTitle).containsExactly("Aventuras 1", "Aventuras 2");
+        Assertions.assertThat(containing.getTotalElements()).isEqualTo(3);
+        Assertions.assertThat(starting.getContent()).extracting(BookDTO::getIsbn).containsExactlyInAnyOrder("1", "2");
+        Assertions.assertThat(starting.getTotalElements()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("it should read only the requested fields of the books")
+    public void findFieldsTest(){
+        // cenário
+        entityManager.persist(Book.builder().title("Aventuras 2").author("Leonardo").isbn("2").build());
+        entityManager.persist(Book.builder().title("Aventuras 1").author("Leonardo").isbn("1").build());
+        entityManager.persist(Book.builder().title("Outro livro").author("Maria").isbn("3").build());
+        Book filter = Book.builder().author("leonardo").build();
+
+        // execução
+        Page<Map<String, Object>> page = bookRepository.findFields(filter, ExampleMatcher.StringMatcher.CONTAINING,
+                PageRequest.of(0, 1, Sort.by("title")), Arrays.asList("title", "id"));
+
+        // verificação
+        Assertions.assertThat(page.getTotalElements()).isEqualTo(2);
+        Assertions.assertThat(page.getContent()).hasSize(1);
+        Map<String, Object> book = page.getContent().get(0);
+        Assertions.assertThat(book.keySet()).containsExactly("title", "id");
+        Assertions.assertThat(book.get("title")).isEqualTo("Aventuras 1");
+    }
+
+    @Test
+    @DisplayName("it should read only the requested fields of a book by id")
+    public void findFieldsByIdTest(){
+        // cenário
+        Book book = createBook();
+        entityManager.persist(book);
+        entityManager.flush();
+        entityManager.clear();
+
+        // execução
+        Optional<Map<String, Object>> found = bookRepository.findFieldsById(book.getId(), Arrays.asList("isbn", "version"));
+
+        // verificação
+        Assertions.assertThat(found).isPresent();
+        Assertions.assertThat(found.get()).containsOnlyKeys("isbn", "version");
+        Assertions.assertThat(found.get().get("isbn")).isEqualTo("123");
+        Assertions.assertThat(found.get().get("version")).isEqualTo(book.getVersion());
+        Assertions.assertThat(bookRepository.findFieldsById(book.getId() + 1, Arrays.asList("isbn"))).isEmpty();
+    }
+
+    @Test
+    @DisplayName("it should take the total from the supplier only when the page does not tell it")
+    public void findDtosWithTotalTest(){
+        // cenário
+        entityManager.persist(Book.builder().title("Aventuras 1").author("Leonardo").isbn("1").build());
+        entityManager.persist(Book.builder().title("Aventuras 2").author("Leonardo").isbn("2").build());
+        entityManager.persist(Book.builder().title("Outro livro").author("Maria").isbn("3").build());
+        Book filter = Book.builder().title("aventuras").build();
+
+        // execução
+        Page<BookDTO> full = bookRepository.findDtos(filter, ExampleMatcher.StringMatcher.CONTAINING,
+                PageRequest.of(0, 1), () -> 1000);
+        Page<BookDTO> last = bookRepository.findDtos(filter, ExampleMatcher.StringMatcher.CONTAINING,
+                PageRequest.of(0, 10), () -> 1000);
+
+        // verificação
+        Assertions.assertThat(full.getTotalElements()).isEqualTo(1000);
+        Assertions.assertThat(last.getTotalElements()).isEqualTo(2);
+        Assertions.assertThat(bookRepository.count(filter, ExampleMatcher.StringMatcher.CONTAINING)).isEqualTo(2);
+        Assertions.assertThat(bookRepository.count(new Book(), ExampleMatcher.StringMatcher.CONTAINING)).isEqualTo(3);
+    }
+
+    @Test
+    @DisplayName("it should treat % and _ in the filter as plain text")
+    public void findDtosEscapeTest(){
+        // cenário
+        entityManager.persist(Book.builder().title("100% aventuras").author("Leonardo").isbn("1").build());
+        entityManager.persist(Book.builder().title("1000 aventuras").author("Leonardo").isbn("2").build());
+
+        // execução
+        Page<BookDTO> percent = bookRepository.findDtos(Book.builder().title("100%").build(),
+                ExampleMatcher.StringMatcher.CONTAINING, PageRequest.of(0, 10));
+        Page<BookDTO> underscore = bookRepository.findDtos(Book.builder().title("10_0").build(),
+                ExampleMatcher.StringMatcher.CONTAINING, PageRequest.of(0, 10));
+
+        // verificação
+        Assertions.assertThat(percent.getContent()).extracting(BookDTO::getIsbn).containsExactly("1");
+        Assertions.assertThat(underscore.getContent()).isEmpty();
+    }
+
+    @Test
+    @DisplayName("it should count the SQL statements Hibernate prepares on the current thread")
+    public void queryCountTest() {
+        // cenário
+        Long id = entityManager.persistAndFlush(createBook()).getId();
+        QueryCountInspector.reset();
+
+        // execução
+        bookRepository.findDtoById(id);
+        bookRepository.existsByIsbn("123");
+
+        // verificação: o QueryCountInspector está configurado no hibernate.session_factory.statement_inspector
+        Assertions.assertThat(QueryCountInspector.count()).isEqualTo(2);
+    }
+
     private Book createBook() {
         return Book.builder().title("Aventuras").author("Leonardo").isbn("123").build();
     }
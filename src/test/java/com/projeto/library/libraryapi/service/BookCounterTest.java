@@ -0,0 +1,108 @@
+package com.projeto.library.libraryapi.service;
+
+import com.projeto.library.libraryapi.api.entity.Book;
+import com.projeto.library.libraryapi.config.CacheConfig;
+import com.projeto.library.libraryapi.repository.BookRepository;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.data.domain.ExampleMatcher;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.util.OptionalLong;
+
+public class BookCounterTest {
+
+    private BookRepository bookRepository;
+    private DataSource dataSource;
+    private BookCounter bookCounter;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        bookRepository = Mockito.mock(BookRepository.class);
+        dataSource = Mockito.mock(DataSource.class);
+        bookCounter = new BookCounter(bookRepository, dataSource,
+                new ConcurrentMapCacheManager(CacheConfig.BOOK_COUNTS), 1000);
+    }
+
+    @Test
+    @DisplayName("it should reuse the count of the same filter until an exact count is asked")
+    public void cachedCountTest() {
+        // cenário
+        Book filter = Book.builder().title("Aventuras").build();
+        Mockito.when(bookRepository.count(Mockito.any(Book.class), Mockito.eq(ExampleMatcher.StringMatcher.CONTAINING)))
+                .thenReturn(3l, 4l);
+
+        // execução
+        BookCounter.Total first = bookCounter.total(filter, ExampleMatcher.StringMatcher.CONTAINING, false);
+        long firstCount = first.getAsLong();
+        BookCounter.Total cached = bookCounter.total(Book.builder().title("aventuras").build(),
+                ExampleMatcher.StringMatcher.CONTAINING, false);
+        long cachedCount = cached.getAsLong();
+        BookCounter.Total exact = bookCounter.total(filter, ExampleMatcher.StringMatcher.CONTAINING, true);
+        long exactCount = exact.getAsLong();
+
+        // verificação
+        Assertions.assertThat(firstCount).isEqualTo(3);
+        Assertions.assertThat(first.isTotalExact()).isTrue();
+        Assertions.assertThat(cachedCount).isEqualTo(3);
+        Assertions.assertThat(cached.isTotalExact()).isFalse();
+        Assertions.assertThat(exactCount).isEqualTo(4);
+        Assertions.assertThat(exact.isTotalExact()).isTrue();
+        Mockito.verify(bookRepository, Mockito.times(2)).count(Mockito.any(Book.class), Mockito.any());
+    }
+
+    @Test
+    @DisplayName("it should estimate the total without filter on PostgreSQL above the threshold")
+    public void estimateTest() throws Exception {
+        // cenário
+        postgres();
+        Mockito.when(bookRepository.estimateCount()).thenReturn(OptionalLong.of(5000), OptionalLong.of(500));
+        Mockito.when(bookRepository.count(Mockito.any(Book.class), Mockito.any())).thenReturn(498l);
+
+        // execução
+        BookCounter.Total estimated = bookCounter.total(new Book(), ExampleMatcher.StringMatcher.CONTAINING, false);
+        long estimatedCount = estimated.getAsLong();
+        // Tabela pequena: o count exato é barato
+        BookCounter.Total small = bookCounter.total(new Book(), ExampleMatcher.StringMatcher.CONTAINING, false);
+        long smallCount = small.getAsLong();
+
+        // verificação
+        Assertions.assertThat(estimatedCount).isEqualTo(5000);
+        Assertions.assertThat(estimated.isTotalExact()).isFalse();
+        Assertions.assertThat(smallCount).isEqualTo(498);
+        Assertions.assertThat(small.isTotalExact()).isTrue();
+    }
+
+    @Test
+    @DisplayName("it should not estimate filtered totals nor outside PostgreSQL")
+    public void noEstimateTest() throws Exception {
+        // cenário
+        Mockito.when(bookRepository.count(Mockito.any(Book.class), Mockito.any())).thenReturn(7l);
+
+        // execução
+        long unfiltered = bookCounter.total(new Book(), ExampleMatcher.StringMatcher.CONTAINING, false).getAsLong();
+        postgres();
+        long filtered = bookCounter.total(Book.builder().author("Maria").build(),
+                ExampleMatcher.StringMatcher.CONTAINING, false).getAsLong();
+
+        // verificação
+        Assertions.assertThat(unfiltered).isEqualTo(7);
+        Assertions.assertThat(filtered).isEqualTo(7);
+        Mockito.verify(bookRepository, Mockito.never()).estimateCount();
+    }
+
+    private void postgres() throws Exception {
+        Connection connection = Mockito.mock(Connection.class);
+        DatabaseMetaData metaData = Mockito.mock(DatabaseMetaData.class);
+        Mockito.when(dataSource.getConnection()).thenReturn(connection);
+        Mockito.when(connection.getMetaData()).thenReturn(metaData);
+        Mockito.when(metaData.getDatabaseProductName()).thenReturn("PostgreSQL");
+        bookCounter.detectDatabase();
+    }
+}
@@ -0,0 +1,112 @@
+package com.projeto.library.libraryapi.service;
+
+import com.projeto.library.libraryapi.api.dto.BookDTO;
+import com.projeto.library.libraryapi.api.entity.Book;
+import com.projeto.library.libraryapi.config.CacheConfig;
+import com.projeto.library.libraryapi.repository.BookRepository;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.CacheManager;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Optional;
+
+// O cache só existe no proxy do Spring em volta do BookServiceImp, então aqui o contexto é o da aplicação
+// com o banco de verdade. As consultas são contadas pelas estatísticas do Hibernate (hibernate.generate_statistics);
+// o @SpyBean não funciona no proxy do repositório do Spring Data.
+// Mesma configuração do LibraryApiApplicationTests, para os dois usarem o mesmo contexto (e o mesmo índice do Lucene)
+@SpringBootTest
+public class BookServiceCacheTest {
+
+    @Autowired
+    private BookService bookService;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    private Long id;
+
+    @BeforeEach
+    public void setUp() {
+        id = bookService.save(Book.builder().title("As aventuras").author("Fulano").isbn("cache-123").build()).getId();
+        statistics().clear();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        bookRepository.deleteAll();
+        cacheManager.getCacheNames().forEach(name -> cacheManager.getCache(name).clear());
+    }
+
+    // Execuções da consulta do findDtoById
+    private long queries() {
+        return Arrays.stream(statistics().getQueries())
+                .filter(query -> query.contains("new com.projeto.library.libraryapi.api.dto.BookDTO") && query.contains("b.id = :id"))
+                .mapToLong(query -> statistics().getQueryStatistics(query).getExecutionCount())
+                .sum();
+    }
+
+    private Statistics statistics() {
+        return entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    @Test
+    @DisplayName("it should read the book from the database only once while it is cached")
+    public void cachedReadTest() {
+        Optional<BookDTO> first = bookService.getDtoById(id);
+        Optional<BookDTO> second = bookService.getDtoById(id);
+
+        Assertions.assertThat(first).isPresent();
+        Assertions.assertThat(second).isEqualTo(first);
+        Assertions.assertThat(cacheManager.getCache(CacheConfig.BOOKS).get(id)).isNotNull();
+        Assertions.assertThat(queries()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("it should evict the cached book on update")
+    public void updateEvictTest() {
+        bookService.getDtoById(id);
+
+        bookService.update(id, "Novo título", "Fulano", null);
+
+        Assertions.assertThat(bookService.getDtoById(id)).map(BookDTO::getTitle).contains("Novo título");
+        Assertions.assertThat(queries()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("it should evict the cached book on patch")
+    public void patchEvictTest() {
+        bookService.getDtoById(id);
+
+        bookService.patch(id, Collections.singletonMap("author", "Ciclano"), null);
+
+        Assertions.assertThat(bookService.getDtoById(id)).map(BookDTO::getAuthor).contains("Ciclano");
+        Assertions.assertThat(queries()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("it should evict the cached book on delete")
+    public void deleteEvictTest() {
+        bookService.getDtoById(id);
+
+        bookService.delete(id);
+
+        Assertions.assertThat(bookService.getDtoById(id)).isEmpty();
+        Assertions.assertThat(queries()).isEqualTo(2);
+    }
+}
@@ -1,26 +1,55 @@
 package com.projeto.library.libraryapi.service;
 
+import com.projeto.library.libraryapi.api.dto.BookDTO;
 import com.projeto.library.libraryapi.api.entity.Book;
 import com.projeto.library.libraryapi.api.exceptions.BusinessExeption;
+import com.projeto.library.libraryapi.config.CacheConfig;
 import com.projeto.library.libraryapi.repository.BookRepository;
 import com.projeto.library.libraryapi.service.imp.BookServiceImp;
+import com.projeto.library.libraryapi.service.isbn.IsbnFilter;
+import com.projeto.library.libraryapi.service.isbn.IsbnIndex;
 import org.assertj.core.api.Assertions;
+import org.hibernate.exception.ConstraintViolationException;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mockito;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.data.domain.Example;
+import org.springframework.data.domain.ExampleMatcher;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 // Para usar somente o assertThat como método estático
 //import static org.assertj.core.api.Assertions.assertThat;
@@ -32,13 +61,23 @@ import java.util.Optional;
 public class BookServiceTest {
 
     private BookService bookService;
+    private IsbnFilter isbnFilter;
+    private IsbnIndex isbnIndex;
     // O spring já tem uma implementação padrão para todos os repositories, por isso eu coloco o MockBean
     @MockBean
     private BookRepository bookRepository;
 
+    @MockBean
+    private BookSearchService bookSearchService;
+
     @BeforeEach
     public void setUp(){
-        this.bookService = new BookServiceImp(bookRepository);
+        this.isbnFilter = new IsbnFilter(bookRepository);
+        this.isbnIndex = new IsbnIndex(bookRepository);
+        this.bookService = new BookServiceImp(bookRepository, isbnFilter, isbnIndex, bookSearchService,
+                new BookCounter(bookRepository, null, new ConcurrentMapCacheManager(CacheConfig.BOOK_COUNTS), 100_000),
+                new ConcurrentMapCacheManager(CacheConfig.BOOKS),
+                Duration.ofSeconds(5));
     }
 
     @Test
@@ -49,7 +88,7 @@ public class BookServiceTest {
         Book book = createBook();
         // Estou lidando com mock, então eu sempre tenho que simular o retorno do mock
         Mockito.when(bookRepository.existsByIsbn(Mockito.anyString())).thenReturn(false);
-        Mockito.when(bookRepository.save(book))
+        Mockito.when(bookRepository.saveAndFlush(book))
                 .thenReturn(Book.builder().id(1l).title("Title").author("Autor").isbn("123").build());
 
         // execução
@@ -57,11 +96,155 @@ public class BookServiceTest {
 
         // verificação
         Assertions.assertThat(savedBook.getId()).isNotNull();
+        // O livro salvo também vai para o índice de busca
+        Mockito.verify(bookSearchService, Mockito.times(1)).index(savedBook);
         Assertions.assertThat(savedBook.getTitle()).isEqualTo("Title");
         Assertions.assertThat(savedBook.getAuthor()).isEqualTo("Autor");
         Assertions.assertThat(savedBook.getIsbn()).isEqualTo("123");
     }
 
+    @Test
+    @DisplayName("It should not query the database when the ISBN filter knows the ISBN is new")
+    public void saveBookWithNewIsbnWithoutQueryTest(){
+        // cenário
+        // Carrega o filtro com um banco vazio
+        Mockito.when(bookRepository.streamAllIsbns()).thenReturn(Stream.empty());
+        isbnFilter.load();
+        Book book = createBook();
+        Mockito.when(bookRepository.saveAndFlush(book)).thenReturn(book);
+
+        // execução
+        bookService.save(book);
+
+        // verificação
+        Mockito.verify(bookRepository, Mockito.never()).existsByIsbn(Mockito.anyString());
+        Assertions.assertThat(isbnFilter.mightContain(book.getIsbn())).isTrue();
+    }
+
+    @Test
+    @DisplayName("It should answer the ISBN duplicate check from the ISBN index")
+    public void saveBookWithIndexedIsbnTest(){
+        // cenário
+        // Banco com um livro de ISBN-13; o cadastro vem com o mesmo ISBN na forma de ISBN-10
+        Mockito.when(bookRepository.streamAllIdsAndIsbns())
+                .thenReturn(Stream.<Object[]>of(new Object[]{1l, "978-0-306-40615-7"}));
+        isbnIndex.load();
+        Mockito.when(bookRepository.existsByIsbnKey(9780306406157l)).thenReturn(true);
+        Book duplicated = Book.builder().title("Title").author("Autor").isbn("0-306-40615-2").build();
+        Book book = Book.builder().title("Title").author("Autor").isbn("9780131103627").build();
+        Mockito.when(bookRepository.saveAndFlush(book))
+                .thenReturn(Book.builder().id(2l).title("Title").author("Autor").isbn("9780131103627").build());
+
+        // execução
+        Throwable exception = Assertions.catchThrowable(() -> bookService.save(duplicated));
+        bookService.save(book);
+
+        // verificação
+        Assertions.assertThat(exception).isInstanceOf(BusinessExeption.class).hasMessage("Isbn já cadastrado");
+        Mockito.verify(bookRepository, Mockito.never()).existsByIsbn(Mockito.anyString());
+        Assertions.assertThat(bookService.findIdByIsbn("0131103628")).contains(2l);
+    }
+
+    @Test
+    @DisplayName("It should confirm an ISBN index hit in the database before rejecting the ISBN")
+    public void saveBookWithStaleIndexedIsbnTest(){
+        // cenário
+        // O índice desta instância ainda tem o livro 1, que foi apagado em outra instância
+        Mockito.when(bookRepository.streamAllIdsAndIsbns())
+                .thenReturn(Stream.<Object[]>of(new Object[]{1l, "978-0-306-40615-7"}));
+        isbnIndex.load();
+        Mockito.when(bookRepository.existsByIsbnKey(9780306406157l)).thenReturn(false);
+        Book book = Book.builder().title("Title").author("Autor").isbn("9780306406157").build();
+        Mockito.when(bookRepository.saveAndFlush(book))
+                .thenReturn(Book.builder().id(2l).title("Title").author("Autor").isbn("9780306406157").build());
+
+        // execução
+        Book savedBook = bookService.save(book);
+
+        // verificação
+        Assertions.assertThat(savedBook.getId()).isEqualTo(2l);
+        Assertions.assertThat(isbnIndex.idOf("9780306406157")).isEqualTo(2l);
+    }
+
+    @Test
+    @DisplayName("It should confirm the ISBN index hits of a batch with one database query")
+    public void saveAllWithStaleIndexedIsbnTest(){
+        // cenário
+        // O livro 1 foi apagado em outra instância; o livro 2 continua com o isbn
+        Mockito.when(bookRepository.streamAllIdsAndIsbns())
+                .thenReturn(Stream.<Object[]>of(new Object[]{1l, "9780306406157"}, new Object[]{2l, "9780131103627"}));
+        isbnIndex.load();
+        Mockito.when(bookRepository.findExistingIsbnKeys(Mockito.anyCollection()))
+                .thenReturn(new HashSet<>(Arrays.asList(9780131103627l)));
+        Mockito.when(bookRepository.saveAll(Mockito.anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+        Book stale = Book.builder().title("Title").author("Autor").isbn("0-306-40615-2").build();
+        Book existing = Book.builder().title("Title").author("Autor").isbn("0-13-110362-8").build();
+
+        // execução
+        BookBatchResult result = bookService.saveAll(Arrays.asList(stale, existing));
+
+        // verificação
+        Assertions.assertThat(result.getSaved()).containsExactly(stale);
+        Assertions.assertThat(result.getErrors()).containsOnlyKeys(1);
+        Mockito.verify(bookRepository, Mockito.times(1)).findExistingIsbnKeys(Mockito.anyCollection());
+    }
+
+    @Test
+    @DisplayName("It should read many books with one IN query per chunk, in the requested order")
+    public void getByIdsTest(){
+        // cenário
+        List<Long> ids = new ArrayList<>();
+        for (long id = 1200; id >= 1; id--) {
+            ids.add(id);
+        }
+        ids.add(1200l);
+        // O livro 7 não existe
+        Mockito.when(bookRepository.findDtosByIds(Mockito.anyCollection())).thenAnswer(invocation -> {
+            Collection<Long> chunk = invocation.getArgument(0);
+            return chunk.stream()
+                    .filter(id -> id != 7)
+                    .map(id -> BookDTO.builder().id(id).build())
+                    .collect(Collectors.toList());
+        });
+
+        // execução
+        List<BookDTO> books = bookService.getByIds(ids);
+
+        // verificação
+        Assertions.assertThat(books).hasSize(1199);
+        Assertions.assertThat(books.get(0).getId()).isEqualTo(1200l);
+        Assertions.assertThat(books.get(1198).getId()).isEqualTo(1l);
+        Assertions.assertThat(books).extracting(BookDTO::getId).doesNotContain(7l);
+        // 1200 ids distintos em lotes de 500
+        Mockito.verify(bookRepository, Mockito.times(3)).findDtosByIds(Mockito.anyCollection());
+    }
+
+    @Test
+    @DisplayName("It should find the book id by ISBN from the index and fall back to the database on a miss")
+    public void findIdByIsbnTest(){
+        // cenário
+        Mockito.when(bookRepository.streamAllIdsAndIsbns())
+                .thenReturn(Stream.<Object[]>of(new Object[]{1l, "9780306406157"}, new Object[]{2l, "123"}));
+        isbnIndex.load();
+        Mockito.when(bookRepository.findIdByIsbn("123")).thenReturn(Optional.of(2l));
+        // Livro cadastrado por outra instância, que o índice desta não conhece
+        Mockito.when(bookRepository.findIdByIsbnKey(9780131103627l)).thenReturn(Optional.of(3l));
+        Mockito.when(bookRepository.deleteBookById(1l)).thenReturn(1);
+
+        // execução e verificação
+        Assertions.assertThat(bookService.findIdByIsbn("978-0-306-40615-7")).contains(1l);
+        Mockito.verify(bookRepository, Mockito.never()).findIdByIsbnKey(Mockito.anyLong());
+        // Não está no índice: confere no banco pelo ISBN-13, mesmo na forma de ISBN-10
+        Assertions.assertThat(bookService.findIdByIsbn("0-13-110362-8")).contains(3l);
+        // Isbn que não é ISBN válido não está no índice e vai ao banco pelo texto
+        Assertions.assertThat(bookService.findIdByIsbn("123")).contains(2l);
+        Mockito.verify(bookRepository, Mockito.times(1)).findIdByIsbn(Mockito.anyString());
+
+        bookService.delete(1l);
+        Assertions.assertThat(bookService.findIdByIsbn("9780306406157")).isEmpty();
+        Mockito.verify(bookRepository, Mockito.times(1)).findIdByIsbnKey(9780306406157l);
+    }
+
     @Test
     @DisplayName("It should not be able to create a book with duplicated ISBN")
     public void createBookWithDuplicatedISBN() {
@@ -81,7 +264,85 @@ public class BookServiceTest {
 
          // Verificar que o método save() do repositório não foi chamado
         Mockito.verify(bookRepository, Mockito.never()).save(book);
+        Mockito.verify(bookRepository, Mockito.never()).saveAndFlush(book);
+
+    }
+
+    @Test
+    @DisplayName("It should translate the ISBN unique index violation into a business error")
+    public void createBookWithConcurrentDuplicatedISBN() {
+        // Cenário
+        // O isbn passou pela verificação, mas outro cadastro entrou antes do insert
+        Book book = createBook();
+        Mockito.when(bookRepository.existsByIsbn(Mockito.anyString())).thenReturn(false);
+        Mockito.when(bookRepository.saveAndFlush(book)).thenThrow(duplicateIsbn());
 
+        // Execução
+        Throwable exception = Assertions.catchThrowable(() -> bookService.save(book));
+
+        // Verificação
+        Assertions.assertThat(exception)
+                .isInstanceOf(BusinessExeption.class)
+                .hasMessage("Isbn já cadastrado");
+    }
+
+    @Test
+    @DisplayName("It should not report other constraint violations as a duplicated ISBN")
+    public void createBookWithOtherConstraintViolation() {
+        // Cenário
+        Book book = createBook();
+        DataIntegrityViolationException tooLong = new DataIntegrityViolationException("value too long",
+                new ConstraintViolationException("value too long for type character varying(255)", null, null));
+        Mockito.when(bookRepository.saveAndFlush(book)).thenThrow(tooLong);
+
+        // Execução
+        Throwable exception = Assertions.catchThrowable(() -> bookService.save(book));
+
+        // Verificação
+        Assertions.assertThat(exception).isSameAs(tooLong);
+    }
+
+    @Test
+    @DisplayName("It should retry a batch book by book when another request inserted one of its ISBNs")
+    public void saveAllWithConcurrentDuplicatedISBN() {
+        // cenário
+        Book first = Book.builder().title("Title").author("Autor").isbn("123").build();
+        Book duplicated = Book.builder().title("Title").author("Autor").isbn("456").build();
+        Mockito.when(bookRepository.findExistingIsbns(Mockito.anyCollection())).thenReturn(new HashSet<>());
+        Mockito.when(bookRepository.saveAll(Mockito.anyList())).thenThrow(duplicateIsbn());
+        Mockito.when(bookRepository.saveAndFlush(first)).thenReturn(first);
+        Mockito.when(bookRepository.saveAndFlush(duplicated)).thenThrow(duplicateIsbn());
+
+        // execução
+        BookBatchResult result = bookService.saveAll(Arrays.asList(first, duplicated));
+
+        // verificação
+        Assertions.assertThat(result.getSaved()).containsExactly(first);
+        Assertions.assertThat(result.getErrors()).containsOnlyKeys(1);
+    }
+
+    @Test
+    @DisplayName("It should save a batch of books reporting the duplicated ISBNs by row")
+    public void saveAllBooksTest() {
+        // cenário
+        Book first = Book.builder().title("Title").author("Autor").isbn("123").build();
+        Book existing = Book.builder().title("Title").author("Autor").isbn("456").build();
+        Book repeated = Book.builder().title("Title").author("Autor").isbn("123").build();
+        // Só o isbn 456 já está no banco
+        Mockito.when(bookRepository.findExistingIsbns(Mockito.anyCollection()))
+                .thenReturn(new HashSet<>(Arrays.asList("456")));
+        Mockito.when(bookRepository.saveAll(Mockito.anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        // execução
+        BookBatchResult result = bookService.saveAll(Arrays.asList(first, existing, repeated));
+
+        // verificação
+        Assertions.assertThat(result.getSaved()).containsExactly(first);
+        Assertions.assertThat(result.getErrors()).containsOnlyKeys(1, 2);
+        Assertions.assertThat(result.getErrors().get(1)).isEqualTo("Isbn já cadastrado");
+        // Uma consulta de isbns para o lote inteiro
+        Mockito.verify(bookRepository, Mockito.times(1)).findExistingIsbns(Mockito.anyCollection());
+        Mockito.verify(bookRepository, Mockito.never()).existsByIsbn(Mockito.anyString());
     }
 
     @Test
@@ -120,46 +381,200 @@ public class BookServiceTest {
         Assertions.assertThat(book.isPresent()).isFalse();
     }
 
+    @Test
+    @DisplayName("it should return the book DTO straight from the projection query")
+    public void getDtoByIdTest(){
+        // cenário
+        BookDTO dto = BookDTO.builder().id(1l).title("As aventuras").author("Fulano").isbn("123").version(2l).build();
+        Mockito.when(bookRepository.findDtoById(1l)).thenReturn(Optional.of(dto));
+
+        // execução
+        Optional<BookDTO> foundBook = bookService.getDtoById(1l);
+
+        // verificação
+        Assertions.assertThat(foundBook).containsSame(dto);
+        Mockito.verify(bookRepository, Mockito.never()).findById(Mockito.anyLong());
+    }
+
+    @Test
+    @DisplayName("it should not join a read that started before an update committed")
+    public void getDtoByIdAfterUpdateTest() throws Exception {
+        // cenário
+        BookDTO oldDto = BookDTO.builder().id(1l).title("Antigo").author("Autor").isbn("123").version(1l).build();
+        BookDTO newDto = BookDTO.builder().id(1l).title("Novo").author("Autor").isbn("123").version(2l).build();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Mockito.when(bookRepository.findDtoById(1l)).thenAnswer(invocation -> {
+            started.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return Optional.of(oldDto);
+        }).thenReturn(Optional.of(newDto));
+        Mockito.when(bookRepository.updateTitleAndAuthor(Mockito.eq(1l), Mockito.eq("Novo"), Mockito.eq("Autor"),
+                Mockito.any(Instant.class))).thenReturn(1);
+        Mockito.when(bookRepository.findById(1l)).thenReturn(Optional.of(
+                Book.builder().id(1l).title("Novo").author("Autor").isbn("123").version(2l).build()));
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<Optional<BookDTO>> oldRead = executor.submit(() -> bookService.getDtoById(1l));
+            started.await(5, TimeUnit.SECONDS);
+
+            // execução
+            bookService.update(1l, "Novo", "Autor", null);
+            Optional<BookDTO> newRead = bookService.getDtoById(1l);
+            release.countDown();
+
+            // verificação
+            Assertions.assertThat(newRead).containsSame(newDto);
+            Assertions.assertThat(oldRead.get(5, TimeUnit.SECONDS)).containsSame(oldDto);
+            Mockito.verify(bookRepository, Mockito.times(2)).findDtoById(1l);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    @DisplayName("it should not cache a book read before an update committed")
+    public void getDtoByIdStaleCacheTest() throws Exception {
+        // cenário: a leitura antiga só termina (e tenta guardar no cache) depois do commit do update
+        BookDTO oldDto = BookDTO.builder().id(1l).title("Antigo").author("Autor").isbn("123").version(1l).build();
+        BookDTO newDto = BookDTO.builder().id(1l).title("Novo").author("Autor").isbn("123").version(2l).build();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Mockito.when(bookRepository.findDtoById(1l)).thenAnswer(invocation -> {
+            started.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return Optional.of(oldDto);
+        }).thenReturn(Optional.of(newDto));
+        Mockito.when(bookRepository.updateTitleAndAuthor(Mockito.eq(1l), Mockito.eq("Novo"), Mockito.eq("Autor"),
+                Mockito.any(Instant.class))).thenReturn(1);
+        Mockito.when(bookRepository.findById(1l)).thenReturn(Optional.of(
+                Book.builder().id(1l).title("Novo").author("Autor").isbn("123").version(2l).build()));
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<Optional<BookDTO>> oldRead = executor.submit(() -> bookService.getDtoById(1l));
+            started.await(5, TimeUnit.SECONDS);
+            bookService.update(1l, "Novo", "Autor", null);
+            release.countDown();
+            oldRead.get(5, TimeUnit.SECONDS);
+
+            // execução
+            Optional<BookDTO> read = bookService.getDtoById(1l);
+
+            // verificação
+            Assertions.assertThat(read).containsSame(newDto);
+            Mockito.verify(bookRepository, Mockito.times(2)).findDtoById(1l);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    @DisplayName("it should cache a book read when no write happened during the read")
+    public void getDtoByIdCachedTest() {
+        // cenário
+        BookDTO dto = BookDTO.builder().id(1l).title("As aventuras").author("Fulano").isbn("123").version(2l).build();
+        Mockito.when(bookRepository.findDtoById(1l)).thenReturn(Optional.of(dto));
+
+        // execução
+        bookService.getDtoById(1l);
+        Optional<BookDTO> cached = bookService.getDtoById(1l);
+
+        // verificação
+        Assertions.assertThat(cached).containsSame(dto);
+        Mockito.verify(bookRepository, Mockito.times(1)).findDtoById(1l);
+    }
+
     @Test
     @DisplayName("it should be able to delete a book")
     public void deleteBook(){
         // cenário
-        Book book = createBook();
+        Long id = 1l;
+        Mockito.when(bookRepository.deleteBookById(id)).thenReturn(1);
 
         // execução
-        // Vai verificar que não foi lançado nenhuma exceção
-        org.junit.jupiter.api.Assertions.assertDoesNotThrow(() -> bookService.delete(book));
+        boolean deleted = bookService.delete(id);
 
         // verificação
-        Mockito.verify(bookRepository, Mockito.times(1)).delete(book);
+        Assertions.assertThat(deleted).isTrue();
+        Mockito.verify(bookRepository, Mockito.never()).findById(id);
+        Mockito.verify(bookSearchService, Mockito.times(1)).delete(id);
     }
 
     @Test
-    @DisplayName("it should return exception if the book does not exist")
-    public void deleteInvalidBook(){
+    @DisplayName("it should only remove the book from the search index after the transaction commits")
+    public void deleteBookAfterCommit(){
+        // cenário: simula a transação do @Transactional
+        Mockito.when(bookRepository.deleteBookById(1l)).thenReturn(1);
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            // execução
+            bookService.delete(1l);
+
+            // verificação: nada no índice antes do commit
+            Mockito.verify(bookSearchService, Mockito.never()).delete(Mockito.anyLong());
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+            Mockito.verify(bookSearchService, Mockito.times(1)).delete(1l);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    @DisplayName("it should not touch the search index when the transaction rolls back")
+    public void updateBookRollback(){
+        // cenário
+        Book book = Book.builder().id(1l).title("Novo").author("Autor").isbn("123").version(1l).build();
+        Mockito.when(bookRepository.updateTitleAndAuthor(Mockito.eq(1l), Mockito.eq("Novo"), Mockito.eq("Autor"),
+                Mockito.any(Instant.class))).thenReturn(1);
+        Mockito.when(bookRepository.findById(1l)).thenReturn(Optional.of(book));
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            // execução
+            bookService.update(1l, "Novo", "Autor", null);
+            TransactionSynchronizationManager.getSynchronizations()
+                    .forEach(sync -> sync.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+
+            // verificação
+            Mockito.verify(bookSearchService, Mockito.never()).index(Mockito.any());
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    @DisplayName("it should return false when deleting a book that does not exist")
+    public void deleteInexistentBook(){
         // cenário
-        // cira um livro vazio
-        Book book = new Book();
+        Mockito.when(bookRepository.deleteBookById(1l)).thenReturn(0);
 
         // execução
-        org.junit.jupiter.api.Assertions.assertThrows(IllegalArgumentException.class, () -> bookService.delete(book));
+        boolean deleted = bookService.delete(1l);
 
         // verificação
-        Mockito.verify(bookRepository, Mockito.never()).delete(book);
+        Assertions.assertThat(deleted).isFalse();
+        Mockito.verify(bookSearchService, Mockito.never()).delete(Mockito.anyLong());
+    }
+
+    @Test
+    @DisplayName("it should return exception if the book does not exist")
+    public void deleteInvalidBook(){
+        // execução
+        org.junit.jupiter.api.Assertions.assertThrows(IllegalArgumentException.class, () -> bookService.delete(null));
+
+        // verificação
+        Mockito.verify(bookRepository, Mockito.never()).deleteBookById(Mockito.any());
     }
 
     @Test
     @DisplayName("it should return exception if the book does not exist for update")
     public void updateInvalidBook(){
-        // cenário
-        // cira um livro vazio
-        Book book = new Book();
-
         // execução
-        org.junit.jupiter.api.Assertions.assertThrows(IllegalArgumentException.class, () -> bookService.update(book));
+        org.junit.jupiter.api.Assertions.assertThrows(IllegalArgumentException.class,
+                () -> bookService.update(null, "titulo", "autor", null));
 
         // verificação
-        Mockito.verify(bookRepository, Mockito.never()).save(book);
+        Mockito.verify(bookRepository, Mockito.never())
+                .updateTitleAndAuthor(Mockito.any(), Mockito.any(), Mockito.any(), Mockito.any());
     }
 
     @Test
@@ -168,23 +583,157 @@ public class BookServiceTest {
         // cenário
         Long id = 1l;
 
-        // Livro a atualizar
-        Book updatingBook = Book.builder().id(id).build();
-
         // Simulação de atualização
         Book updatedBook = createBook();
         updatedBook.setId(id);
-        Mockito.when(bookRepository.save(updatingBook)).thenReturn(updatedBook);
+        Mockito.when(bookRepository.updateTitleAndAuthor(Mockito.eq(id), Mockito.eq(updatedBook.getTitle()),
+                Mockito.eq(updatedBook.getAuthor()), Mockito.any(Instant.class))).thenReturn(1);
+        Mockito.when(bookRepository.findById(id)).thenReturn(Optional.of(updatedBook));
+
+        // execução
+        Optional<Book> book = bookService.update(id, updatedBook.getTitle(), updatedBook.getAuthor(), null);
+
+        // verificação
+        Assertions.assertThat(book).contains(updatedBook);
+        Mockito.verify(bookRepository, Mockito.never()).save(Mockito.any(Book.class));
+        Mockito.verify(bookSearchService, Mockito.times(1)).index(updatedBook);
+    }
+
+    @Test
+    @DisplayName("it should return empty when updating a book that does not exist")
+    public void updateInexistentBook(){
+        // cenário
+        Mockito.when(bookRepository.updateTitleAndAuthor(Mockito.eq(1l), Mockito.any(), Mockito.any(), Mockito.any(Instant.class)))
+                .thenReturn(0);
+
+        // execução
+        Optional<Book> book = bookService.update(1l, "titulo", "autor", null);
+
+        // verificação
+        Assertions.assertThat(book).isEmpty();
+        Mockito.verify(bookRepository, Mockito.never()).findById(1l);
+    }
+
+    @Test
+    @DisplayName("it should not update a book that changed version")
+    public void updateBookWithOldVersion(){
+        // cenário
+        Mockito.when(bookRepository.updateTitleAndAuthor(Mockito.eq(1l), Mockito.any(), Mockito.any(),
+                Mockito.any(Instant.class), Mockito.eq(1l))).thenReturn(0);
+        Mockito.when(bookRepository.existsById(1l)).thenReturn(true);
+
+        // execução
+        Throwable exception = Assertions.catchThrowable(() -> bookService.update(1l, "titulo", "autor", 1l));
+
+        // verificação
+        Assertions.assertThat(exception).isInstanceOf(OptimisticLockingFailureException.class);
+        Mockito.verify(bookSearchService, Mockito.never()).index(Mockito.any());
+    }
+
+    @Test
+    @DisplayName("it should patch only the given fields of a book")
+    public void patchBook(){
+        // cenário
+        Map<String, Object> changes = Collections.singletonMap("title", "Novo título");
+        Book patchedBook = createBook();
+        patchedBook.setId(1l);
+        Mockito.when(bookRepository.patch(Mockito.eq(Collections.singleton(1l)), Mockito.eq(changes),
+                Mockito.isNull(), Mockito.any(Instant.class))).thenReturn(1);
+        Mockito.when(bookRepository.findById(1l)).thenReturn(Optional.of(patchedBook));
+
+        // execução
+        Optional<Book> book = bookService.patch(1l, changes, null);
+
+        // verificação
+        Assertions.assertThat(book).contains(patchedBook);
+        Mockito.verify(bookSearchService, Mockito.times(1)).index(patchedBook);
+    }
+
+    @Test
+    @DisplayName("it should return the book as it is for an empty merge patch")
+    public void patchBookEmpty(){
+        // cenário
+        Book book = createBook();
+        book.setId(1l);
+        book.setVersion(3l);
+        Mockito.when(bookRepository.findById(1l)).thenReturn(Optional.of(book));
+
+        // execução
+        Optional<Book> patched = bookService.patch(1l, Collections.emptyMap(), 3l);
+        Throwable exception = Assertions.catchThrowable(() -> bookService.patch(1l, Collections.emptyMap(), 2l));
+
+        // verificação
+        Assertions.assertThat(patched).contains(book);
+        Assertions.assertThat(exception).isInstanceOf(OptimisticLockingFailureException.class);
+        Mockito.verify(bookRepository, Mockito.never()).patch(Mockito.any(), Mockito.any(), Mockito.any(), Mockito.any());
+        Mockito.verify(bookSearchService, Mockito.never()).index(Mockito.any());
+    }
+
+    @Test
+    @DisplayName("it should return the books as they are for an empty merge patch of many books")
+    public void patchAllEmpty(){
+        // cenário
+        Book book = createBook();
+        book.setId(1l);
+        Mockito.when(bookRepository.findAllById(Arrays.asList(1l, 2l))).thenReturn(Collections.singletonList(book));
+
+        // execução
+        List<Book> patched = bookService.patchAll(Arrays.asList(1l, 2l), Collections.emptyMap());
+
+        // verificação
+        Assertions.assertThat(patched).containsExactly(book);
+        Mockito.verify(bookRepository, Mockito.never()).patch(Mockito.any(), Mockito.any(), Mockito.any(), Mockito.any());
+    }
 
+    @Test
+    @DisplayName("it should not patch many books with a null id")
+    public void patchAllNullId(){
         // execução
-        Book book = bookService.update(updatingBook);
+        Throwable exception = Assertions.catchThrowable(
+                () -> bookService.patchAll(Arrays.asList(1l, null), Collections.singletonMap("author", "Maria")));
 
         // verificação
-        Assertions.assertThat(book.getId()).isEqualTo(updatedBook.getId());
-        Assertions.assertThat(book.getTitle()).isEqualTo(updatedBook.getTitle());
-        Assertions.assertThat(book.getAuthor()).isEqualTo(updatedBook.getAuthor());
-        Assertions.assertThat(book.getIsbn()).isEqualTo(updatedBook.getIsbn());
+        Assertions.assertThat(exception).isInstanceOf(IllegalArgumentException.class);
+        Mockito.verify(bookRepository, Mockito.never()).patch(Mockito.any(), Mockito.any(), Mockito.any(), Mockito.any());
+    }
 
+    @Test
+    @DisplayName("it should not patch a field that is not patchable")
+    public void patchInvalidField(){
+        // execução
+        Throwable exception = Assertions.catchThrowable(
+                () -> bookService.patch(1l, Collections.singletonMap("id", 2l), null));
+
+        // verificação
+        Assertions.assertThat(exception).isInstanceOf(BusinessExeption.class);
+        Mockito.verify(bookRepository, Mockito.never()).patch(Mockito.any(), Mockito.any(), Mockito.any(), Mockito.any());
+    }
+
+    @Test
+    @DisplayName("it should not patch the isbn of many books at once")
+    public void patchAllIsbn(){
+        // execução
+        Throwable exception = Assertions.catchThrowable(
+                () -> bookService.patchAll(Arrays.asList(1l, 2l), Collections.singletonMap("isbn", "123")));
+
+        // verificação
+        Assertions.assertThat(exception).isInstanceOf(BusinessExeption.class).hasMessage("Isbn não pode ser alterado em lote");
+        Mockito.verify(bookRepository, Mockito.never()).patch(Mockito.any(), Mockito.any(), Mockito.any(), Mockito.any());
+    }
+
+    @Test
+    @DisplayName("it should return business error when the patched isbn already exists")
+    public void patchDuplicatedIsbn(){
+        // cenário
+        Mockito.when(bookRepository.patch(Mockito.any(), Mockito.any(), Mockito.any(), Mockito.any()))
+                .thenThrow(duplicateIsbn());
+
+        // execução
+        Throwable exception = Assertions.catchThrowable(
+                () -> bookService.patch(1l, Collections.singletonMap("isbn", "123"), null));
+
+        // verificação
+        Assertions.assertThat(exception).isInstanceOf(BusinessExeption.class).hasMessage("Isbn já cadastrado");
     }
 
     @Test
@@ -209,7 +758,87 @@ public class BookServiceTest {
         Assertions.assertThat(result.getPageable().getPageSize()).isEqualTo(10);
     }
 
+    @Test
+    @DisplayName("it should filter books with the projection query")
+    public void findDtosTest(){
+        // cenário
+        Book filter = createBook();
+        PageRequest pageRequest = PageRequest.of(0, 10);
+        Page<BookDTO> page = new PageImpl<BookDTO>(Arrays.asList(BookDTO.builder().id(1l).build()), pageRequest, 1);
+        Mockito.when(bookRepository.findDtos(Mockito.eq(filter), Mockito.eq(ExampleMatcher.StringMatcher.STARTING),
+                Mockito.eq(pageRequest), Mockito.any(LongSupplier.class))).thenReturn(page);
+
+        // execução
+        BookPage<BookDTO> result = bookService.findDtos(filter, pageRequest, ExampleMatcher.StringMatcher.STARTING, false);
+
+        // verificação
+        Assertions.assertThat(result.getContent()).isEqualTo(page.getContent());
+        Assertions.assertThat(result.getTotalElements()).isEqualTo(1);
+        // O repositório não pediu o total, então ele veio da própria página
+        Assertions.assertThat(result.isTotalExact()).isTrue();
+        Mockito.verify(bookRepository, Mockito.never()).findAll(Mockito.any(Example.class), Mockito.any(Pageable.class));
+    }
+
+    @Test
+    @DisplayName("it should read only the requested fields from the repository")
+    public void findFieldsTest(){
+        // cenário
+        Book filter = createBook();
+        PageRequest pageRequest = PageRequest.of(0, 10);
+        List<String> fields = Arrays.asList("id", "title");
+        Map<String, Object> book = new LinkedHashMap<>();
+        book.put("id", 1l);
+        book.put("title", "As aventuras");
+        Page<Map<String, Object>> page = new PageImpl<>(Arrays.asList(book), pageRequest, 1);
+        Mockito.when(bookRepository.findFields(Mockito.eq(filter), Mockito.eq(ExampleMatcher.StringMatcher.CONTAINING),
+                Mockito.eq(pageRequest), Mockito.eq(fields), Mockito.any(LongSupplier.class))).thenReturn(page);
+        Mockito.when(bookRepository.findFieldsById(1l, fields)).thenReturn(Optional.of(book));
+
+        // execução
+        BookPage<Map<String, Object>> result = bookService.findFields(filter, pageRequest, ExampleMatcher.StringMatcher.CONTAINING,
+                fields, true);
+        Optional<Map<String, Object>> byId = bookService.getFieldsById(1l, fields);
+
+        // verificação
+        Assertions.assertThat(result.getContent()).containsExactly(book);
+        Assertions.assertThat(byId).contains(book);
+    }
+
+    @Test
+    @DisplayName("it should return a slice after the cursor without counting")
+    public void findAfterTest(){
+        // cenário
+        Book book = createBook();
+        Book other = Book.builder().id(2l).title("Title").author("Autor").isbn("456").build();
+        // O service pede um livro a mais para saber se tem próxima página
+        Mockito.when(bookRepository.findAfter(book, "id", null, 2)).thenReturn(Arrays.asList(book, other));
+
+        // execução
+        Slice<Book> result = bookService.findAfter(book, "id", null, 1);
+
+        // verificação
+        Assertions.assertThat(result.getContent()).containsExactly(book);
+        Assertions.assertThat(result.hasNext()).isTrue();
+        Mockito.verify(bookRepository, Mockito.never()).count(Mockito.any(Example.class));
+    }
+
+    @Test
+    @DisplayName("it should not accept a cursor created for another sort")
+    public void findAfterWithAnotherSortTest(){
+        BookCursor cursor = BookCursor.after(createBook(), "title");
+
+        Throwable exception = Assertions.catchThrowable(() -> bookService.findAfter(createBook(), "id", cursor, 10));
+
+        Assertions.assertThat(exception).isInstanceOf(BusinessExeption.class);
+    }
+
     private Book createBook() {
         return Book.builder().id(1l).title("Title").author("Autor").isbn("123").build();
     }
+
+    // Como o Spring traduz a violação do índice único do isbn
+    private static DataIntegrityViolationException duplicateIsbn() {
+        return new DataIntegrityViolationException("could not execute statement",
+                new ConstraintViolationException("duplicate key", null, "uk_book_isbn"));
+    }
 }
@@ -0,0 +1,162 @@
+package com.projeto.library.libraryapi.service;
+
+import com.projeto.library.libraryapi.api.entity.Book;
+import com.projeto.library.libraryapi.repository.BookRepository;
+import com.projeto.library.libraryapi.service.imp.LuceneBookSearchService;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mockito;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.stream.Stream;
+
+// Testa o índice do Lucene de verdade, gravando numa pasta temporária
+public class LuceneBookSearchServiceTest {
+
+    @TempDir
+    Path indexDir;
+
+    private BookRepository bookRepository;
+    private LuceneBookSearchService bookSearchService;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        this.bookRepository = Mockito.mock(BookRepository.class);
+        this.bookSearchService = open();
+    }
+
+    private LuceneBookSearchService open() throws IOException {
+        return new LuceneBookSearchService(bookRepository, Mockito.mock(PlatformTransactionManager.class),
+                indexDir.toString(), Duration.ofMinutes(1));
+    }
+
+    @AfterEach
+    public void tearDown() throws IOException {
+        bookSearchService.close();
+    }
+
+    @Test
+    @DisplayName("it should find books by title and author ranking the title first")
+    public void searchBooksTest() {
+        // cenário
+        bookSearchService.indexAll(Arrays.asList(
+                Book.builder().id(1l).title("Dom Casmurro").author("Machado de Assis").isbn("001").build(),
+                Book.builder().id(2l).title("Memórias de Machado").author("Outro Autor").isbn("002").build(),
+                Book.builder().id(3l).title("Capitães da Areia").author("Jorge Amado").isbn("003").build()));
+
+        // execução
+        Page<Book> result = bookSearchService.search("machado", PageRequest.of(0, 10));
+
+        // verificação
+        Assertions.assertThat(result.getTotalElements()).isEqualTo(2);
+        Assertions.assertThat(result.getContent()).extracting(Book::getId).containsExactly(2l, 1l);
+        // Os campos vêm do próprio índice
+        Assertions.assertThat(result.getContent().get(1).getIsbn()).isEqualTo("001");
+    }
+
+    @Test
+    @DisplayName("it should keep the index in sync on update and delete")
+    public void updateAndDeleteTest() {
+        // cenário
+        Book book = Book.builder().id(1l).title("Dom Casmurro").author("Machado de Assis").isbn("001").build();
+        bookSearchService.index(book);
+
+        // execução
+        book.setTitle("Quincas Borba");
+        bookSearchService.index(book);
+
+        // verificação
+        Assertions.assertThat(bookSearchService.search("casmurro", PageRequest.of(0, 10)).getTotalElements()).isZero();
+        Assertions.assertThat(bookSearchService.search("quincas", PageRequest.of(0, 10)).getTotalElements()).isEqualTo(1);
+
+        bookSearchService.delete(1l);
+        Assertions.assertThat(bookSearchService.search("quincas", PageRequest.of(0, 10)).getTotalElements()).isZero();
+    }
+
+    @Test
+    @DisplayName("it should keep the index when it matches the database")
+    public void reconcileInSyncTest() throws IOException {
+        // cenário
+        bookSearchService.indexAll(Arrays.asList(
+                Book.builder().id(1l).title("Dom Casmurro").version(2l).build(),
+                Book.builder().id(5l).title("Quincas Borba").build()));
+        Mockito.when(bookRepository.streamAllIdsAndVersions()).thenReturn(Stream.of(
+                new Object[]{1l, 2l}, new Object[]{5l, 0l}));
+
+        // execução
+        bookSearchService.reconcile();
+
+        // verificação
+        Mockito.verify(bookRepository, Mockito.never()).findAllById(Mockito.any());
+        Assertions.assertThat(bookSearchService.search("casmurro quincas", PageRequest.of(0, 10)).getTotalElements()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("it should reindex only the books that do not match the database")
+    public void reconcileOutOfSyncTest() throws IOException {
+        // cenário: o índice tem o livro 1 na versão antiga, o 2 já foi apagado do banco e o 4 ainda não foi indexado
+        bookSearchService.indexAll(Arrays.asList(
+                Book.builder().id(1l).title("Dom Casmurro").version(1l).build(),
+                Book.builder().id(2l).title("Apagado").build(),
+                Book.builder().id(3l).title("Capitães da Areia").version(1l).build()));
+        Mockito.when(bookRepository.streamAllIdsAndVersions()).thenReturn(Stream.of(
+                new Object[]{1l, 2l}, new Object[]{3l, 1l}, new Object[]{4l, 0l}));
+        Mockito.when(bookRepository.findAllById(Arrays.asList(1l, 4l))).thenReturn(Arrays.asList(
+                Book.builder().id(1l).title("Quincas Borba").version(2l).build(),
+                Book.builder().id(4l).title("Iracema").build()));
+
+        // execução
+        bookSearchService.reconcile();
+
+        // verificação
+        Mockito.verify(bookRepository).findAllById(Arrays.asList(1l, 4l));
+        Assertions.assertThat(bookSearchService.search("quincas", PageRequest.of(0, 10)).getTotalElements()).isEqualTo(1);
+        Assertions.assertThat(bookSearchService.search("casmurro", PageRequest.of(0, 10)).getTotalElements()).isZero();
+        Assertions.assertThat(bookSearchService.search("iracema", PageRequest.of(0, 10)).getTotalElements()).isEqualTo(1);
+        Assertions.assertThat(bookSearchService.search("apagado", PageRequest.of(0, 10)).getTotalElements()).isZero();
+        Assertions.assertThat(bookSearchService.search("capitães", PageRequest.of(0, 10)).getTotalElements()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("it should not overwrite a book written to the index while reconciling")
+    public void reconcileConcurrentWriteTest() throws IOException {
+        // cenário: o banco foi lido com a versão 1, e a versão 2 chega ao índice antes do reconcile gravar
+        Mockito.when(bookRepository.streamAllIdsAndVersions()).thenReturn(Stream.<Object[]>of(new Object[]{1l, 1l}));
+        Mockito.when(bookRepository.findAllById(Mockito.any())).thenAnswer(invocation -> {
+            bookSearchService.index(Book.builder().id(1l).title("Quincas Borba").version(2l).build());
+            return Collections.singletonList(Book.builder().id(1l).title("Dom Casmurro").version(1l).build());
+        });
+
+        // execução
+        bookSearchService.reconcile();
+
+        // verificação
+        Assertions.assertThat(bookSearchService.search("quincas", PageRequest.of(0, 10)).getTotalElements()).isEqualTo(1);
+        Assertions.assertThat(bookSearchService.search("casmurro", PageRequest.of(0, 10)).getTotalElements()).isZero();
+    }
+
+    @Test
+    @DisplayName("it should persist the writes made between commits when closed")
+    public void closeCommitsTest() throws IOException {
+        // cenário: o commit periódico ainda não rodou
+        bookSearchService.index(Book.builder().id(1l).title("Dom Casmurro").build());
+
+        // execução
+        bookSearchService.close();
+        bookSearchService = open();
+
+        // verificação
+        Assertions.assertThat(bookSearchService.search("casmurro", PageRequest.of(0, 10)).getTotalElements()).isEqualTo(1);
+    }
+}
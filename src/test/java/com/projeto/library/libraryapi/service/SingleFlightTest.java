@@ -0,0 +1,201 @@
+package com.projeto.library.libraryapi.service;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.QueryTimeoutException;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class SingleFlightTest {
+
+    private static final int CALLERS = 10;
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(CALLERS);
+
+    @AfterEach
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    @DisplayName("it should run one query for concurrent calls with the same key")
+    public void coalesceTest() throws Exception {
+        // cenário
+        SingleFlight<Long, String> singleFlight = new SingleFlight<>(Duration.ofSeconds(5));
+        AtomicInteger queries = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+
+        // execução
+        List<Future<String>> calls = callConcurrently(() -> singleFlight.execute(1l, () -> {
+            queries.incrementAndGet();
+            await(release);
+            return "livro 1";
+        }), singleFlight);
+        release.countDown();
+
+        // verificação
+        for (Future<String> call : calls) {
+            Assertions.assertThat(call.get(5, TimeUnit.SECONDS)).isEqualTo("livro 1");
+        }
+        Assertions.assertThat(queries.get()).isEqualTo(1);
+        Assertions.assertThat(singleFlight.inFlight()).isZero();
+    }
+
+    @Test
+    @DisplayName("it should give the query failure to every waiting call")
+    public void failureTest() throws Exception {
+        // cenário
+        SingleFlight<Long, String> singleFlight = new SingleFlight<>(Duration.ofSeconds(5));
+        CountDownLatch release = new CountDownLatch(1);
+        IllegalStateException failure = new IllegalStateException("banco fora do ar");
+
+        // execução
+        List<Future<String>> calls = callConcurrently(() -> singleFlight.execute(1l, () -> {
+            await(release);
+            throw failure;
+        }), singleFlight);
+        release.countDown();
+
+        // verificação
+        for (Future<String> call : calls) {
+            Throwable exception = Assertions.catchThrowable(() -> call.get(5, TimeUnit.SECONDS));
+            Assertions.assertThat(exception).isInstanceOf(ExecutionException.class).hasCause(failure);
+        }
+        Assertions.assertThat(singleFlight.inFlight()).isZero();
+    }
+
+    @Test
+    @DisplayName("it should stop waiting for the running query after the timeout")
+    public void timeoutTest() throws Exception {
+        // cenário
+        SingleFlight<Long, String> singleFlight = new SingleFlight<>(Duration.ofMillis(50));
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Future<String> first = executor.submit(() -> singleFlight.execute(1l, () -> {
+            started.countDown();
+            await(release);
+            return "livro 1";
+        }));
+        await(started);
+
+        // execução
+        Throwable exception = Assertions.catchThrowable(() -> singleFlight.execute(1l, () -> "outra consulta"));
+        release.countDown();
+
+        // verificação
+        Assertions.assertThat(exception).isInstanceOf(QueryTimeoutException.class);
+        // Quem consultou não é afetado pelo timeout de quem esperava
+        Assertions.assertThat(first.get(5, TimeUnit.SECONDS)).isEqualTo("livro 1");
+    }
+
+    @Test
+    @DisplayName("it should not keep the result after the query ends")
+    public void noCacheTest() {
+        SingleFlight<Long, Integer> singleFlight = new SingleFlight<>(Duration.ofSeconds(5));
+        AtomicInteger queries = new AtomicInteger();
+
+        singleFlight.execute(1l, queries::incrementAndGet);
+        Integer second = singleFlight.execute(1l, queries::incrementAndGet);
+        Integer otherKey = singleFlight.execute(2l, queries::incrementAndGet);
+
+        Assertions.assertThat(second).isEqualTo(2);
+        Assertions.assertThat(otherKey).isEqualTo(3);
+    }
+
+    @Test
+    @DisplayName("it should run a new query for calls that arrive after forget")
+    public void forgetTest() throws Exception {
+        // cenário
+        SingleFlight<Long, String> singleFlight = new SingleFlight<>(Duration.ofSeconds(5));
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch releaseOld = new CountDownLatch(1);
+        Future<String> old = executor.submit(() -> singleFlight.execute(1l, () -> {
+            started.countDown();
+            await(releaseOld);
+            return "antes da escrita";
+        }));
+        await(started);
+
+        // execução
+        singleFlight.forget(1l);
+        String fresh = singleFlight.execute(1l, () -> "depois da escrita");
+        releaseOld.countDown();
+
+        // verificação
+        Assertions.assertThat(fresh).isEqualTo("depois da escrita");
+        // Quem já estava consultando termina normalmente e não tira a chave de outra consulta
+        Assertions.assertThat(old.get(5, TimeUnit.SECONDS)).isEqualTo("antes da escrita");
+        Assertions.assertThat(singleFlight.inFlight()).isZero();
+    }
+
+    @Test
+    @DisplayName("it should forget every running query on forgetAll")
+    public void forgetAllTest() throws Exception {
+        // cenário
+        SingleFlight<Long, String> singleFlight = new SingleFlight<>(Duration.ofSeconds(5));
+        CountDownLatch started = new CountDownLatch(2);
+        CountDownLatch release = new CountDownLatch(1);
+        List<Future<String>> old = new ArrayList<>();
+        for (long key = 1; key <= 2; key++) {
+            long id = key;
+            old.add(executor.submit(() -> singleFlight.execute(id, () -> {
+                started.countDown();
+                await(release);
+                return "livro " + id;
+            })));
+        }
+        await(started);
+
+        // execução
+        singleFlight.forgetAll();
+        int inFlightAfterForget = singleFlight.inFlight();
+        String fresh = singleFlight.execute(2l, () -> "livro 2 novo");
+        release.countDown();
+
+        // verificação
+        Assertions.assertThat(inFlightAfterForget).isZero();
+        Assertions.assertThat(fresh).isEqualTo("livro 2 novo");
+        Assertions.assertThat(old.get(0).get(5, TimeUnit.SECONDS)).isEqualTo("livro 1");
+        Assertions.assertThat(old.get(1).get(5, TimeUnit.SECONDS)).isEqualTo("livro 2");
+    }
+
+    // Dispara as chamadas e só devolve quando a primeira já está consultando e as outras já chegaram
+    private List<Future<String>> callConcurrently(Callable<String> call,
+                                                  SingleFlight<Long, String> singleFlight) throws InterruptedException {
+        CountDownLatch arrived = new CountDownLatch(CALLERS);
+        List<Future<String>> calls = new ArrayList<>();
+        for (int i = 0; i < CALLERS; i++) {
+            calls.add(executor.submit(() -> {
+                arrived.countDown();
+                return call.call();
+            }));
+        }
+        arrived.await(5, TimeUnit.SECONDS);
+        while (singleFlight.inFlight() == 0) {
+            Thread.sleep(1);
+        }
+        // Tempo para as últimas chamadas passarem do putIfAbsent e ficarem esperando
+        Thread.sleep(200);
+        return calls;
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
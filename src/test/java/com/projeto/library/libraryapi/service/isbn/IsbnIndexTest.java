@@ -0,0 +1,99 @@
+package com.projeto.library.libraryapi.service.isbn;
+
+import com.projeto.library.libraryapi.repository.BookRepository;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Stream;
+
+public class IsbnIndexTest {
+
+    private IsbnIndex isbnIndex;
+
+    @BeforeEach
+    public void setUp() {
+        BookRepository bookRepository = Mockito.mock(BookRepository.class);
+        Mockito.when(bookRepository.streamAllIdsAndIsbns()).thenReturn(Stream.empty());
+        isbnIndex = new IsbnIndex(bookRepository);
+        isbnIndex.load();
+    }
+
+    @Test
+    @DisplayName("it should follow the books as they are created, changed and deleted")
+    public void putAndRemoveTest() {
+        isbnIndex.put("9780306406157", 1l);
+        isbnIndex.put("123", 2l);
+
+        Assertions.assertThat(isbnIndex.idOf("0306406152")).isEqualTo(1l);
+        Assertions.assertThat(isbnIndex.idOf("9780131103627")).isEqualTo(IsbnIndex.NOT_FOUND);
+        Assertions.assertThat(isbnIndex.idOf("123")).isEqualTo(IsbnIndex.UNKNOWN);
+
+        // Troca de isbn: o anterior sai do índice
+        isbnIndex.put("9780131103627", 1l);
+        Assertions.assertThat(isbnIndex.idOf("9780306406157")).isEqualTo(IsbnIndex.NOT_FOUND);
+        Assertions.assertThat(isbnIndex.idOf("9780131103627")).isEqualTo(1l);
+
+        isbnIndex.remove(1l);
+        Assertions.assertThat(isbnIndex.idOf("9780131103627")).isEqualTo(IsbnIndex.NOT_FOUND);
+    }
+
+    @Test
+    @DisplayName("it should keep the key of the new book when the writes arrive out of order")
+    public void outOfOrderTest() {
+        // cenário: o livro 1 trocou de isbn e o 2 recebeu o isbn antigo do 1, mas o 2 chegou primeiro ao índice
+        isbnIndex.put("9780306406157", 1l);
+        isbnIndex.put("0-306-40615-2", 2l);
+
+        // execução
+        isbnIndex.put("9780131103627", 1l);
+
+        // verificação
+        Assertions.assertThat(isbnIndex.idOf("9780306406157")).isEqualTo(2l);
+        Assertions.assertThat(isbnIndex.idOf("9780131103627")).isEqualTo(1l);
+        isbnIndex.remove(1l);
+        Assertions.assertThat(isbnIndex.idOf("9780306406157")).isEqualTo(2l);
+        isbnIndex.remove(2l);
+        Assertions.assertThat(isbnIndex.idOf("9780306406157")).isEqualTo(IsbnIndex.NOT_FOUND);
+    }
+
+    @Test
+    @DisplayName("it should not answer before the index is loaded")
+    public void notLoadedTest() {
+        IsbnIndex notLoaded = new IsbnIndex(Mockito.mock(BookRepository.class));
+
+        Assertions.assertThat(notLoaded.idOf("9780306406157")).isEqualTo(IsbnIndex.UNKNOWN);
+    }
+
+    @Test
+    @DisplayName("it should keep the primitive map consistent through growth and removals")
+    public void longLongHashMapTest() {
+        LongLongHashMap map = new LongLongHashMap(16);
+        Map<Long, Long> expected = new HashMap<>();
+        Random random = new Random(42);
+
+        for (int i = 0; i < 100_000; i++) {
+            // Chaves num intervalo pequeno para ter colisões, remoções e chaves repetidas
+            long key = 9_780_000_000_000L + random.nextInt(20_000);
+            if (random.nextInt(3) == 0) {
+                Long removed = expected.remove(key);
+                Assertions.assertThat(map.remove(key)).isEqualTo(removed == null ? LongLongHashMap.NO_VALUE : removed);
+            } else {
+                Long previous = expected.put(key, (long) i);
+                Assertions.assertThat(map.put(key, i)).isEqualTo(previous == null ? LongLongHashMap.NO_VALUE : previous);
+            }
+        }
+
+        Assertions.assertThat(map.size()).isEqualTo(expected.size());
+        for (int i = 0; i < 20_000; i++) {
+            long key = 9_780_000_000_000L + i;
+            Long value = expected.get(key);
+            Assertions.assertThat(map.get(key)).isEqualTo(value == null ? LongLongHashMap.NO_VALUE : value);
+        }
+    }
+}
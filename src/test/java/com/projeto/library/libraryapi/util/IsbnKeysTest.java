@@ -0,0 +1,41 @@
+package com.projeto.library.libraryapi.util;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+public class IsbnKeysTest {
+
+    @Test
+    @DisplayName("it should normalize ISBN-10 and ISBN-13 to the same key")
+    public void keyTest() {
+        Assertions.assertThat(IsbnKeys.key("978-0-306-40615-7")).isEqualTo(9780306406157L);
+        Assertions.assertThat(IsbnKeys.key("0-306-40615-2")).isEqualTo(9780306406157L);
+        Assertions.assertThat(IsbnKeys.key("0 8044 2957 X")).isEqualTo(9780804429573L);
+        Assertions.assertThat(IsbnKeys.key("080442957x")).isEqualTo(9780804429573L);
+        Assertions.assertThat(IsbnKeys.key("979-10-90636-07-1")).isEqualTo(9791090636071L);
+    }
+
+    @Test
+    @DisplayName("it should not build a key for invalid ISBNs")
+    public void invalidKeyTest() {
+        Assertions.assertThat(IsbnKeys.key(null)).isEqualTo(IsbnKeys.INVALID);
+        Assertions.assertThat(IsbnKeys.key("123")).isEqualTo(IsbnKeys.INVALID);
+        // Dígito verificador errado
+        Assertions.assertThat(IsbnKeys.key("978-0-306-40615-8")).isEqualTo(IsbnKeys.INVALID);
+        Assertions.assertThat(IsbnKeys.key("0-306-40615-3")).isEqualTo(IsbnKeys.INVALID);
+        // X só vale como dígito verificador do ISBN-10
+        Assertions.assertThat(IsbnKeys.key("X804429570")).isEqualTo(IsbnKeys.INVALID);
+        Assertions.assertThat(IsbnKeys.key("97803064061570")).isEqualTo(IsbnKeys.INVALID);
+        // Prefixo que não é de ISBN-13
+        Assertions.assertThat(IsbnKeys.key("5901234123457")).isEqualTo(IsbnKeys.INVALID);
+    }
+
+    @Test
+    @DisplayName("it should leave the column key empty for invalid ISBNs")
+    public void isbnKeyOfTest() {
+        Assertions.assertThat(IsbnKeys.isbnKeyOf("0-306-40615-2")).isEqualTo(9780306406157L);
+        Assertions.assertThat(IsbnKeys.isbnKeyOf("123")).isNull();
+        Assertions.assertThat(IsbnKeys.isbnKeyOf(null)).isNull();
+    }
+}